@@ -0,0 +1,27 @@
+package tools.validator.benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks with the JMH command line, adding the allocation profiler 
+ * (-prof gc) unless another profiler is asked for, so every result reports 
+ * the bytes allocated per operation next to the time. For example:
+ * <pre>
+ * mvn -pl edf-validator-benchmarks -am package
+ * java -jar edf-validator-benchmarks/target/benchmarks.jar RuleBenchmark -p channels=1024
+ * </pre>
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        if (Arrays.asList(args).contains("-prof")) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        String[] withProfiler = new String[args.length + 2];
+        withProfiler[0] = "-prof";
+        withProfiler[1] = "gc";
+        System.arraycopy(args, 0, withProfiler, 2, args.length);
+        org.openjdk.jmh.Main.main(withProfiler);
+    }
+}
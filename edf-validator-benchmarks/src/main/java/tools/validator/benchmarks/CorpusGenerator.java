@@ -0,0 +1,318 @@
+package tools.validator.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import tools.validator.header.EIA;
+import tools.validator.header.EIAHeader;
+import tools.validator.header.ESA;
+import tools.validator.header.ESAHeader;
+
+/**
+ * Writes a corpus of synthetic EDF or EDF+ files, valid or with injected faults,
+ * so performance problems can be reproduced without patient recordings.
+ * Headers are written by EIAHeader.saveToDisk and ESAHeader.saveToDisk, as the editor
+ * writes them; the data records follow. A manifest.csv lists the faults of each file.
+ * The same settings and seed always give the same corpus.
+ * Usage: CorpusGenerator DIR COUNT [options], see USAGE
+ */
+public class CorpusGenerator {
+
+    /**
+     * The faults that can be injected, each breaking one rule of the validator
+     */
+    public enum Fault {
+        /** version is not 0 */
+        VERSION,
+        /** start date is not a date */
+        START_DATE,
+        /** two signals share a label */
+        DUPLICATE_LABEL,
+        /** a transducer type holds a non-ASCII byte */
+        NON_ASCII,
+        /** physical maximum equals physical minimum */
+        PHYSICAL_RANGE,
+        /** digital maximum is below digital minimum */
+        DIGITAL_RANGE,
+        /** number of bytes in header does not match the number of signals */
+        HEADER_BYTES,
+        /** samples lie outside the digital range */
+        SAMPLE_RANGE,
+        /** the file ends in the middle of a data record */
+        TRUNCATED,
+        /** bytes follow the last data record */
+        TRAILING_BYTES
+    }
+
+    private static final String USAGE =
+            "Usage: CorpusGenerator DIR COUNT [options]\n" +
+            "  --channels N        signals per file (default 16)\n" +
+            "  --rates R1,R2,...   sampling rates in Hz, given to the signals in turn (default 256)\n" +
+            "  --records N         data records of 1 s per file (default 60)\n" +
+            "  --size MB           file size instead of --records\n" +
+            "  --edf-plus          write EDF+C files with an annotation signal\n" +
+            "  --fault-rate P      share of the files with a fault (default 0.2)\n" +
+            "  --faults F1,F2,...  faults to draw from, or all (the default, but duplicate_label with 1 channel): " +
+            EnumSet.allOf(Fault.class).toString().toLowerCase(Locale.ROOT) + "\n" +
+            "  --seed S            seed of the corpus (default 1)\n";
+
+    private static final int DIGITAL_MINIMUM = -2048;
+    private static final int DIGITAL_MAXIMUM = 2047;
+    private static final int ANNOTATION_SAMPLES = 60; // 120 bytes of TAL per record
+
+    private int channels = 16;
+    private int[] rates = { 256 };
+    private int records = 60;
+    private long fileSize = -1;
+    private boolean edfPlus = false;
+    private double faultRate = 0.2;
+    private EnumSet<Fault> faults = null; // all those the channels allow
+    private long seed = 1;
+
+    public void setChannels(int channels) {
+        if (channels < 1 || channels > 9999)
+            throw new IllegalArgumentException("channels must lie in [1, 9999]");
+        this.channels = channels;
+    }
+
+    public void setRates(int[] rates) {
+        this.rates = rates.clone();
+    }
+
+    public void setRecords(int records) {
+        this.records = records;
+        this.fileSize = -1;
+    }
+
+    /**
+     * Sets the size of each file, rounded down to whole data records
+     * @param fileSize the file size in bytes
+     */
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public void setEdfPlus(boolean edfPlus) {
+        this.edfPlus = edfPlus;
+    }
+
+    public void setFaultRate(double faultRate) {
+        this.faultRate = faultRate;
+    }
+
+    public void setFaults(EnumSet<Fault> faults) {
+        if (faults != null && faults.isEmpty())
+            throw new IllegalArgumentException("no fault to draw from");
+        this.faults = faults == null ? null : EnumSet.copyOf(faults);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Writes count files into a directory, and the manifest of their faults
+     * @param directory the corpus directory, created if needed
+     * @param count the number of files
+     * @return the files written
+     * @throws IOException if a file cannot be written
+     */
+    public List<File> generate(File directory, int count) throws IOException {
+        directory.mkdirs();
+        Random random = new Random(seed);
+        EnumSet<Fault> drawn = faults != null ? EnumSet.copyOf(faults) : EnumSet.allOf(Fault.class);
+        if (channels < 2) { // a label is only duplicated by a second signal
+            if (faults != null && faults.contains(Fault.DUPLICATE_LABEL))
+                throw new IllegalArgumentException("duplicate_label needs at least 2 channels");
+            drawn.remove(Fault.DUPLICATE_LABEL);
+        }
+        Fault[] choices = drawn.toArray(new Fault[0]);
+        List<File> files = new ArrayList<File>(count);
+        PrintWriter manifest = new PrintWriter(new File(directory, "manifest.csv"), "US-ASCII");
+        try {
+            manifest.print("file,fault\r\n");
+            for (int i = 0; i < count; i++) {
+                Fault fault = random.nextDouble() < faultRate ? choices[random.nextInt(choices.length)] : null;
+                File file = new File(directory, String.format("synthetic-%06d.edf", i));
+                write(file, fault, random);
+                files.add(file);
+                manifest.print(file.getName() + "," + (fault == null ? "" : fault.name().toLowerCase(Locale.ROOT)) + "\r\n");
+            }
+        } finally {
+            manifest.close();
+        }
+        return files;
+    }
+
+    /**
+     * Writes one file
+     * @param file the EDF file
+     * @param fault the fault to inject, null for a valid file
+     * @param random the source of the sample values
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file, Fault fault, Random random) throws IOException {
+//      Algorithm:
+//      1. lay out the signals: the ordinary ones, then the annotation signal of EDF+;
+//      2. write both headers through saveToDisk, faults in values included;
+//      3. patch the faults that cannot go through a String value into the header bytes;
+//      4. append the data records, and cut or extend the file for the size faults;
+        int ns = channels + (edfPlus ? 1 : 0);
+        int[] samples = new int[ns];
+        for (int i = 0; i < channels; i++)
+            samples[i] = rates[i % rates.length];
+        if (edfPlus)
+            samples[channels] = ANNOTATION_SAMPLES;
+        int recordBytes = 0;
+        for (int s : samples)
+            recordBytes += s * 2;
+        int headerBytes = (ns + 1) * EIA.BYTES_OF_EIA;
+        int nRecords = fileSize < 0 ? records : (int) Math.max(1, (fileSize - headerBytes) / recordBytes); // end of 1.
+
+        EIAHeader eia = new EIAHeader();
+        eia.setValueAt(EIA.VERSION, fault == Fault.VERSION ? "1" : "0");
+        eia.setValueAt(EIA.LOCAL_PATIENT_ID, "X X X X");
+        eia.setValueAt(EIA.LOCAL_RECORDING_ID, "Startdate 01-JAN-2014 X X X");
+        eia.setValueAt(EIA.START_DATE_RECORDING, fault == Fault.START_DATE ? "32.13.14" : "01.01.14");
+        eia.setValueAt(EIA.START_TIME_RECORDING, "00.00.00");
+        eia.setValueAt(EIA.NUMBER_OF_BYTES_IN_HEADER, "" + (fault == Fault.HEADER_BYTES ? headerBytes + 256 : headerBytes));
+        eia.setValueAt(EIA.RESERVED, edfPlus ? "EDF+C" : "");
+        eia.setValueAt(EIA.NUMBER_OF_DATA_RECORDS, "" + nRecords);
+        eia.setValueAt(EIA.DURATION_OF_DATA_RECORD, "1");
+        eia.setValueAt(EIA.NUMBER_OF_SIGNALS, "" + ns);
+
+        ESAHeader esa = new ESAHeader(ns);
+        for (int i = 0; i < ns; i++) {
+            boolean annotation = edfPlus && i == channels;
+            String[] values = annotation ?
+                new String[] { "EDF Annotations", "", "", "-1", "1", "-32768", "32767", "", "" + samples[i], "" } :
+                new String[] { "EEG " + i, "AgAgCl electrode", "uV", "-500", "500",
+                    "" + DIGITAL_MINIMUM, "" + DIGITAL_MAXIMUM, "HP:0.1Hz LP:75Hz", "" + samples[i], "" };
+            if (!annotation && i == 1 && fault == Fault.DUPLICATE_LABEL)
+                values[0] = "EEG 0";
+            if (!annotation && i == 0 && fault == Fault.PHYSICAL_RANGE)
+                values[4] = values[3];
+            if (!annotation && i == 0 && fault == Fault.DIGITAL_RANGE) {
+                values[5] = "" + DIGITAL_MAXIMUM;
+                values[6] = "" + DIGITAL_MINIMUM;
+            }
+            for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+                esa.setValueAt(i, j, values[j]);
+        }
+
+        file.delete();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        eia.saveToDisk(raf, file);
+        esa.saveToDisk(raf, file, true, false); // closes raf, end of 2.
+
+        if (fault == Fault.NON_ASCII) {
+            raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.seek(EIA.BYTES_OF_EIA + ns * 16 + 6); // the space after "AgAgCl" in the transducer type of the first signal
+                raf.write(0xE9); // e acute in ISO-8859-1
+            } finally {
+                raf.close();
+            }
+        } // end of 3.
+
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16);
+        try {
+            byte[] record = new byte[recordBytes];
+            int written = fault == Fault.TRUNCATED ? nRecords - 1 : nRecords;
+            for (int r = 0; r < written; r++) {
+                fillRecord(record, samples, r, random, fault == Fault.SAMPLE_RANGE && r == nRecords / 2);
+                out.write(record);
+            }
+            if (fault == Fault.TRUNCATED)
+                out.write(record, 0, recordBytes / 2);
+            if (fault == Fault.TRAILING_BYTES)
+                out.write(new byte[17]);
+        } finally {
+            out.close();
+        } // end of 4.
+    }
+
+    /**
+     * Fills a data record with a noisy sine per signal, and an empty TAL for the annotation signal
+     */
+    private void fillRecord(byte[] record, int[] samples, int index, Random random, boolean outOfRange) {
+        int offset = 0;
+        for (int i = 0; i < samples.length; i++) {
+            boolean annotation = edfPlus && i == channels;
+            for (int k = 0; k < samples[i]; k++) {
+                int value;
+                if (annotation)
+                    value = 0;
+                else if (outOfRange && k == 0)
+                    value = DIGITAL_MAXIMUM + 100;
+                else
+                    value = (int) (1500 * Math.sin(2 * Math.PI * 10 * k / samples[i])) + random.nextInt(64) - 32;
+                record[offset++] = (byte) value;
+                record[offset++] = (byte) (value >> 8);
+            }
+            if (annotation) { // "+<onset>" 0x14 0x14 0x00: the time-keeping TAL of the record
+                byte[] tal = ("+" + index + "\u0014\u0014\u0000").getBytes();
+                System.arraycopy(tal, 0, record, offset - samples[i] * 2, tal.length);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.print(USAGE);
+            System.exit(3);
+        }
+        CorpusGenerator generator = new CorpusGenerator();
+        for (int i = 2; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--channels")) {
+                generator.setChannels(Integer.parseInt(args[++i]));
+            } else if (arg.equals("--rates")) {
+                String[] items = args[++i].split(",");
+                int[] rates = new int[items.length];
+                for (int k = 0; k < items.length; k++)
+                    rates[k] = Integer.parseInt(items[k].trim());
+                generator.setRates(rates);
+            } else if (arg.equals("--records")) {
+                generator.setRecords(Integer.parseInt(args[++i]));
+            } else if (arg.equals("--size")) {
+                generator.setFileSize((long) (Double.parseDouble(args[++i]) * 1024 * 1024));
+            } else if (arg.equals("--edf-plus")) {
+                generator.setEdfPlus(true);
+            } else if (arg.equals("--fault-rate")) {
+                generator.setFaultRate(Double.parseDouble(args[++i]));
+            } else if (arg.equals("--faults")) {
+                String names = args[++i].trim();
+                EnumSet<Fault> faults = null; // all
+                if (!names.equalsIgnoreCase("all")) {
+                    faults = EnumSet.noneOf(Fault.class);
+                    for (String name : names.split(","))
+                        faults.add(Fault.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                }
+                generator.setFaults(faults);
+            } else if (arg.equals("--seed")) {
+                generator.setSeed(Long.parseLong(args[++i]));
+            } else {
+                System.err.print(USAGE);
+                System.exit(3);
+            }
+        }
+        long start = System.nanoTime();
+        List<File> files = generator.generate(new File(args[0]), Integer.parseInt(args[1]));
+        long bytes = 0;
+        for (File file : files)
+            bytes += file.length();
+        System.out.format("%d files, %.1f MB written to %s in %.1f s%n", files.size(), bytes / 1048576.0,
+                args[0], (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,72 @@
+package tools.validator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.table.EIATable;
+import tools.validator.table.ESATable;
+
+/**
+ * Building the header model of a file: EDFFileHeader from the file or from bytes 
+ * already read, and the EIA and ESA tables the GUI path builds from it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class HeaderBenchmark {
+
+    @Param({ "1", "16", "128", "1024" })
+    public int channels;
+
+    @Param({ "0", "0.1", "0.5" })
+    public double errorDensity;
+
+    private byte[] header;
+    private File file;
+    private EDFFileHeader edfHeader;
+
+    @Setup
+    public void setup() throws IOException {
+        header = HeaderFixture.build(channels, errorDensity);
+        file = HeaderFixture.write(header);
+        edfHeader = new EDFFileHeader(header, header.length, file);
+    }
+
+    @Benchmark
+    public EDFFileHeader edfFileHeaderFromFile() throws IOException {
+        return new EDFFileHeader(new RandomAccessFile(file, "r"), file); // closes the file
+    }
+
+    @Benchmark
+    public EDFFileHeader edfFileHeaderFromBytes() throws IOException {
+        return new EDFFileHeader(header, header.length, file);
+    }
+
+    @Benchmark
+    public ESATable esaTable() {
+        return new ESATable(edfHeader.getEsaHeader());
+    }
+
+    @Benchmark
+    public EIATable eiaTable() {
+        return new EIATable(edfHeader);
+    }
+}
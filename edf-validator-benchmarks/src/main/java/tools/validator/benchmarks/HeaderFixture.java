@@ -0,0 +1,107 @@
+package tools.validator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import tools.validator.header.ESA;
+
+/**
+ * Builds the EDF headers the benchmarks run on: a given number of channels, and a
+ * given share of the fields made incompliant, so both the passing and the failing
+ * paths of the rules are measured. The same parameters always give the same header
+ */
+final class HeaderFixture {
+
+    private static final long SEED = 20141017L;
+
+    private static final String[] VALID_SIGNAL = 
+        { "EEG ", "AgAgCl electrode", "uV", "-500", "500", "-2048", "2047", "HP:0.1Hz LP:75Hz", "256", "" };
+    // per signal attribute, a value breaking a rule; null if the attribute has no rule
+    private static final String[] INVALID_SIGNAL = 
+        { null, "AgAgCl électrode", "µV", "5O0", "-", "-99999", "x", "HP:0.1Hz é", "256.5", null };
+
+    private HeaderFixture() {
+    }
+
+    /**
+     * Builds the header of an EDF file with no data record
+     * @param channels the number of signals
+     * @param errorDensity the share of the fields with a rule made incompliant, in [0, 1]
+     * @return the EIA block followed by the signal header
+     */
+    static byte[] build(int channels, double errorDensity) {
+        Random random = new Random(SEED);
+        StringBuilder sb = new StringBuilder((channels + 1) * 256);
+        pad(sb, random.nextDouble() < errorDensity ? "1" : "0", 8);
+        pad(sb, "X X X X", 80);
+        pad(sb, "Startdate X X X X", 80);
+        pad(sb, random.nextDouble() < errorDensity ? "32.13.14" : "01.01.14", 8);
+        pad(sb, random.nextDouble() < errorDensity ? "25:00:00" : "00.00.00", 8);
+        pad(sb, "" + (channels + 1) * 256, 8);
+        pad(sb, "", 44);
+        pad(sb, "0", 8);
+        pad(sb, "1", 8);
+        pad(sb, "" + channels, 4);
+        for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++) {
+            for (int i = 0; i < channels; i++) {
+                String value;
+                if (j == 0) // a broken label duplicates the one before
+                    value = VALID_SIGNAL[0] + (i > 0 && random.nextDouble() < errorDensity ? i - 1 : i);
+                else if (INVALID_SIGNAL[j] != null && random.nextDouble() < errorDensity)
+                    value = INVALID_SIGNAL[j];
+                else
+                    value = VALID_SIGNAL[j];
+                pad(sb, value, ESA.getByteLengthAt(j));
+            }
+        }
+        byte[] header = new byte[sb.length()];
+        for (int i = 0; i < header.length; i++)
+            header[i] = (byte) sb.charAt(i); // ISO-8859-1, as EDF files are read
+        return header;
+    }
+
+    /**
+     * Writes a header to a temporary EDF file, deleted when the JVM exits
+     * @param header the header bytes
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    static File write(byte[] header) throws IOException {
+        File file = File.createTempFile("edf-bench", ".edf");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.write(header);
+        } finally {
+            raf.close();
+        }
+        return file;
+    }
+
+    /**
+     * Returns a stream that discards everything, to silence the on-screen trace of the 
+     * table rules while still paying for its formatting
+     * @return the stream
+     */
+    static PrintStream nullPrintStream() {
+        return new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    private static void pad(StringBuilder sb, String value, int length) {
+        sb.append(value);
+        for (int i = value.length(); i < length; i++)
+            sb.append(' ');
+    }
+}
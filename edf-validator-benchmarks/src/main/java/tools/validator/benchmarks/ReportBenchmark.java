@@ -0,0 +1,103 @@
+package tools.validator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.report.AsyncReportWriter;
+import tools.validator.report.ReportFormat;
+import tools.validator.report.ReportFormatter;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
+
+/**
+ * Reporting the Incompliances of a header: generateInvalidReport opening the log
+ * on each call or writing to a report opened once, and each report format on its own
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ReportBenchmark {
+
+    @Param({ "1", "16", "128", "1024" })
+    public int channels;
+
+    @Param({ "0", "0.1", "0.5" })
+    public double errorDensity;
+
+    private String edfPath;
+    private ArrayList<Incompliance> incompliances;
+    private File log;
+    private AsyncReportWriter report;
+    private ReportFormatter text, ndjson, csv;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] header = HeaderFixture.build(channels, errorDensity);
+        File file = HeaderFixture.write(header);
+        edfPath = file.getPath();
+        EDFFileHeader edfHeader = new EDFFileHeader(header, header.length, file);
+        incompliances = ValidatorUtility.parseEIAHeader(edfHeader.getEiaHeader(), edfPath, Verbosity.SILENT);
+        incompliances.addAll(ValidatorUtility.parseESAHeader(edfHeader.getEsaHeader(), edfPath, Verbosity.SILENT));
+        text = ReportFormat.TEXT.newFormatter();
+        ndjson = ReportFormat.NDJSON.newFormatter();
+        csv = ReportFormat.CSV.newFormatter();
+    }
+
+    @Setup(Level.Iteration)
+    public void openLog() throws IOException {
+        log = File.createTempFile("edf-bench", ".log");
+        report = new AsyncReportWriter(log.getPath());
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteLog() throws IOException {
+        report.close();
+        log.delete();
+    }
+
+    @Benchmark
+    public void generateInvalidReportToLog() {
+        ValidatorUtility.generateInvalidReport(incompliances, log.getPath(), false);
+    }
+
+    @Benchmark
+    public void generateInvalidReportToWriter() {
+        ValidatorUtility.generateInvalidReport(incompliances, report, false);
+    }
+
+    @Benchmark
+    public String formatText() {
+        return text.formatFile(edfPath, incompliances);
+    }
+
+    @Benchmark
+    public String formatNdjson() {
+        return ndjson.formatFile(edfPath, incompliances);
+    }
+
+    @Benchmark
+    public String formatCsv() {
+        return csv.formatFile(edfPath, incompliances);
+    }
+}
@@ -0,0 +1,90 @@
+package tools.validator.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.table.EIATable;
+import tools.validator.table.ESATable;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
+
+/**
+ * Evaluating the header rules: through the tables, as the GUI does, and directly 
+ * on the header model, as the command line does. The table path traces every field 
+ * on screen; that output is discarded, but its formatting is measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RuleBenchmark {
+
+    @Param({ "1", "16", "128", "1024" })
+    public int channels;
+
+    @Param({ "0", "0.1", "0.5" })
+    public double errorDensity;
+
+    private String edfPath;
+    private EDFFileHeader edfHeader;
+    private ESATable esaTable;
+    private EIATable eiaTable;
+    private PrintStream out;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] header = HeaderFixture.build(channels, errorDensity);
+        File file = HeaderFixture.write(header);
+        edfPath = file.getPath();
+        edfHeader = new EDFFileHeader(header, header.length, file);
+        esaTable = new ESATable(edfHeader.getEsaHeader());
+        eiaTable = new EIATable(edfHeader);
+        out = System.out;
+        System.setOut(HeaderFixture.nullPrintStream());
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public ArrayList<Incompliance> parseESATable() {
+        return esaTable.parseESATable(edfPath);
+    }
+
+    @Benchmark
+    public ArrayList<Incompliance> parseEIATable() {
+        return eiaTable.parseEIATable(edfPath);
+    }
+
+    @Benchmark
+    public ArrayList<Incompliance> parseESAHeader() {
+        return ValidatorUtility.parseESAHeader(edfHeader.getEsaHeader(), edfPath, Verbosity.SILENT);
+    }
+
+    @Benchmark
+    public ArrayList<Incompliance> parseEIAHeader() {
+        return ValidatorUtility.parseEIAHeader(edfHeader.getEiaHeader(), edfPath, Verbosity.SILENT);
+    }
+}
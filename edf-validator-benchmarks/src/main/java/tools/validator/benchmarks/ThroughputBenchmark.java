@@ -0,0 +1,294 @@
+package tools.validator.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tools.validator.BatchValidator;
+import tools.validator.ValidationResult;
+import tools.validator.ValidatorMain;
+import tools.validator.report.AsyncReportWriter;
+import tools.validator.report.ReportFormat;
+import tools.validator.report.ReportFormatter;
+import tools.validator.utils.Verbosity;
+
+/**
+ * End-to-end throughput of the validator over a corpus, typically one written by
+ * CorpusGenerator: every file is validated in full and its report written, as a batch run does.
+ * Reports files/s, MB/s, the p50 and p99 latency of a file, and the peak RSS of the JVM.
+ * Warm-up runs are left out of the figures, so the JIT has settled.
+ * If the corpus has a manifest.csv, the verdicts are checked against the injected faults.
+ * Usage: ThroughputBenchmark DIR [-j N] [--warmup N] [--runs N] [-f FORMAT] [-o LOG]
+ */
+public class ThroughputBenchmark {
+
+    private final List<String> edfPaths;
+    private final long totalBytes;
+    private final int parallelism;
+    private final ReportFormat format;
+    private final String log;
+
+    /**
+     * Constructs the benchmark of a corpus
+     * @param edfPaths the EDF files of the corpus
+     * @param parallelism the number of files validated at the same time
+     * @param format the report format
+     * @param log the report file, rewritten by every run
+     */
+    public ThroughputBenchmark(List<String> edfPaths, int parallelism, ReportFormat format, String log) {
+        this.edfPaths = edfPaths;
+        this.parallelism = parallelism;
+        this.format = format;
+        this.log = log;
+        long bytes = 0;
+        for (String edfPath : edfPaths)
+            bytes += new File(edfPath).length();
+        this.totalBytes = bytes;
+    }
+
+    /**
+     * The figures of one run over the corpus
+     */
+    public static class Run {
+        public final int files;
+        public final long bytes;
+        public final long wallNanos;
+        public final long[] latencyNanos; // sorted
+        public final Map<String,Boolean> valid;
+        public final int errors;
+
+        Run(int files, long bytes, long wallNanos, long[] latencyNanos, Map<String,Boolean> valid, int errors) {
+            this.files = files;
+            this.bytes = bytes;
+            this.wallNanos = wallNanos;
+            this.latencyNanos = latencyNanos;
+            this.valid = valid;
+            this.errors = errors;
+        }
+
+        public double filesPerSecond() {
+            return files / (wallNanos / 1e9);
+        }
+
+        public double megabytesPerSecond() {
+            return bytes / 1048576.0 / (wallNanos / 1e9);
+        }
+
+        /**
+         * Returns a latency percentile, nearest rank
+         * @param p the percentile in (0, 100]
+         * @return the latency in milliseconds
+         */
+        public double percentileMillis(double p) {
+            if (latencyNanos.length == 0)
+                return 0;
+            int rank = (int) Math.ceil(p / 100 * latencyNanos.length);
+            return latencyNanos[Math.max(0, rank - 1)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.1f files/s %8.1f MB/s   p50 %8.2f ms   p99 %8.2f ms",
+                    filesPerSecond(), megabytesPerSecond(), percentileMillis(50), percentileMillis(99));
+        }
+    }
+
+    /**
+     * Validates the whole corpus once
+     * @return the figures of the run
+     * @throws IOException if the report cannot be written
+     * @throws InterruptedException if interrupted while waiting for a file
+     */
+    public Run run() throws IOException, InterruptedException {
+        new File(log).delete();
+        final AsyncReportWriter report = new AsyncReportWriter(log);
+        final ReportFormatter formatter = format.newFormatter();
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<Future<long[]>> futures = new ArrayList<Future<long[]>>(edfPaths.size());
+        final Map<String,Boolean> valid = Collections.synchronizedMap(new HashMap<String,Boolean>());
+        long start = System.nanoTime();
+        try {
+            for (final String edfPath : edfPaths) {
+                futures.add(pool.submit(new Callable<long[]>() {
+                    @Override
+                    public long[] call() {
+                        long begin = System.nanoTime();
+                        ValidationResult result;
+                        try {
+                            ValidatorMain validator = new ValidatorMain();
+                            validator.setup(edfPath, null);
+                            validator.setVerbosity(Verbosity.SILENT);
+                            result = validator.validateFile();
+                        } catch (RuntimeException e) {
+                            result = new ValidationResult(edfPath);
+                            result.setError("Validation failed: " + e);
+                        }
+                        if (result.hasError())
+                            report.write(formatter.formatError(edfPath, result.getError()));
+                        else if (!result.isValid())
+                            report.write(formatter.formatFile(edfPath, result.getIncompliances()));
+                        if (!result.hasError())
+                            valid.put(new File(edfPath).getName(), result.isValid());
+                        return new long[] { System.nanoTime() - begin, result.hasError() ? 1 : 0 };
+                    }
+                }));
+            }
+            long[] latencies = new long[futures.size()];
+            int errors = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                long[] outcome = futures.get(i).get();
+                latencies[i] = outcome[0];
+                errors += (int) outcome[1];
+            }
+            long wall = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            return new Run(latencies.length, totalBytes, wall, latencies, valid, errors);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause()); // tasks catch their own failures
+        } finally {
+            pool.shutdownNow();
+            report.close();
+        }
+    }
+
+    /**
+     * Returns the peak resident set size of this JVM, from /proc on Linux.
+     * Elsewhere falls back to the summed peak usage of the heap pools, which leaves out
+     * the JIT, metaspace, thread stacks and direct buffers
+     * @return the peak in bytes, and whether it is the RSS
+     */
+    public static long[] peakMemory() {
+        File status = new File("/proc/self/status");
+        if (status.canRead()) {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(status), "US-ASCII"));
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null)
+                        if (line.startsWith("VmHWM:"))
+                            return new long[] { Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024, 1 };
+                } finally {
+                    in.close();
+                }
+            } catch (IOException | NumberFormatException e) {
+                // fall back below
+            }
+        }
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null)
+                peak += pool.getPeakUsage().getUsed();
+        return new long[] { peak, 0 };
+    }
+
+    /**
+     * Reads the manifest.csv of a corpus: file name to injected fault, empty for none
+     */
+    private static Map<String,String> readManifest(File directory) throws IOException {
+        File manifest = new File(directory, "manifest.csv");
+        if (!manifest.isFile())
+            return null;
+        Map<String,String> faults = new HashMap<String,String>();
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), "US-ASCII"));
+        try {
+            String line = in.readLine(); // header
+            while ((line = in.readLine()) != null) {
+                int comma = line.indexOf(',');
+                if (comma > 0)
+                    faults.put(line.substring(0, comma), line.substring(comma + 1));
+            }
+        } finally {
+            in.close();
+        }
+        return faults;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: ThroughputBenchmark DIR [-j N] [--warmup N] [--runs N] [-f FORMAT] [-o LOG]");
+            System.exit(3);
+        }
+        File directory = new File(args[0]);
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int warmups = 1;
+        int runs = 3;
+        ReportFormat format = ReportFormat.TEXT;
+        String log = new File(System.getProperty("java.io.tmpdir"), "throughput-benchmark.log").getPath();
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-j"))
+                parallelism = Integer.parseInt(args[++i]);
+            else if (arg.equals("--warmup"))
+                warmups = Integer.parseInt(args[++i]);
+            else if (arg.equals("--runs"))
+                runs = Integer.parseInt(args[++i]);
+            else if (arg.equals("-f"))
+                format = ReportFormat.valueOf(args[++i].toUpperCase());
+            else if (arg.equals("-o"))
+                log = args[++i];
+            else
+                throw new IllegalArgumentException("unknown option " + arg);
+        }
+
+        List<String> edfPaths = BatchValidator.listEdfFiles(directory.getPath());
+        ThroughputBenchmark benchmark = new ThroughputBenchmark(edfPaths, parallelism, format, log);
+        System.out.format("%d files, %.1f MB, %d threads, %s report%n", edfPaths.size(),
+                benchmark.totalBytes / 1048576.0, parallelism, format.name().toLowerCase());
+        for (int i = 0; i < warmups; i++)
+            System.out.println("warm-up " + (i + 1) + "  " + benchmark.run());
+        List<Run> measured = new ArrayList<Run>();
+        for (int i = 0; i < runs; i++) {
+            Run run = benchmark.run();
+            measured.add(run);
+            System.out.println("run " + (i + 1) + "      " + run);
+        }
+        if (measured.isEmpty())
+            return;
+
+        // the median run by wall time stands for the corpus
+        List<Run> byWall = new ArrayList<Run>(measured);
+        Collections.sort(byWall, new java.util.Comparator<Run>() {
+            @Override
+            public int compare(Run a, Run b) {
+                return Long.compare(a.wallNanos, b.wallNanos);
+            }
+        });
+        Run median = byWall.get(byWall.size() / 2);
+        long[] peak = peakMemory();
+        System.out.println("median     " + median);
+        System.out.format("peak %s %.1f MB%n", peak[1] == 1 ? "RSS" : "heap", peak[0] / 1048576.0);
+
+        Map<String,String> faults = readManifest(directory);
+        if (faults != null) {
+            int missed = 0;
+            int falseAlarms = 0;
+            for (Map.Entry<String,Boolean> verdict : median.valid.entrySet()) {
+                String fault = faults.get(verdict.getKey());
+                if (fault == null)
+                    continue;
+                if (!fault.isEmpty() && verdict.getValue())
+                    missed++;
+                else if (fault.isEmpty() && !verdict.getValue())
+                    falseAlarms++;
+            }
+            System.out.format("manifest: %d faulty files passed, %d clean files failed, %d not validated%n",
+                    missed, falseAlarms, median.errors);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package tools.validator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.metrics.ReportWriteEvent;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
+import tools.validator.report.ArchiveSummary;
+import tools.validator.report.AsyncReportWriter;
+import tools.validator.report.ReportFormat;
+import tools.validator.report.ReportFormatter;
+import tools.validator.utils.MyDate;
+import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
+
+/**
+ * Validates many EDF files concurrently on a work-stealing pool. 
+ * Each file is validated by its own ValidatorMain instance, and the report 
+ * is written in the order the files were given, whatever order they finish in
+ */
+public class BatchValidator {
+
+	private static final String separator = 
+			"===============================================================================================";
+
+	private final int parallelism;
+	private final String log;
+	private Verbosity verbosity = Verbosity.SUMMARY;
+	private ReportFormat format = ReportFormat.TEXT;
+	private VerdictCache cache = null;
+	private boolean failFast = false;
+	private ArchiveSummary archiveSummary = null;
+	private boolean fileSections = true;
+
+	private int filesValidated = 0;
+	private int filesWithIncompliances = 0;
+	private int filesWithErrors = 0;
+	private long numberOfIncompliances = 0;
+
+	/**
+	 * Constructs a batch validator
+	 * @param parallelism the number of files validated at the same time
+	 * @param log log file path
+	 */
+	public BatchValidator(int parallelism, String log) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.parallelism = parallelism;
+		this.log = log;
+	}
+
+	/**
+	 * Constructs a batch validator using one thread per available processor
+	 * @param log log file path
+	 */
+	public BatchValidator(String log) {
+		this(Runtime.getRuntime().availableProcessors(), log);
+	}
+
+	/**
+	 * Sets how much is printed on screen during a run, Verbosity.SUMMARY by default
+	 * @param verbosity the verbosity level
+	 */
+	public void setVerbosity(Verbosity verbosity) {
+		this.verbosity = verbosity;
+	}
+
+	/**
+	 * Sets the format of the report, ReportFormat.TEXT by default. 
+	 * In the NDJSON and CSV formats the log only holds the records of the files
+	 * @param format the report format
+	 */
+	public void setFormat(ReportFormat format) {
+		this.format = format;
+	}
+
+	/**
+	 * Sets the cache of the verdicts of earlier runs, none by default. 
+	 * Files unchanged since their verdict was cached are not validated again, 
+	 * and the cache is saved at the end of each run
+	 * @param cache the verdict cache, null for none
+	 */
+	public void setCache(VerdictCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets whether each file is validated only until its first critical Incompliance, false by default. 
+	 * Such partial verdicts are not stored in the cache, though full ones found there are used
+	 * @param failFast true to stop at the first critical Incompliance of each file
+	 * @see ValidatorMain#setFailFast(boolean)
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Sets the summary the workers add every file to as they validate it, none by default. 
+	 * Of a file served from the cache, only the header is read for it. 
+	 * It is written at the end of the run, after the run summary
+	 * @param summary the archive summary, null for none
+	 */
+	public void setSummary(ArchiveSummary summary) {
+		this.archiveSummary = summary;
+	}
+
+	/**
+	 * Sets whether the report has a section per file with Incompliances or errors, true by default. 
+	 * Turned off when the totals of an archive are wanted rather than its 50k sections
+	 * @param fileSections false to leave the sections of the files out of the report
+	 */
+	public void setFileSections(boolean fileSections) {
+		this.fileSections = fileSections;
+	}
+
+	/**
+	 * Lists the EDF files of a directory tree, sorted by path
+	 * @param directory the root of the directory tree
+	 * @return the paths of the EDF files found
+	 * @throws IOException if the directory cannot be walked
+	 */
+	public static ArrayList<String> listEdfFiles(String directory) throws IOException {
+		final ArrayList<String> files = new ArrayList<String>();
+		Files.walkFileTree(Paths.get(directory), new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && isEdfFile(file.getFileName().toString()))
+					files.add(file.toString());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				return FileVisitResult.CONTINUE; // unreadable entries are skipped
+			}
+		});
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Reads a list of EDF file paths, one path per line
+	 * @param listFile the file holding the list
+	 * @return the paths in the order of the list, blank lines skipped
+	 * @throws IOException if the list cannot be read
+	 */
+	public static ArrayList<String> readFileList(String listFile) throws IOException {
+		ArrayList<String> files = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(listFile)));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (!line.equals(""))
+					files.add(line);
+			}
+		} finally {
+			in.close();
+		}
+		return files;
+	}
+
+	/**
+	 * Tests whether a file name has the EDF extension
+	 * @param fileName the file name
+	 * @return true for *.edf, in any case
+	 */
+	public static boolean isEdfFile(String fileName) {
+		return fileName.toLowerCase().endsWith(".edf");
+	}
+
+	/**
+	 * Validates the files and writes the report in the order of the files. 
+	 * The log is opened once for the run and written by a background thread
+	 * @param edfPaths the EDF file paths
+	 * @throws InterruptedException if interrupted while waiting for a file
+	 * @throws IOException if the log cannot be opened or written, or the cache cannot be saved
+	 */
+	public void validate(List<String> edfPaths) throws InterruptedException, IOException {
+		AsyncReportWriter report = new AsyncReportWriter(log);
+		try {
+			validate(edfPaths, report);
+		} finally {
+			report.close();
+		}
+		if (cache != null)
+			cache.save();
+	}
+
+	private void validate(List<String> edfPaths, AsyncReportWriter report) throws InterruptedException {
+		boolean summary = verbosity.includes(Verbosity.SUMMARY);
+		ReportFormatter formatter = format.newFormatter();
+		logSummary(separator, summary, report);
+		logSummary("  >>> User start a batch validation task at: " + MyDate.currentDateTime(), summary, report);
+		logSummary("  >>> Number of files: " + edfPaths.size(), summary, report);
+		if (!formatter.header().isEmpty())
+			report.write(formatter.header());
+
+		// at most window files are in flight, so results waiting for 
+		// a slower file ahead of them in the report cannot pile up
+		int window = parallelism * 4;
+		LinkedList<Future<ValidationResult>> pending = new LinkedList<Future<ValidationResult>>();
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (String edfPath : edfPaths) {
+				if (pending.size() >= window)
+					report(pending.removeFirst(), formatter, report);
+				pending.add(pool.submit(new ValidationTask(edfPath, log, verbosity, cache, failFast, archiveSummary)));
+			}
+			while (!pending.isEmpty())
+				report(pending.removeFirst(), formatter, report);
+		} finally {
+			pool.shutdownNow();
+		}
+
+		logSummary(separator, summary, report);
+		logSummary("  >>> Files validated: " + filesValidated + ", with incompliances: " + 
+				filesWithIncompliances + ", not validated: " + filesWithErrors, summary, report);
+		logSummary("  >>> Number of errors: " + numberOfIncompliances, summary, report);
+		if (cache != null)
+			logCacheSummary(summary, report);
+		if (archiveSummary != null) {
+			logSummary(separator, summary, report);
+			for (String line : archiveSummary.format())
+				logSummary(line, summary, report);
+		}
+	}
+
+	/**
+	 * Logs how many files the cache spared, and the files whose verdict changed
+	 */
+	private void logCacheSummary(boolean summary, AsyncReportWriter report) {
+		logSummary(String.format("  >>> Cache hits: %d of %d (%.1f%%)%s", cache.getHits(), 
+				cache.getHits() + cache.getMisses(), cache.getHitRate() * 100, 
+				cache.isStale() ? ", cache not used: written under other rules or file identity" : ""), summary, report);
+		List<String> failing = cache.getNewlyFailing();
+		logSummary("  >>> Newly failing: " + failing.size(), summary, report);
+		for (String edfPath : failing)
+			logSummary("      " + edfPath, summary, report);
+		List<String> passing = cache.getNewlyPassing();
+		logSummary("  >>> Newly passing: " + passing.size(), summary, report);
+		for (String edfPath : passing)
+			logSummary("      " + edfPath, summary, report);
+	}
+
+	/**
+	 * Logs a line of the run summary. A machine readable report only holds records, 
+	 * so the summary then only goes to the screen
+	 */
+	private void logSummary(String message, boolean showOnScreen, AsyncReportWriter report) {
+		if (!format.isMachineReadable())
+			ValidatorUtility.addElementIntoLog(message, showOnScreen, report);
+		else if (showOnScreen)
+			System.out.println(message);
+	}
+
+	/**
+	 * Writes the report of a file as soon as it is its turn, so nothing is kept after that
+	 */
+	private void report(Future<ValidationResult> future, ReportFormatter formatter, AsyncReportWriter report) 
+			throws InterruptedException {
+		ValidationResult result;
+		try {
+			result = future.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause()); // tasks catch their own failures
+		}
+
+		ReportWriteEvent event = new ReportWriteEvent();
+		event.begin();
+		long start = System.nanoTime();
+		filesValidated++;
+		if (result.hasError())
+			filesWithErrors++;
+		else if (!result.isValid()) {
+			filesWithIncompliances++;
+			numberOfIncompliances += result.getIncompliances().size();
+		}
+		if (!fileSections || !result.hasError() && result.isValid())
+			return;
+		String text = result.hasError() ? formatter.formatError(result.getEdfPath(), result.getError())
+				: formatter.formatFile(result.getEdfPath(), result.getIncompliances());
+		if (verbosity.includes(Verbosity.FILE))
+			System.out.print(text);
+		report.write(text);
+		ValidationMetrics.record(Phase.REPORT_WRITING, start);
+		event.commit(result.getEdfPath(), 0, text.length(), result.hasError() ? 0 : result.getIncompliances().size());
+	}
+
+	/**
+	 * Returns the number of files validated by the last run
+	 * @return the number of files
+	 */
+	public int getFilesValidated() {
+		return filesValidated;
+	}
+
+	/**
+	 * Returns the number of files with Incompliances found by the last run
+	 * @return the number of files
+	 */
+	public int getFilesWithIncompliances() {
+		return filesWithIncompliances;
+	}
+
+	/**
+	 * Returns the number of files that could not be validated by the last run
+	 * @return the number of files
+	 */
+	public int getFilesWithErrors() {
+		return filesWithErrors;
+	}
+
+	/**
+	 * Returns the total number of Incompliances found by the last run
+	 * @return the number of Incompliances
+	 */
+	public long getNumberOfIncompliances() {
+		return numberOfIncompliances;
+	}
+
+	/**
+	 * Validates one file with its own ValidatorMain, so no state is shared between tasks. 
+	 * With a cache, an unchanged file is served from it instead
+	 */
+	static class ValidationTask implements Callable<ValidationResult> {
+		private final String edfPath;
+		private final String log;
+		private final Verbosity verbosity;
+		private final VerdictCache cache;
+		private final boolean failFast;
+		private final ArchiveSummary summary;
+
+		ValidationTask(String edfPath, String log, Verbosity verbosity, VerdictCache cache, boolean failFast) {
+			this(edfPath, log, verbosity, cache, failFast, null);
+		}
+
+		ValidationTask(String edfPath, String log, Verbosity verbosity, VerdictCache cache, boolean failFast, 
+				ArchiveSummary summary) {
+			this.edfPath = edfPath;
+			this.log = log;
+			this.verbosity = verbosity;
+			this.cache = cache;
+			this.failFast = failFast;
+			this.summary = summary;
+		}
+
+		@Override
+		public ValidationResult call() {
+			VerdictCache.FileIdentity identity = null;
+			if (cache != null) {
+				identity = cache.identify(edfPath);
+				ValidationResult cached = cache.lookup(edfPath, identity);
+				if (cached != null) {
+					if (summary != null && !cached.hasError())
+						addHeader();
+					return summarize(cached);
+				}
+			}
+			ValidationResult result;
+			try {
+				ValidatorMain validator = new ValidatorMain();
+				validator.setup(edfPath, log);
+				validator.setVerbosity(verbosity);
+				validator.setFailFast(failFast);
+				validator.setSummary(summary);
+				result = validator.validateFile();
+			} catch (RuntimeException e) {
+				result = new ValidationResult(edfPath);
+				result.setError("Validation failed: " + e);
+			}
+			if (cache != null && !failFast)
+				cache.store(identity, result);
+			return summarize(result);
+		}
+
+		/**
+		 * Adds the header of a file served from the cache to the summary, leaving the data section unread
+		 */
+		private void addHeader() {
+			File edfFile = new File(edfPath);
+			try {
+				EDFFileHeader header = new EDFFileHeader(new RandomAccessFile(edfFile, "r"), edfFile);
+				if (header.getEiaHeader() != null)
+					summary.addHeader(header);
+			} catch (IOException e) {
+				// the cached verdict stands, the summary goes without this header
+			}
+		}
+
+		private ValidationResult summarize(ValidationResult result) {
+			if (summary != null)
+				summary.addVerdict(result.hasError(), result.getIncompliances());
+			return result;
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package tools.validator;
+
+import java.util.ArrayList;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * The outcome of validating one EDF file: either the Incompliances found, 
+ * or the reason why the file could not be validated
+ */
+public class ValidationResult {
+
+	private final String edfPath;
+	private ArrayList<Incompliance> incompliances = new ArrayList<Incompliance>();
+	private String error = null;
+	private boolean cached = false;
+
+	/**
+	 * Constructs an empty result for a file
+	 * @param edfPath the EDF file path
+	 */
+	public ValidationResult(String edfPath) {
+		this.edfPath = edfPath;
+	}
+
+	/**
+	 * Returns the EDF file path of this result
+	 * @return the EDF file path
+	 */
+	public String getEdfPath() {
+		return edfPath;
+	}
+
+	/**
+	 * Sets the Incompliances found in the file
+	 * @param incompliances the Incompliances found
+	 */
+	public void setIncompliances(ArrayList<Incompliance> incompliances) {
+		this.incompliances = incompliances;
+	}
+
+	/**
+	 * Returns the Incompliances found in the file
+	 * @return the Incompliances found, empty if the file is valid or could not be read
+	 */
+	public ArrayList<Incompliance> getIncompliances() {
+		return incompliances;
+	}
+
+	/**
+	 * Records the reason why the file could not be validated
+	 * @param error the error message
+	 */
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	/**
+	 * Returns the reason why the file could not be validated
+	 * @return the error message, null if the file was validated
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Tests whether the file could not be validated, for example because it cannot be read
+	 * @return true if an error prevented the validation
+	 */
+	public boolean hasError() {
+		return error != null;
+	}
+
+	/**
+	 * Marks the result as served from a VerdictCache rather than validated by this run
+	 * @param cached true if the result comes from the cache
+	 */
+	void setCached(boolean cached) {
+		this.cached = cached;
+	}
+
+	/**
+	 * Tests whether the result was served from a VerdictCache
+	 * @return true if the file was not validated again by this run
+	 */
+	public boolean isCached() {
+		return cached;
+	}
+
+	/**
+	 * Tests whether the file was validated without any Incompliance
+	 * @return true if the file is valid
+	 */
+	public boolean isValid() {
+		return error == null && incompliances.isEmpty();
+	}
+}
@@ -0,0 +1,398 @@
+package tools.validator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.header.ESA;
+import tools.validator.metrics.ReportWriteEvent;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
+import tools.validator.report.NdjsonReportFormatter;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.Verbosity;
+
+/**
+ * A long-running validation service on the loopback interface, so validating a file
+ * costs neither a JVM start nor a cold JIT. Endpoints:
+ * <ul>
+ * <li>GET or POST /validate?path=FILE validates a local EDF file;</li>
+ * <li>POST /validate[?name=NAME][&amp;part=header] validates the EDF file, or with
+ * part=header only the EDF header, sent as the request body. A header is validated
+ * in memory, reading no more of the body than the header it declares; a file is
+ * copied to a temporary file first;</li>
+ * <li>either of them with mode=triage stops at the first critical Incompliance;</li>
+ * <li>GET /health answers "ok";</li>
+ * <li>GET /metrics answers the validation metrics in the Prometheus text format.</li>
+ * </ul>
+ * A verdict is answered with 200 and {"file", "valid", "incompliances": [...]},
+ * a file that could not be validated with 422 and {"file", "error"},
+ * a body larger than the upload limit with 413.
+ * At most parallelism files are validated at the same time; a request beyond that
+ * is rejected at once with 503 and Retry-After, rather than queued
+ */
+public class ValidationServer {
+
+	/** default port of the service */
+	public static final int DEFAULT_PORT = 8765;
+
+	/** default limit on the size of an uploaded file, in bytes */
+	public static final long DEFAULT_MAX_UPLOAD = 1L << 30;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final int port;
+	private final int parallelism;
+	private final Semaphore permits;
+	private volatile long maxUpload = DEFAULT_MAX_UPLOAD;
+	private HttpServer server = null;
+	private ExecutorService executor = null;
+
+	// the buffer each server thread copies uploads through, grown to hold an uploaded header
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[BUFFER_SIZE];
+		}
+	};
+
+	/**
+	 * Constructs a validation service
+	 * @param port the port to listen on, 0 for any free port
+	 * @param parallelism the number of files validated at the same time
+	 */
+	public ValidationServer(int port, int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.port = port;
+		this.parallelism = parallelism;
+		this.permits = new Semaphore(parallelism);
+	}
+
+	/**
+	 * Sets the largest request body accepted, DEFAULT_MAX_UPLOAD by default. 
+	 * A larger body is answered with 413
+	 * @param maxUpload the limit in bytes
+	 */
+	public void setMaxUpload(long maxUpload) {
+		if (maxUpload < EIA.BYTES_OF_EIA)
+			throw new IllegalArgumentException("the upload limit must hold at least an EIA header");
+		this.maxUpload = maxUpload;
+	}
+
+	/**
+	 * Starts listening on the loopback interface. Returns at once;
+	 * the service runs until stop is called
+	 * @throws IOException if the port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (server != null)
+			throw new IllegalStateException("server already started");
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/validate", new ValidateHandler());
+		server.createContext("/health", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, "text/plain", "ok\n");
+			}
+		});
+		server.createContext("/metrics", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, 200, "text/plain; version=0.0.4", ValidationMetrics.toPrometheus());
+			}
+		});
+		// one thread more than permits, so a saturated service still answers 503 and /health
+		executor = Executors.newFixedThreadPool(parallelism + 1);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Stops the service, letting the requests in progress finish for up to a few seconds
+	 * @param delay the number of seconds to wait for the requests in progress
+	 */
+	public synchronized void stop(int delay) {
+		if (server == null)
+			return;
+		server.stop(delay);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(delay, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		executor.shutdownNow();
+		server = null;
+	}
+
+	/**
+	 * Returns the port the service listens on
+	 * @return the bound port once started, otherwise the configured port
+	 */
+	public synchronized int getPort() {
+		return server == null ? port : server.getAddress().getPort();
+	}
+
+	/**
+	 * Validates a local file or the uploaded body, one permit per request
+	 */
+	private class ValidateHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			String method = exchange.getRequestMethod();
+			if (!method.equals("GET") && !method.equals("POST")) {
+				send(exchange, 405, "application/json", "{\"error\":\"use GET or POST\"}\n");
+				return;
+			}
+			if (!permits.tryAcquire()) {
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				send(exchange, 503, "application/json",
+						"{\"error\":\"all " + parallelism + " validation slots are busy\"}\n");
+				return;
+			}
+			Path upload = null;
+			try {
+				Map<String,String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+				boolean headerOnly = "header".equals(query.get("part"));
+				String path = query.get("path");
+				String name;
+				EDFFileHeader header = null;
+				ValidationResult result = null;
+				if (path != null) {
+					name = path;
+				} else if (method.equals("POST")) {
+					name = query.containsKey("name") ? query.get("name") : "upload.edf";
+					path = name;
+					String declared = exchange.getRequestHeaders().getFirst("Content-Length");
+					if (declared != null && parseLength(declared) > maxUpload) {
+						sendTooLarge(exchange);
+						return;
+					}
+					if (headerOnly) {
+						header = readHeader(exchange.getRequestBody(), new File(name));
+						if (header == null) {
+							result = new ValidationResult(name);
+							result.setError("Cannot read EDF header");
+						}
+					} else {
+						upload = spool(exchange.getRequestBody(), maxUpload);
+						if (upload == null) {
+							sendTooLarge(exchange);
+							return;
+						}
+						path = upload.toString();
+					}
+				} else {
+					send(exchange, 400, "application/json", "{\"error\":\"no path given and no file sent\"}\n");
+					return;
+				}
+
+				if (result == null) {
+					ValidatorMain validator = new ValidatorMain();
+					validator.setup(path, null);
+					validator.setVerbosity(Verbosity.SILENT);
+					validator.setCheckDataRecords(!headerOnly);
+					validator.setFailFast("triage".equals(query.get("mode")));
+					if (header != null)
+						validator.setHeader(header);
+					try {
+						result = validator.validateFile();
+					} catch (RuntimeException e) {
+						result = new ValidationResult(path);
+						result.setError("Validation failed: " + e);
+					}
+				}
+				ReportWriteEvent event = new ReportWriteEvent();
+				event.begin();
+				long start = System.nanoTime();
+				String json = toJson(name, result);
+				send(exchange, result.hasError() ? 422 : 200, "application/json", json);
+				ValidationMetrics.record(Phase.REPORT_WRITING, start);
+				event.commit(name, 0, json.length(), result.hasError() ? 0 : result.getIncompliances().size());
+			} finally {
+				permits.release();
+				if (upload != null)
+					Files.deleteIfExists(upload);
+			}
+		}
+	}
+
+	/**
+	 * Reads the EDF header at the start of a request body into the buffer of this thread:
+	 * the EIA block, then as many signal headers as it declares, 256 * (ns + 1) bytes at most.
+	 * The rest of the body is not read
+	 * @return the header, or null if the body ends before the EIA block does
+	 */
+	private static EDFFileHeader readHeader(InputStream body, File edfFile) throws IOException {
+		try {
+			byte[] buffer = buffers.get();
+			int length = readFully(body, buffer, 0, EIA.BYTES_OF_EIA);
+			if (length < EIA.BYTES_OF_EIA)
+				return null;
+			int size = EIA.BYTES_OF_EIA + signalsDeclared(buffer) * ESA.BYTES_PER_CHANNEL;
+			if (size > buffer.length) {
+				buffer = Arrays.copyOf(buffer, size);
+				buffers.set(buffer);
+			}
+			length += readFully(body, buffer, length, size - length);
+			return new EDFFileHeader(buffer, length, edfFile);
+		} finally {
+			body.close();
+		}
+	}
+
+	/**
+	 * Returns the number of signals an EIA block declares, 0 if the field is not a number; 
+	 * the rules report a malformed field, so the EIA block is still validated
+	 */
+	private static int signalsDeclared(byte[] eia) {
+		int length = EIA.getByteLengthAt(EIA.NUMBER_OF_ATTRIBUTES - 1); // the last field
+		String field = new String(eia, EIA.BYTES_OF_EIA - length, length, StandardCharsets.US_ASCII).trim();
+		try {
+			return Math.max(0, Integer.parseInt(field));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	private static int readFully(InputStream in, byte[] buffer, int offset, int length) throws IOException {
+		int read = 0;
+		while (read < length) {
+			int n = in.read(buffer, offset + read, length - read);
+			if (n < 0)
+				break;
+			read += n;
+		}
+		return read;
+	}
+
+	/**
+	 * Copies a request body to a temporary EDF file through the buffer of this thread
+	 * @return the file, or null if the body is larger than maxUpload bytes
+	 */
+	private static Path spool(InputStream body, long maxUpload) throws IOException {
+		Path file = Files.createTempFile("edf-upload", ".edf");
+		byte[] buffer = buffers.get();
+		OutputStream out = Files.newOutputStream(file);
+		long copied = 0;
+		try {
+			int n;
+			while ((n = body.read(buffer)) > 0) {
+				copied += n;
+				if (copied > maxUpload)
+					break;
+				out.write(buffer, 0, n);
+			}
+		} finally {
+			out.close();
+			body.close();
+		}
+		if (copied > maxUpload) {
+			Files.deleteIfExists(file);
+			return null;
+		}
+		return file;
+	}
+
+	private static long parseLength(String contentLength) {
+		try {
+			return Long.parseLong(contentLength.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private void sendTooLarge(HttpExchange exchange) throws IOException {
+		send(exchange, 413, "application/json", "{\"error\":\"the upload is larger than " + maxUpload + " bytes\"}\n");
+	}
+
+	private static String toJson(String name, ValidationResult result) {
+		List<Incompliance> incompliances = result.getIncompliances();
+		StringBuilder sb = new StringBuilder(64 + 160 * incompliances.size());
+		sb.append("{\"file\":");
+		NdjsonReportFormatter.appendString(sb, name);
+		if (result.hasError()) {
+			sb.append(",\"error\":");
+			NdjsonReportFormatter.appendString(sb, result.getError());
+			return sb.append("}\n").toString();
+		}
+		sb.append(",\"valid\":").append(result.isValid());
+		sb.append(",\"incompliances\":[");
+		for (int i = 0; i < incompliances.size(); i++) {
+			sb.append(i == 0 ? "{" : ",{");
+			NdjsonReportFormatter.appendFields(sb, incompliances.get(i));
+			sb.append('}');
+		}
+		return sb.append("]}\n").toString();
+	}
+
+	private static Map<String,String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+		Map<String,String> query = new HashMap<String,String>();
+		if (rawQuery == null)
+			return query;
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0)
+				query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+						URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}
+		return query;
+	}
+
+	private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try {
+			out.write(bytes);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Runs the service until the JVM is stopped
+	 * @param args [port] [parallelism] [upload limit in bytes]
+	 * @throws IOException if the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final ValidationServer server = new ValidationServer(port, parallelism);
+		if (args.length > 2)
+			server.setMaxUpload(Long.parseLong(args[2]));
+		server.start();
+		ValidationMetrics.registerMBeans();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop(2);
+			}
+		});
+		System.out.println("Validating on http://localhost:" + server.getPort() + "/validate");
+	}
+}
@@ -0,0 +1,362 @@
+package tools.validator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.report.ArchiveSummary;
+import tools.validator.report.ReportFormat;
+import tools.validator.rules.HeaderRule;
+import tools.validator.rules.RuleRegistry;
+import tools.validator.utils.Verbosity;
+
+/**
+ * The command line entry point: validates any number of EDF files in one JVM.
+ * Files are given as paths, directories (searched for *.edf), globs, or as a list
+ * on standard input, one path per line or NUL-separated as written by find -print0.
+ * The exit code tells the outcome of the whole run. In watch and serve modes, or with --jmx,
+ * the validation metrics are registered as MXBeans to be watched with any JMX console;
+ * a short run does not pay for starting the MBean server otherwise
+ */
+public class ValidatorCli {
+
+	/** every file was validated and is valid */
+	public static final int EXIT_VALID = 0;
+	/** every file was validated, and some have Incompliances */
+	public static final int EXIT_INCOMPLIANCES = 1;
+	/** some files could not be validated, e.g. they cannot be read */
+	public static final int EXIT_IO_ERROR = 2;
+	/** the command line is wrong */
+	public static final int EXIT_USAGE = 3;
+
+	private static final long METRICS_PERIOD = 15000; // ms between two metrics files in watch and serve modes
+
+	private static final String USAGE =
+			"Usage: edf-validator [options] [FILE | DIR | GLOB | -]...\n" +
+			"Validates EDF files; - reads the paths from standard input, one per line or NUL-separated.\n" +
+			"Options:\n" +
+			"  -j, --jobs N          files validated at the same time (default: number of processors)\n" +
+			"  -o, --log FILE        report file, appended to (default: log.txt)\n" +
+			"  -f, --format FORMAT   report format: text, ndjson or csv (default: text)\n" +
+			"  -v, --verbosity LEVEL screen output: silent, summary, file or trace (default: summary)\n" +
+			"  -c, --cache FILE      skip files unchanged since their verdict was cached in FILE\n" +
+			"      --digest          identify cached files by content digest rather than modification time\n" +
+			"      --fail-fast       stop each file at its first critical incompliance, for triage\n" +
+			"      --summary         report the totals of the run: failures per rule, record durations,\n" +
+			"                        distinct labels and patient IDs, sampling rates per label;\n" +
+			"                        rather than a section per file\n" +
+			"  -w, --watch DIR       validate the EDF files landing in DIR until interrupted\n" +
+			"      --quiet-period MS time a watched file must stay unchanged (default: 2000)\n" +
+			"      --serve PORT      answer validation requests on http://localhost:PORT/validate\n" +
+			"      --jmx             register the validation metrics as MXBeans, as watch and serve modes do\n" +
+			"      --metrics FILE    write the validation metrics as a Prometheus text file, at the end of\n" +
+			"                        the run, or every 15 s while watching or serving\n" +
+			"      --disable RULE    skip a header rule, or all the rules named RULE.*, e.g. esa.reserved\n" +
+			"      --list-rules      print the header rules, and whether they are enabled\n" +
+			"  -h, --help            print this help\n" +
+			"Exit codes: 0 all files valid, 1 Incompliances found, 2 files not validated, 3 bad usage\n";
+
+	/**
+	 * Runs the command line and exits with its exit code.
+	 * In watch and serve modes, runs until the JVM is stopped
+	 * @param args the command line arguments
+	 */
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Runs the command line
+	 * @param args the command line arguments
+	 * @return the exit code
+	 */
+	public static int run(String[] args) {
+		int jobs = Runtime.getRuntime().availableProcessors();
+		String log = "log.txt";
+		ReportFormat format = ReportFormat.TEXT;
+		Verbosity verbosity = Verbosity.SUMMARY;
+		String cacheFile = null;
+		boolean digest = false;
+		boolean failFast = false;
+		boolean summary = false;
+		String watchDirectory = null;
+		long quietPeriod = WatchValidator.DEFAULT_QUIET_PERIOD;
+		int servePort = -1;
+		String metricsFile = null;
+		boolean jmx = false;
+		RuleRegistry rules = null;
+		boolean listRules = false;
+		List<String> operands = new ArrayList<String>();
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-h") || arg.equals("--help")) {
+					System.out.print(USAGE);
+					return EXIT_VALID;
+				} else if (arg.equals("-j") || arg.equals("--jobs")) {
+					jobs = (int) number(value(args, ++i, arg), arg);
+					if (jobs < 1)
+						throw new IllegalArgumentException("--jobs must be at least 1");
+				} else if (arg.equals("-o") || arg.equals("--log")) {
+					log = value(args, ++i, arg);
+				} else if (arg.equals("-f") || arg.equals("--format")) {
+					format = ReportFormat.valueOf(choice(value(args, ++i, arg), ReportFormat.values(), arg));
+				} else if (arg.equals("-v") || arg.equals("--verbosity")) {
+					verbosity = Verbosity.valueOf(choice(value(args, ++i, arg), Verbosity.values(), arg));
+				} else if (arg.equals("-c") || arg.equals("--cache")) {
+					cacheFile = value(args, ++i, arg);
+				} else if (arg.equals("--digest")) {
+					digest = true;
+				} else if (arg.equals("--fail-fast")) {
+					failFast = true;
+				} else if (arg.equals("--summary")) {
+					summary = true;
+				} else if (arg.equals("-w") || arg.equals("--watch")) {
+					watchDirectory = value(args, ++i, arg);
+				} else if (arg.equals("--quiet-period")) {
+					quietPeriod = number(value(args, ++i, arg), arg);
+				} else if (arg.equals("--serve")) {
+					servePort = (int) number(value(args, ++i, arg), arg);
+				} else if (arg.equals("--jmx")) {
+					jmx = true;
+				} else if (arg.equals("--metrics")) {
+					metricsFile = value(args, ++i, arg);
+				} else if (arg.equals("--disable")) {
+					if (rules == null)
+						rules = RuleRegistry.standard();
+					rules.setEnabled(value(args, ++i, arg), false);
+				} else if (arg.equals("--list-rules")) {
+					listRules = true;
+				} else if (arg.equals("--")) {
+					while (++i < args.length)
+						operands.add(args[i]);
+				} else if (arg.startsWith("-") && !arg.equals("-")) {
+					throw new IllegalArgumentException("unknown option " + arg);
+				} else {
+					operands.add(arg);
+				}
+			}
+			if (operands.isEmpty() && watchDirectory == null && servePort < 0 && !listRules)
+				throw new IllegalArgumentException("no EDF file given");
+		} catch (IllegalArgumentException e) {
+			System.err.println("edf-validator: " + e.getMessage());
+			System.err.print(USAGE);
+			return EXIT_USAGE;
+		}
+
+		if (rules != null)
+			RuleRegistry.setDefault(rules);
+		if (listRules) {
+			RuleRegistry registry = RuleRegistry.getDefault();
+			for (HeaderRule rule : registry.getRules())
+				System.out.println((registry.isEnabled(rule.getName()) ? "  " : "- ") + rule);
+			return EXIT_VALID;
+		}
+
+		VerdictCache cache = cacheFile == null ? null : new VerdictCache(cacheFile, digest);
+		if (jmx || watchDirectory != null || servePort >= 0)
+			ValidationMetrics.registerMBeans();
+		try {
+			if (servePort >= 0) {
+				final ValidationServer server = new ValidationServer(servePort, jobs);
+				server.start();
+				if (metricsFile != null)
+					ValidationMetrics.startPrometheusDump(metricsFile, METRICS_PERIOD);
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						server.stop(2);
+						ValidationMetrics.stopPrometheusDump();
+					}
+				});
+				System.out.println("Validating on http://localhost:" + server.getPort() + "/validate");
+				Thread.currentThread().join(); // until the JVM is stopped
+				return EXIT_VALID;
+			}
+			if (watchDirectory != null) {
+				final WatchValidator watcher = new WatchValidator(jobs, log);
+				watcher.setVerbosity(verbosity);
+				watcher.setFormat(format);
+				watcher.setCache(cache);
+				watcher.setFailFast(failFast);
+				watcher.setQuietPeriod(quietPeriod);
+				final CountDownLatch done = new CountDownLatch(1);
+				Runtime.getRuntime().addShutdownHook(new Thread() {
+					@Override
+					public void run() {
+						watcher.stop();
+						try {
+							done.await(10, TimeUnit.SECONDS); // let the report and the cache be written
+						} catch (InterruptedException e) {
+							// exit anyway
+						}
+					}
+				});
+				if (metricsFile != null)
+					ValidationMetrics.startPrometheusDump(metricsFile, METRICS_PERIOD);
+				try {
+					watcher.watch(watchDirectory);
+				} finally {
+					ValidationMetrics.stopPrometheusDump();
+					done.countDown();
+				}
+				return watcher.getFilesWithErrors() > 0 ? EXIT_IO_ERROR
+						: watcher.getFilesWithIncompliances() > 0 ? EXIT_INCOMPLIANCES : EXIT_VALID;
+			}
+
+			List<String> edfPaths = new ArrayList<String>();
+			for (String operand : operands) {
+				if (operand.equals("-"))
+					edfPaths.addAll(readPaths(System.in));
+				else
+					edfPaths.addAll(expand(operand));
+			}
+			BatchValidator validator = new BatchValidator(jobs, log);
+			validator.setVerbosity(verbosity);
+			validator.setFormat(format);
+			validator.setCache(cache);
+			validator.setFailFast(failFast);
+			if (summary) {
+				validator.setSummary(new ArchiveSummary());
+				validator.setFileSections(false);
+			}
+			validator.validate(edfPaths);
+			if (metricsFile != null)
+				ValidationMetrics.writePrometheus(metricsFile);
+			return validator.getFilesWithErrors() > 0 ? EXIT_IO_ERROR
+					: validator.getFilesWithIncompliances() > 0 ? EXIT_INCOMPLIANCES : EXIT_VALID;
+		} catch (IOException e) {
+			System.err.println("edf-validator: " + e.getMessage());
+			return EXIT_IO_ERROR;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return EXIT_IO_ERROR;
+		}
+	}
+
+	private static String value(String[] args, int i, String option) {
+		if (i >= args.length)
+			throw new IllegalArgumentException(option + " needs a value");
+		return args[i];
+	}
+
+	private static long number(String value, String option) {
+		try {
+			long number = Long.parseLong(value);
+			if (number >= 0 && number <= Integer.MAX_VALUE)
+				return number;
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		throw new IllegalArgumentException(option + " needs a non-negative integer, not " + value);
+	}
+
+	/**
+	 * Checks a value against the constants of an enum, in any case
+	 * @return the name of the constant
+	 */
+	private static String choice(String value, Enum<?>[] constants, String option) {
+		for (Enum<?> constant : constants)
+			if (constant.name().equalsIgnoreCase(value))
+				return constant.name();
+		throw new IllegalArgumentException(option + " must be one of " +
+				Arrays.toString(constants).toLowerCase(Locale.ROOT) + ", not " + value);
+	}
+
+	/**
+	 * Reads a list of paths, NUL-separated if the list holds a NUL, otherwise one per line
+	 * @param in the list
+	 * @return the paths in the order of the list, empty entries skipped
+	 * @throws IOException if the list cannot be read
+	 */
+	public static List<String> readPaths(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			bytes.write(buffer, 0, n);
+		String list = bytes.toString(System.getProperty("sun.jnu.encoding", "UTF-8"));
+		boolean nul = list.indexOf('\0') >= 0;
+		List<String> paths = new ArrayList<String>();
+		for (String path : list.split(nul ? "\0" : "\r?\n")) {
+			if (!nul)
+				path = path.trim();
+			if (!path.isEmpty())
+				paths.add(path);
+		}
+		return paths;
+	}
+
+	/**
+	 * Expands an operand into EDF file paths: a directory into the EDF files of its tree,
+	 * a glob (*, ?, [...] or {...}) into the matching files, anything else into itself,
+	 * so a missing file is reported as not validated
+	 * @param operand the operand
+	 * @return the paths, sorted for directories and globs
+	 * @throws IOException if a directory cannot be walked
+	 */
+	public static List<String> expand(String operand) throws IOException {
+		if (!isGlob(operand)) {
+			if (new File(operand).isDirectory())
+				return BatchValidator.listEdfFiles(operand);
+			return Collections.singletonList(operand);
+		}
+		// walk from the deepest directory free of glob characters, 
+		// only as deep as the glob reaches unless it holds **
+		int firstGlob = 0;
+		while (!isGlob(operand.substring(0, firstGlob + 1)))
+			firstGlob++;
+		int cut = Math.max(operand.lastIndexOf('/', firstGlob), operand.lastIndexOf(File.separatorChar, firstGlob)) + 1;
+		Path base = Paths.get(cut == 0 ? "." : operand.substring(0, cut));
+		final String prefix = cut == 0 ? "." + File.separator : "";
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + prefix + operand);
+		int maxDepth = operand.indexOf("**") >= 0 ? Integer.MAX_VALUE : operand.substring(cut).split("[/\\\\]").length;
+		final List<String> paths = new ArrayList<String>();
+		if (!Files.isDirectory(base))
+			return paths;
+		Files.walkFileTree(base, EnumSet.noneOf(FileVisitOption.class), maxDepth, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && matcher.matches(file))
+					paths.add(file.toString().substring(prefix.length()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				return FileVisitResult.CONTINUE; // unreadable entries are skipped
+			}
+		});
+		Collections.sort(paths);
+		return paths;
+	}
+
+	private static boolean isGlob(String operand) {
+		for (int i = 0; i < operand.length(); i++) {
+			char c = operand.charAt(i);
+			if (c == '*' || c == '?' || c == '[' || c == '{')
+				return true;
+		}
+		return false;
+	}
+}
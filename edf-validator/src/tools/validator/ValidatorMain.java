@@ -4,18 +4,27 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.List;
 
+import tools.validator.data.DataLayout;
+import tools.validator.data.DataRecordVerifier;
+import tools.validator.data.DigitalRangeScanner;
 import tools.validator.header.EDFFileHeader;
 import tools.validator.header.ESAHeader;
-import tools.validator.table.EIATable;
-import tools.validator.table.ESATable;
+import tools.validator.metrics.DataScanEvent;
+import tools.validator.metrics.ReportWriteEvent;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
+import tools.validator.report.ArchiveSummary;
+import tools.validator.report.IncomplianceStore;
 import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+import tools.validator.utils.IncomplianceSink;
 import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
 
 public class ValidatorMain {
 	
-	public static String log = "log.txt";
-	
 	/**
 	 * Sets up the environment for conduct validation 
 	 * @param edfPath EDF file path
@@ -30,9 +39,18 @@ public class ValidatorMain {
 		this.edfPath = edfPath;
 		edfFile = new File(edfPath);
 		log = logPath;
-		aggregateIncompliances = new ArrayList<Incompliance>();
+		givenHeader = null;
 		return true;
 	}
+
+	/**
+	 * Sets the header of the file given to setup, already read, e.g. from an upload held in memory. 
+	 * The file is then neither opened nor required to exist, and only the headers are checked
+	 * @param header the EDF header
+	 */
+	public void setHeader(EDFFileHeader header) {
+		this.givenHeader = header;
+	}
 	
 	/**
 	 * Conducts validation using EDF file directory and the output directory
@@ -44,99 +62,253 @@ public class ValidatorMain {
 		
 		// perform validation
 		validate(edfPath, log);
-		System.out.println("Validation done.");
-		System.out.println("===============================================================================================");
+		if (verbosity.includes(Verbosity.SUMMARY)) {
+			System.out.println("Validation done.");
+			System.out.println("===============================================================================================");
+		}
+	}
+
+	/**
+	 * Sets how much is printed on screen while validating, Verbosity.TRACE by default
+	 * @param verbosity the verbosity level
+	 */
+	public void setVerbosity(Verbosity verbosity) {
+		this.verbosity = verbosity;
+	}
+
+	/**
+	 * Returns how much is printed on screen while validating
+	 * @return the verbosity level
+	 */
+	public Verbosity getVerbosity() {
+		return verbosity;
+	}
+
+	/**
+	 * Sets whether the data section is checked after the headers, true by default. 
+	 * Turned off to validate a header on its own, e.g. one uploaded without its data
+	 * @param checkDataRecords false to check the headers only
+	 */
+	public void setCheckDataRecords(boolean checkDataRecords) {
+		this.checkDataRecords = checkDataRecords;
+	}
+
+	/**
+	 * Sets whether validation stops at the first critical Incompliance, false by default. 
+	 * For triage, where whether the file is broken matters rather than every way it is: 
+	 * the ESA header is not checked once the EIA header has a critical Incompliance, 
+	 * and the data section not once either header has one
+	 * @param failFast true to stop at the first critical Incompliance
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Sets the summary of a run the header of the file is added to, once read, none by default. 
+	 * The header is added whether it is valid or not, as the summary describes the archive
+	 * @param summary the archive summary, null for none
+	 */
+	public void setSummary(ArchiveSummary summary) {
+		this.summary = summary;
 	}
 	
 		
 	private void validate(String edfPath, String log) {
-		System.out.println("===============================================================================================");
-		System.out.println("Start validating EDF: " + edfPath);
+		// the Incompliances go straight into the store, which spills them once too many
+		IncomplianceStore store = new IncomplianceStore();
+		try {
+			ValidationResult result = validateFile(store);
+			if (result.hasError()) {
+				ValidatorUtility.addElementIntoLog("   + : " + result.getError(), verbosity.includes(Verbosity.SUMMARY), log);
+				return;
+			}
+			ReportWriteEvent event = new ReportWriteEvent();
+			event.begin();
+			long start = System.nanoTime();
+			ValidatorUtility.generateInvalidReport(store, log, verbosity.includes(Verbosity.SUMMARY));
+			ValidationMetrics.record(Phase.REPORT_WRITING, start);
+			event.commit(edfPath, 0, 0, (int) store.size());
+		} finally {
+			try {
+				store.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	/**
+	 * Validates the EDF file given to setup without writing to the log. 
+	 * All state lives in this instance, so files can be validated concurrently 
+	 * using one instance per file
+	 * @return the Incompliances found, or the reason why the file could not be validated
+	 */
+	public ValidationResult validateFile() {
+		final ArrayList<Incompliance> incompliances = new ArrayList<Incompliance>();
+		ValidationResult result = validateFile(new IncomplianceSink() {
+			@Override
+			public void add(Incompliance incompliance) {
+				incompliances.add(incompliance);
+			}
+		});
+		if (!result.hasError())
+			result.setIncompliances(incompliances);
+		return result;
+	}
+
+	/**
+	 * Validates the EDF file given to setup, handing the Incompliances to a sink as they are found
+	 * @param sink receives the Incompliances
+	 * @return the reason why the file could not be validated, if any; the Incompliances are left to the sink
+	 */
+	private ValidationResult validateFile(IncomplianceSink sink) {
+		long start = System.nanoTime();
+		Collector collector = new Collector(sink);
+		ValidationResult result;
+		try {
+			result = checkFile(collector);
+		} catch (IOException e) {
+			result = new ValidationResult(edfPath);
+			result.setError("Cannot keep the Incompliances: " + e.getMessage());
+		}
+		ValidationMetrics.record(Phase.FILE, start);
+		ValidationMetrics.countFile(result.hasError(), !result.hasError() && collector.found == 0);
+		return result;
+	}
+
+	private ValidationResult checkFile(Collector collector) throws IOException {
+		final boolean trace = verbosity.includes(Verbosity.TRACE);
+		if (verbosity.includes(Verbosity.FILE)) {
+			System.out.println("===============================================================================================");
+			System.out.println("Start validating EDF: " + edfPath);
+		}
+		ValidationResult result = new ValidationResult(edfPath);
 		if(edfFile == null || edfPath == null ||edfPath == "") {
-			ValidatorUtility.addElementIntoLog("   + : EDF file path is not valid", true, log);	
-			return;
+			result.setError("EDF file path is not valid");
+			return result;
 		}			
 		
-		if (edfFile.exists()) {
+		if (givenHeader != null || edfFile.exists()) {
 			// produce EDF header
-			yieldEDFHeader();
-			// produce EIA table
-			yieldEIATable();
-			// produce ESA table
-			yieldESATable();
+			if (givenHeader != null)
+				edfHeader = givenHeader;
+			else
+				yieldEDFHeader();
+			if (edfHeader == null) {
+				result.setError("Cannot open EDF file");
+				return result;
+			}
+			if (edfHeader.getEiaHeader() == null) {
+				result.setError("Cannot read EDF header");
+				return result;
+			}
+			if (summary != null)
+				summary.addHeader(edfHeader);
 
-			if(eiaTable == null)
-				eiaIncompliances = null;
-			else 
-				eiaIncompliances = eiaTable.parseEIATable(edfPath);
+			// validate the headers directly, no table is needed
+			long start = System.nanoTime();
+			eiaIncompliances = ValidatorUtility.parseEIAHeader(edfHeader.getEiaHeader(), edfPath, verbosity, failFast);
 			
-			if(esaTable == null)
-				esaIncompliances = null;
+			ESAHeader esaHeader = edfHeader.getEsaHeader();
+			collector.addAll(eiaIncompliances);
+			// the attributes past the end of the file are reported as empty fields by the rules
+			if (esaHeader != null && esaHeader.isTruncated() && !(failFast && collector.critical))
+				collector.add(new Incompliance(IncomplianceCode.ESA_TRUNCATED, edfPath, 0, 0, Incompliance.index_incomp_src_esa));
+			if(esaHeader == null || failFast && collector.critical)
+				esaIncompliances = new ArrayList<Incompliance>();
 			else 
-				esaIncompliances = esaTable.parseESATable(edfPath);		
+				esaIncompliances = ValidatorUtility.parseESAHeader(esaHeader, edfPath, verbosity, failFast);		
+			ValidationMetrics.record(Phase.RULE_EVALUATION, start);
 			
-			if(!eiaIncompliances.isEmpty())
-				aggregateIncompliances.addAll(eiaIncompliances); // eiaIncompliances is null
-			System.out.println(">>> ----EIA incompliances size(): " + eiaIncompliances.size() + "----"); // test
+			if (trace) System.out.println(">>> ----EIA incompliances size(): " + eiaIncompliances.size() + "----"); // test
 			if(!esaIncompliances.isEmpty()) {
-				System.out.println(">>> ----ESA incompliances size(): " + esaIncompliances.size() + "----"); // test
-				for(Incompliance inc : esaIncompliances) {
-					aggregateIncompliances.add(inc);
+				if (trace) System.out.println(">>> ----ESA incompliances size(): " + esaIncompliances.size() + "----"); // test
+				collector.addAll(esaIncompliances);
+			}
+			
+			// then the data section: its structure by file-size arithmetic, 
+			// and only if the records can be located, the samples
+			if (esaHeader != null && checkDataRecords && givenHeader == null && !(failFast && collector.critical)) {
+				DataScanEvent event = new DataScanEvent();
+				event.begin();
+				start = System.nanoTime();
+				DataLayout layout = DataLayout.fromHeader(edfHeader, edfFile.length());
+				int found = collector.found;
+				collector.addAll(DataRecordVerifier.verify(layout, edfPath, failFast));
+				if (layout != null && layout.isConsistent()) {
+					try {
+						DigitalRangeScanner scanner = DigitalRangeScanner.fromHeader(layout, esaHeader);
+						scanner.setFailFast(failFast);
+						scanner.scan(edfFile, edfPath, collector);
+					} catch (IOException e) {
+						result.setError("Cannot read EDF data records");
+						return result;
+					}
 				}
+				ValidationMetrics.record(Phase.DATA_SCAN, start);
+				event.commit(edfPath, esaHeader.getNumberOfChannels(), 
+						layout != null && layout.isConsistent() ? layout.getNumberOfRecords() * layout.getRecordBytes() : 0, 
+						collector.found - found);
+				if (trace && collector.found > found)
+					System.out.println(">>> ----Data incompliances size(): " + (collector.found - found) + "----"); // test
 			}
-			if(aggregateIncompliances != null)
-				ValidatorUtility.generateInvalidReport(aggregateIncompliances);
 		} else {
-			System.out.println("EDF file: \n" + edfPath + "\ndoes not exist"); // test
-			// add the result to log
+			if (verbosity.includes(Verbosity.FILE)) System.out.println("EDF file: \n" + edfPath + "\ndoes not exist"); // test
+			result.setError("EDF file does not exist");
+		}
+		return result;
+	}
+	
+	/**
+	 * Hands the Incompliances of the file on to a sink as they are found, 
+	 * counting them against their rules and noting whether one is critical
+	 */
+	private static class Collector implements IncomplianceSink {
+		private final IncomplianceSink sink;
+		private int found = 0;
+		private boolean critical = false;
+
+		Collector(IncomplianceSink sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public void add(Incompliance incompliance) throws IOException {
+			sink.add(incompliance);
+			ValidationMetrics.countIncompliance(incompliance);
+			found++;
+			if (incompliance.getErrorLevel() == Incompliance.errorLevel_critical)
+				critical = true;
+		}
+
+		void addAll(List<Incompliance> incompliances) throws IOException {
+			for (Incompliance incompliance : incompliances)
+				add(incompliance);
 		}
 	}
 	
     private void yieldEDFHeader() {
         try {
+            long start = System.nanoTime();
             RandomAccessFile raf = new RandomAccessFile(edfFile, "r");
+            ValidationMetrics.record(Phase.OPEN, start);
             edfHeader = new EDFFileHeader(raf, edfFile);
 //            System.out.println(">>> Yield EDF header done"); // test
         } catch (IOException f) {
         	edfHeader = null;
-        	ValidatorUtility.addElementIntoLog("   + : Cannot open EDF file", true, log); // true: show on screen
         }
     }
     
-    /**
-     * Builds the EIA Table
-     */
-	private void yieldEIATable() {
-        // iniEiaTable of type EIATable
-        eiaTable = new EIATable(edfHeader);
-//        System.out.println(">>> Yield EIA table done"); // test
-    }
-    
-    /**
-     * Constructs ESA Tables, 
-     * one esa header corresponds to one esa table
-     */
-    private void yieldESATable() {
-    	// algorithm is:
-    	// 1. acquire the eiaHeader of the current file;
-    	// 2. construct the ESA table one channel after another;
-    	// 3. update the status.        	
-    	
-    	// Get ESAHeader from each EDF file header    	
-        ESAHeader esaHeader = edfHeader.getEsaHeader(); //1.
-        // Create ESATable using ESAHeader        
-        esaTable = new ESATable(esaHeader);
-        // configure the status        
-        esaTable.setSourceMasterFile(edfFile); // set source file
-//        System.out.println(">>> Yield ESA table done"); // test
-    }
-    
+    private String log = "log.txt";
+    private Verbosity verbosity = Verbosity.TRACE;
+    private boolean checkDataRecords = true;
+    private boolean failFast = false;
+    private ArchiveSummary summary = null;
     private String edfPath;
 	private File edfFile;
 	private EDFFileHeader edfHeader;
-	private ESATable esaTable;
-	private EIATable eiaTable;
+	private EDFFileHeader givenHeader = null;
 	private ArrayList<Incompliance> eiaIncompliances;
 	private ArrayList<Incompliance> esaIncompliances;
-	private ArrayList<Incompliance> aggregateIncompliances;
 }
@@ -0,0 +1,421 @@
+package tools.validator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tools.validator.rules.RuleRegistry;
+import tools.validator.utils.Incompliance;
+
+/**
+ * A persistent cache of validation results, so a batch run only validates the files
+ * that are new or changed since the run that filled the cache.
+ * A file is identified by its path, size and modification time, or, if content
+ * digests are enabled, by its path, size and SHA-256 digest.
+ * The cache is stamped with the version of the rules and the header rules enabled;
+ * a cache written under other rules is not used, but its verdicts still tell which files newly fail or pass.
+ * Files that could not be validated are never served from the cache.
+ * Lookups and stores may be done concurrently by the validation tasks
+ */
+public class VerdictCache {
+
+	/** bump when a rule changes in a way the class fingerprint would not show */
+	public static final int RULES_VERSION = 1;
+
+	private static final int MAGIC = 0x45444656; // "EDFV"
+	private static final int FORMAT_VERSION = 3;
+
+	private static final byte VERDICT_PASS = 0;
+	private static final byte VERDICT_FAIL = 1;
+	private static final byte VERDICT_ERROR = 2;
+
+	// the classes holding the rules, whose bytes make up the rules stamp
+	private static final String[] RULE_CLASSES = {
+		"/tools/validator/ValidatorMain.class",
+		"/tools/validator/utils/ValidatorUtility.class",
+		"/tools/validator/utils/FieldLexer.class",
+		"/tools/validator/utils/Incompliance.class",
+		"/tools/validator/utils/IncomplianceCode.class",
+		"/tools/validator/header/LabelIndex.class",
+		"/tools/validator/data/DataLayout.class",
+		"/tools/validator/data/DataRecordVerifier.class",
+		"/tools/validator/data/DigitalRangeScanner.class",
+		"/tools/validator/rules/Check.class",
+		"/tools/validator/rules/FieldValues.class",
+		"/tools/validator/rules/HeaderEvaluator.class",
+		"/tools/validator/rules/HeaderRule.class",
+		"/tools/validator/rules/HeaderType.class",
+		"/tools/validator/rules/RuleRegistry.class",
+	};
+	// the checks are the bodies of the Check constants, compiled to Check$1, Check$2..., 
+	// and so are the formats of the descriptions with arguments
+	private static final String[] CONSTANT_BODIES = {
+		"/tools/validator/rules/Check$",
+		"/tools/validator/utils/IncomplianceCode$",
+	};
+	private static String rulesStamp = null;
+
+	private final File cacheFile;
+	private final boolean useDigest;
+	private final String stamp;
+	private final ConcurrentHashMap<String,Entry> entries = new ConcurrentHashMap<String,Entry>();
+	private boolean stale = false; // true if the cache file was written under other rules
+
+	private final AtomicInteger hits = new AtomicInteger();
+	private final AtomicInteger misses = new AtomicInteger();
+	private final List<String> newlyFailing = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> newlyPassing = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * Constructs a cache backed by a file, and loads the file if it exists.
+	 * An unreadable or corrupt cache file is treated as empty
+	 * @param cacheFile the cache file path
+	 * @param useDigest true to identify files by content digest rather than modification time
+	 */
+	public VerdictCache(String cacheFile, boolean useDigest) {
+		this.cacheFile = new File(cacheFile);
+		this.useDigest = useDigest;
+		this.stamp = getRulesStamp();
+		if (this.cacheFile.exists()) {
+			try {
+				load();
+			} catch (IOException e) {
+				entries.clear();
+				System.err.println("Verdict cache not loaded, starting empty: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns the stamp of the rules this program validates with: RULES_VERSION,
+	 * a digest of the classes holding the rules, so a rebuilt rule set
+	 * invalidates the cache without anybody bumping the version, and the
+	 * fingerprint of the header rules enabled in the default RuleRegistry
+	 * @return the rules stamp
+	 */
+	public static synchronized String getRulesStamp() {
+		if (rulesStamp == null) {
+			StringBuilder sb = new StringBuilder().append(RULES_VERSION);
+			try {
+				MessageDigest md = MessageDigest.getInstance("SHA-256");
+				for (String name : RULE_CLASSES) {
+					InputStream in = VerdictCache.class.getResourceAsStream(name);
+					if (in == null)
+						continue;
+					try {
+						update(md, in);
+					} finally {
+						in.close();
+					}
+				}
+				for (String bodies : CONSTANT_BODIES) {
+					for (int i = 1; ; i++) {
+						InputStream in = VerdictCache.class.getResourceAsStream(bodies + i + ".class");
+						if (in == null)
+							break;
+						try {
+							update(md, in);
+						} finally {
+							in.close();
+						}
+					}
+				}
+				sb.append(':').append(toHex(md.digest()));
+			} catch (IOException | NoSuchAlgorithmException e) {
+				// the version alone then
+			}
+			rulesStamp = sb.toString();
+		}
+		return rulesStamp + ':' + RuleRegistry.getDefault().getFingerprint();
+	}
+
+	/**
+	 * Reads the identity of a file as it is now. Taken before the file is validated,
+	 * so a file changed during its validation is validated again by the next run
+	 * @param edfPath the EDF file path
+	 * @return the identity, or null if the file cannot be read
+	 */
+	public FileIdentity identify(String edfPath) {
+		File file = new File(edfPath);
+		if (!file.isFile())
+			return null;
+		long size = file.length();
+		long lastModified = file.lastModified();
+		byte[] digest = null;
+		if (useDigest) {
+			try {
+				digest = digestOf(file);
+			} catch (IOException e) {
+				return null;
+			}
+		}
+		return new FileIdentity(file.getAbsolutePath(), size, lastModified, digest);
+	}
+
+	/**
+	 * Looks up the result of a file, and counts a hit or a miss
+	 * @param edfPath the EDF file path, as the result should carry it
+	 * @param identity the identity of the file, from identify
+	 * @return the cached result, or null if the file has to be validated
+	 */
+	public ValidationResult lookup(String edfPath, FileIdentity identity) {
+		Entry entry = stale || identity == null ? null : entries.get(identity.path);
+		if (entry == null || entry.verdict == VERDICT_ERROR || !entry.matches(identity, useDigest)) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		ValidationResult result = new ValidationResult(edfPath);
+		ArrayList<Incompliance> incompliances = new ArrayList<Incompliance>(entry.incompliances.length);
+		for (Incompliance incompliance : entry.incompliances)
+			incompliances.add(copyOf(incompliance, edfPath));
+		result.setIncompliances(incompliances);
+		result.setCached(true);
+		return result;
+	}
+
+	/**
+	 * Stores the result of a file just validated, and records whether the file
+	 * newly fails or newly passes. A file not seen before that fails newly fails
+	 * @param identity the identity of the file taken before it was validated
+	 * @param result the result of the validation
+	 */
+	public void store(FileIdentity identity, ValidationResult result) {
+		if (identity == null || result.isCached())
+			return;
+		byte verdict = result.hasError() ? VERDICT_ERROR : result.isValid() ? VERDICT_PASS : VERDICT_FAIL;
+		Incompliance[] incompliances = result.getIncompliances().toArray(new Incompliance[0]);
+		Entry previous = entries.put(identity.path, new Entry(identity, verdict, incompliances, true));
+		boolean failedBefore = previous != null && previous.verdict != VERDICT_PASS;
+		if (verdict == VERDICT_PASS && failedBefore)
+			newlyPassing.add(result.getEdfPath());
+		else if (verdict != VERDICT_PASS && !failedBefore)
+			newlyFailing.add(result.getEdfPath());
+	}
+
+	/**
+	 * Writes the cache to its file, replacing the file only once it is complete.
+	 * Entries left from other rules are dropped
+	 * @throws IOException if the cache file cannot be written
+	 */
+	public void save() throws IOException {
+		File parent = cacheFile.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		File temp = new File(cacheFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(stamp);
+			out.writeBoolean(useDigest);
+			for (Entry entry : entries.values())
+				if (entry.current)
+					entry.writeTo(out);
+			out.writeUTF(""); // end of entries
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private void load() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+				throw new IOException("not a verdict cache: " + cacheFile);
+			// written under other rules, or keyed otherwise: only the verdicts are of use
+			boolean sameRules = in.readUTF().equals(stamp);
+			boolean sameIdentity = in.readBoolean() == useDigest;
+			stale = !sameRules || !sameIdentity;
+			String path;
+			while (!(path = in.readUTF()).isEmpty())
+				entries.put(path, Entry.readFrom(path, in, !stale));
+		} catch (EOFException e) {
+			throw new IOException("truncated verdict cache: " + cacheFile);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns the number of files served from the cache
+	 * @return the number of hits
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of files looked up but not served from the cache
+	 * @return the number of misses
+	 */
+	public int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Returns the share of the files looked up that were served from the cache
+	 * @return the hit rate in [0, 1], 0 if nothing was looked up
+	 */
+	public double getHitRate() {
+		int lookups = hits.get() + misses.get();
+		return lookups == 0 ? 0 : (double) hits.get() / lookups;
+	}
+
+	/**
+	 * Tests whether the cache file was written under other rules or another
+	 * identity, in which case every file is validated again
+	 * @return true if the loaded entries are not used
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	/**
+	 * Returns the files validated since the cache was loaded that fail now,
+	 * but passed before or were not known
+	 * @return the EDF file paths, sorted
+	 */
+	public List<String> getNewlyFailing() {
+		return sorted(newlyFailing);
+	}
+
+	/**
+	 * Returns the files validated since the cache was loaded that pass now, but failed before
+	 * @return the EDF file paths, sorted
+	 */
+	public List<String> getNewlyPassing() {
+		return sorted(newlyPassing);
+	}
+
+	private static List<String> sorted(List<String> paths) {
+		ArrayList<String> copy;
+		synchronized (paths) {
+			copy = new ArrayList<String>(paths);
+		}
+		Collections.sort(copy);
+		return copy;
+	}
+
+	private static Incompliance copyOf(Incompliance incompliance, String fileName) {
+		return new Incompliance(incompliance, fileName);
+	}
+
+	private static byte[] digestOf(File file) throws IOException {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			InputStream in = new FileInputStream(file);
+			try {
+				update(md, in);
+			} finally {
+				in.close();
+			}
+			return md.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e); // every Java platform has SHA-256
+		}
+	}
+
+	private static void update(MessageDigest md, InputStream in) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while ((n = in.read(buffer)) > 0)
+			md.update(buffer, 0, n);
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return sb.toString();
+	}
+
+	/**
+	 * What identifies the content of a file between runs
+	 */
+	public static class FileIdentity {
+		private final String path; // absolute
+		private final long size;
+		private final long lastModified;
+		private final byte[] digest; // null unless content digests are enabled
+
+		FileIdentity(String path, long size, long lastModified, byte[] digest) {
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.digest = digest;
+		}
+	}
+
+	/**
+	 * The verdict of a file, with the Incompliances to report again on a hit
+	 */
+	private static class Entry {
+		final FileIdentity identity;
+		final byte verdict;
+		final Incompliance[] incompliances;
+		final boolean current; // validated under the rules of this program
+
+		Entry(FileIdentity identity, byte verdict, Incompliance[] incompliances, boolean current) {
+			this.identity = identity;
+			this.verdict = verdict;
+			this.incompliances = incompliances;
+			this.current = current;
+		}
+
+		boolean matches(FileIdentity other, boolean useDigest) {
+			if (identity.size != other.size)
+				return false;
+			if (useDigest)
+				return Arrays.equals(identity.digest, other.digest);
+			return identity.lastModified == other.lastModified;
+		}
+
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeUTF(identity.path);
+			out.writeLong(identity.size);
+			out.writeLong(identity.lastModified);
+			out.writeShort(identity.digest == null ? 0 : identity.digest.length);
+			if (identity.digest != null)
+				out.write(identity.digest);
+			out.writeByte(verdict);
+			out.writeInt(incompliances.length);
+			for (Incompliance incompliance : incompliances)
+				incompliance.writeTo(out);
+		}
+
+		static Entry readFrom(String path, DataInputStream in, boolean current) throws IOException {
+			long size = in.readLong();
+			long lastModified = in.readLong();
+			byte[] digest = null;
+			int digestLength = in.readShort();
+			if (digestLength > 0) {
+				digest = new byte[digestLength];
+				in.readFully(digest);
+			}
+			byte verdict = in.readByte();
+			Incompliance[] incompliances = new Incompliance[in.readInt()];
+			for (int i = 0; i < incompliances.length; i++)
+				incompliances[i] = Incompliance.readFrom(in, path);
+			return new Entry(new FileIdentity(path, size, lastModified, digest), verdict, incompliances, current);
+		}
+	}
+}
@@ -0,0 +1,434 @@
+package tools.validator;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tools.validator.metrics.ReportWriteEvent;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
+import tools.validator.report.AsyncReportWriter;
+import tools.validator.report.ReportFormat;
+import tools.validator.report.ReportFormatter;
+import tools.validator.utils.MyDate;
+import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
+
+/**
+ * Watches a directory tree and validates each EDF file landing in it once the file
+ * has stopped growing: its size and modification time must stay the same for
+ * a quiet period after the last change seen. Files are validated on a bounded pool,
+ * and each verdict is appended to the report and flushed as soon as it is known.
+ * The watching thread sleeps in the WatchService while nothing happens
+ */
+public class WatchValidator {
+
+	/** default time a file must stay unchanged before it is validated, in milliseconds */
+	public static final long DEFAULT_QUIET_PERIOD = 2000;
+
+	private static final String separator =
+			"===============================================================================================";
+
+	private final int parallelism;
+	private final String log;
+	private Verbosity verbosity = Verbosity.SUMMARY;
+	private ReportFormat format = ReportFormat.TEXT;
+	private VerdictCache cache = null;
+	private boolean failFast = false;
+	private long quietPeriod = DEFAULT_QUIET_PERIOD;
+
+	private volatile WatchService watcher = null;
+	private volatile boolean stopped = false;
+	private final Map<WatchKey,Path> directories = new HashMap<WatchKey,Path>();
+	private final Map<Path,Candidate> candidates = new HashMap<Path,Candidate>(); // files still changing
+	private final Map<Path,Long> validated = new HashMap<Path,Long>(); // modification time when validated
+
+	private final AtomicInteger filesValidated = new AtomicInteger();
+	private final AtomicInteger filesWithIncompliances = new AtomicInteger();
+	private final AtomicInteger filesWithErrors = new AtomicInteger();
+	private final AtomicLong numberOfIncompliances = new AtomicLong();
+
+	/**
+	 * Constructs a watch validator
+	 * @param parallelism the number of files validated at the same time
+	 * @param log log file path, appended to for as long as the watch goes on
+	 */
+	public WatchValidator(int parallelism, String log) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		this.parallelism = parallelism;
+		this.log = log;
+	}
+
+	/**
+	 * Sets how much is printed on screen while watching, Verbosity.SUMMARY by default
+	 * @param verbosity the verbosity level
+	 */
+	public void setVerbosity(Verbosity verbosity) {
+		this.verbosity = verbosity;
+	}
+
+	/**
+	 * Sets the format of the report, ReportFormat.TEXT by default
+	 * @param format the report format
+	 */
+	public void setFormat(ReportFormat format) {
+		this.format = format;
+	}
+
+	/**
+	 * Sets a cache of verdicts, none by default. It is saved when the watch stops
+	 * @param cache the verdict cache, null for none
+	 */
+	public void setCache(VerdictCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets whether each file is validated only until its first critical Incompliance, false by default
+	 * @param failFast true to stop at the first critical Incompliance of each file
+	 * @see BatchValidator#setFailFast(boolean)
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Sets how long a file must stay unchanged before it is validated
+	 * @param quietPeriod the quiet period in milliseconds
+	 */
+	public void setQuietPeriod(long quietPeriod) {
+		if (quietPeriod < 0)
+			throw new IllegalArgumentException("quiet period cannot be negative");
+		this.quietPeriod = quietPeriod;
+	}
+
+	/**
+	 * Watches a directory tree until stop is called or the thread is interrupted.
+	 * Files already in the tree are not validated, only those created or changed
+	 * while watching. Validations in progress are finished before this returns
+	 * @param directory the root of the directory tree
+	 * @throws IOException if the tree cannot be watched, the log cannot be written or the cache cannot be saved
+	 */
+	public void watch(String directory) throws IOException {
+		Path root = Paths.get(directory).toAbsolutePath();
+		AsyncReportWriter report = new AsyncReportWriter(log);
+		ReportFormatter formatter = format.newFormatter();
+		ThreadPoolExecutor workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(parallelism * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+		watcher = FileSystems.getDefault().newWatchService();
+		try {
+			registerTree(root);
+			boolean summary = verbosity.includes(Verbosity.SUMMARY);
+			logSummary(separator, summary, report);
+			logSummary("  >>> User start watching " + root + " at: " + MyDate.currentDateTime(), summary, report);
+			if (!formatter.header().isEmpty())
+				report.write(formatter.header());
+			report.flush();
+
+			loop(workers, formatter, report);
+
+			workers.shutdown();
+			while (!workers.awaitTermination(1, TimeUnit.SECONDS))
+				; // let the files in progress finish
+			logSummary(separator, summary, report);
+			logSummary("  >>> User stop watching at: " + MyDate.currentDateTime(), summary, report);
+			logSummary("  >>> Files validated: " + filesValidated + ", with incompliances: " +
+					filesWithIncompliances + ", not validated: " + filesWithErrors, summary, report);
+			logSummary("  >>> Number of errors: " + numberOfIncompliances, summary, report);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			workers.shutdownNow();
+			watcher.close();
+			report.close();
+		}
+		if (cache != null)
+			cache.save();
+	}
+
+	/**
+	 * Stops a watch in progress. Can be called from any thread
+	 */
+	public void stop() {
+		stopped = true;
+		WatchService current = watcher;
+		if (current != null) {
+			try {
+				current.close(); // wakes the watching thread
+			} catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+
+	private void loop(ThreadPoolExecutor workers, ReportFormatter formatter, AsyncReportWriter report)
+			throws InterruptedException {
+//		Algorithm:
+//		1. sleep until a file event or the earliest quiet period to end, without waking up when nothing is pending;
+//		2. every creation or change of an EDF file (re)starts the quiet period of the file;
+//		3. a file whose quiet period ended is validated if unchanged, otherwise it waits another quiet period;
+		while (!stopped) {
+			WatchKey key;
+			try {
+				long wait = nextDeadline() - System.currentTimeMillis();
+				if (candidates.isEmpty())
+					key = watcher.take();
+				else
+					key = wait > 0 ? watcher.poll(wait, TimeUnit.MILLISECONDS) : watcher.poll(); // end of 1.
+			} catch (ClosedWatchServiceException e) {
+				break; // stopped
+			}
+
+			if (key != null) {
+				Path dir = directories.get(key);
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (dir == null)
+						break; // a directory no longer watched
+					if (event.kind() == OVERFLOW) {
+						rescan(); // events were lost
+						continue;
+					}
+					Path path = dir.resolve((Path) event.context());
+					if (event.kind() == ENTRY_DELETE) {
+						candidates.remove(path);
+						validated.remove(path);
+					} else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+						if (event.kind() == ENTRY_CREATE) {
+							try {
+								registerTree(path);
+								rescan(path); // files may have landed before the directory was watched
+							} catch (IOException e) {
+								System.err.println("Cannot watch " + path + ": " + e.getMessage());
+							}
+						}
+					} else if (BatchValidator.isEdfFile(path.getFileName().toString())) {
+						touch(path); // end of 2.
+					}
+				}
+				if (dir == null || !key.reset())
+					directories.remove(key);
+			}
+
+			long now = System.currentTimeMillis();
+			for (Iterator<Map.Entry<Path,Candidate>> it = candidates.entrySet().iterator(); it.hasNext(); ) {
+				Map.Entry<Path,Candidate> entry = it.next();
+				Candidate candidate = entry.getValue();
+				if (candidate.deadline > now)
+					continue;
+				Path path = entry.getKey();
+				long size = sizeOf(path);
+				long lastModified = lastModifiedOf(path);
+				if (size < 0) {
+					it.remove(); // gone
+				} else if (size != candidate.size || lastModified != candidate.lastModified) {
+					candidate.update(size, lastModified, now + quietPeriod);
+				} else {
+					it.remove();
+					validated.put(path, lastModified);
+					workers.execute(new WatchTask(path.toString(), formatter, report)); // end of 3.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts or restarts the quiet period of a file, unless the file is unchanged since it was validated
+	 */
+	private void touch(Path path) {
+		long size = sizeOf(path);
+		if (size < 0)
+			return;
+		long lastModified = lastModifiedOf(path);
+		Long done = validated.get(path);
+		if (done != null && done.longValue() == lastModified && !candidates.containsKey(path))
+			return;
+		Candidate candidate = candidates.get(path);
+		if (candidate == null)
+			candidates.put(path, new Candidate(size, lastModified, System.currentTimeMillis() + quietPeriod));
+		else
+			candidate.update(size, lastModified, System.currentTimeMillis() + quietPeriod);
+	}
+
+	private long nextDeadline() {
+		long next = Long.MAX_VALUE;
+		for (Candidate candidate : candidates.values())
+			next = Math.min(next, candidate.deadline);
+		return next;
+	}
+
+	private void registerTree(Path start) throws IOException {
+		Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				directories.put(dir.register(watcher, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Looks again at every watched directory after events were lost
+	 */
+	private void rescan() {
+		for (Path dir : directories.values().toArray(new Path[0]))
+			rescan(dir);
+	}
+
+	private void rescan(Path start) {
+		try {
+			for (String edfPath : BatchValidator.listEdfFiles(start.toString()))
+				touch(Paths.get(edfPath));
+		} catch (IOException e) {
+			System.err.println("Cannot list " + start + ": " + e.getMessage());
+		}
+	}
+
+	private static long sizeOf(Path path) {
+		try {
+			return Files.size(path);
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static long lastModifiedOf(Path path) {
+		try {
+			return Files.getLastModifiedTime(path).toMillis();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Logs a line of the watch summary. A machine readable report only holds records,
+	 * so the summary then only goes to the screen
+	 */
+	private void logSummary(String message, boolean showOnScreen, AsyncReportWriter report) {
+		if (!format.isMachineReadable())
+			ValidatorUtility.addElementIntoLog(message, showOnScreen, report);
+		else if (showOnScreen)
+			System.out.println(message);
+	}
+
+	/**
+	 * Returns the number of files validated so far
+	 * @return the number of files
+	 */
+	public int getFilesValidated() {
+		return filesValidated.get();
+	}
+
+	/**
+	 * Returns the number of files with Incompliances found so far
+	 * @return the number of files
+	 */
+	public int getFilesWithIncompliances() {
+		return filesWithIncompliances.get();
+	}
+
+	/**
+	 * Returns the number of files that could not be validated so far
+	 * @return the number of files
+	 */
+	public int getFilesWithErrors() {
+		return filesWithErrors.get();
+	}
+
+	/**
+	 * Returns the total number of Incompliances found so far
+	 * @return the number of Incompliances
+	 */
+	public long getNumberOfIncompliances() {
+		return numberOfIncompliances.get();
+	}
+
+	/**
+	 * The size and modification time of a file last seen, and when its quiet period ends
+	 */
+	private static class Candidate {
+		long size;
+		long lastModified;
+		long deadline;
+
+		Candidate(long size, long lastModified, long deadline) {
+			update(size, lastModified, deadline);
+		}
+
+		void update(long size, long lastModified, long deadline) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * Validates a file that stopped growing and appends its verdict to the report
+	 */
+	private class WatchTask implements Runnable {
+		private final String edfPath;
+		private final ReportFormatter formatter;
+		private final AsyncReportWriter report;
+
+		WatchTask(String edfPath, ReportFormatter formatter, AsyncReportWriter report) {
+			this.edfPath = edfPath;
+			this.formatter = formatter;
+			this.report = report;
+		}
+
+		@Override
+		public void run() {
+			ValidationResult result = new BatchValidator.ValidationTask(edfPath, log, verbosity, cache, failFast).call();
+			ReportWriteEvent event = new ReportWriteEvent();
+			event.begin();
+			long start = System.nanoTime();
+			filesValidated.incrementAndGet();
+			String text;
+			if (result.hasError()) {
+				filesWithErrors.incrementAndGet();
+				text = formatter.formatError(result.getEdfPath(), result.getError());
+			} else if (!result.isValid()) {
+				filesWithIncompliances.incrementAndGet();
+				numberOfIncompliances.addAndGet(result.getIncompliances().size());
+				text = formatter.formatFile(result.getEdfPath(), result.getIncompliances());
+			} else {
+				text = "";
+			}
+			if (text.isEmpty())
+				return;
+			if (verbosity.includes(Verbosity.FILE))
+				System.out.print(text);
+			try {
+				report.write(text);
+				report.flush(); // the verdict is visible to readers of the report right away
+			} catch (IOException e) {
+				System.err.println("Cannot write the report of " + edfPath + ": " + e.getMessage());
+			}
+			ValidationMetrics.record(Phase.REPORT_WRITING, start);
+			event.commit(edfPath, 0, text.length(), result.hasError() ? 0 : result.getIncompliances().size());
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package tools.validator.data;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.header.EIAHeader;
+import tools.validator.header.ESA;
+import tools.validator.header.ESAHeader;
+
+/**
+ * The layout of the data section of an EDF file as declared by its header, 
+ * checked against the actual file size. Everything here is file-size arithmetic: 
+ * no data record is read.
+ * A data record holds, for each signal in header order, 
+ * "number of samples" 2-byte little-endian integers.
+ */
+public class DataLayout {
+
+    public static final int BYTES_PER_SAMPLE = 2;
+
+    private final long headerBytes; // "number of bytes in header" as declared
+    private final int numberOfSignals;
+    private final int[] samplesPerRecord; // per signal
+    private final long[] signalOffsets; // byte offset of each signal within a record
+    private final long recordBytes;
+    private final long declaredRecords; // -1 if unknown
+    private final long fileSize;
+
+    private DataLayout(long headerBytes, int[] samplesPerRecord, long declaredRecords, long fileSize) {
+        this.headerBytes = headerBytes;
+        this.numberOfSignals = samplesPerRecord.length;
+        this.samplesPerRecord = samplesPerRecord;
+        this.signalOffsets = new long[numberOfSignals];
+        long bytes = 0;
+        for (int i = 0; i < numberOfSignals; i++) {
+            signalOffsets[i] = bytes;
+            bytes += (long) samplesPerRecord[i] * BYTES_PER_SAMPLE;
+        }
+        this.recordBytes = bytes;
+        this.declaredRecords = declaredRecords;
+        this.fileSize = fileSize;
+    }
+
+    /**
+     * Computes the layout declared by an EDF header
+     * @param header the EDF header, with both EIA and ESA parts
+     * @param fileSize the size of the EDF file in bytes
+     * @return the layout, or null when a field it depends on cannot be parsed 
+     * (the header rules already report those)
+     */
+    public static DataLayout fromHeader(EDFFileHeader header, long fileSize) {
+        EIAHeader eiaHeader = header.getEiaHeader();
+        ESAHeader esaHeader = header.getEsaHeader();
+        if (eiaHeader == null || esaHeader == null)
+            return null;
+        // malformed fields are FieldLexer.NOT_AN_INTEGER, which is negative
+        long headerBytes = eiaHeader.getNumberOfBytesInHeader();
+        long declaredRecords = eiaHeader.getNumberOfDataRecords();
+        int ns = esaHeader.getNumberOfChannels();
+        if (headerBytes < 0 || declaredRecords < -1 || ns <= 0)
+            return null;
+        int samplesColumn = ESA.indexOfAttribute(ESA.NUMBER_OF_SAMPLES);
+        int[] samples = new int[ns];
+        for (int i = 0; i < ns; i++) {
+            long value = esaHeader.getIntegerAt(i, samplesColumn);
+            if (value < 0)
+                return null; // also a channel of a truncated header, which misses attributes
+            samples[i] = (int) value;
+        }
+        return new DataLayout(headerBytes, samples, declaredRecords, fileSize);
+    }
+
+    /**
+     * Returns the header size that the number of signals implies, 256 * (ns + 1)
+     * @return the expected number of bytes in header
+     */
+    public long getExpectedHeaderBytes() {
+        return (long) (numberOfSignals + 1) * EIA.BYTES_OF_EIA;
+    }
+
+    /**
+     * Returns the number of data records, as declared or, if unknown (-1), 
+     * as many complete records as the file holds
+     * @return the number of data records
+     */
+    public long getNumberOfRecords() {
+        if (declaredRecords >= 0)
+            return declaredRecords;
+        return getCompleteRecordsInFile();
+    }
+
+    /**
+     * Returns the number of complete data records the file actually holds
+     * @return the number of complete records
+     */
+    public long getCompleteRecordsInFile() {
+        if (recordBytes == 0 || fileSize <= headerBytes)
+            return 0;
+        return (fileSize - headerBytes) / recordBytes;
+    }
+
+    /**
+     * Tests whether the file ends with an incomplete data record
+     * @return true if the data section is not a whole number of records
+     */
+    public boolean hasPartialRecord() {
+        return recordBytes > 0 && fileSize > headerBytes && (fileSize - headerBytes) % recordBytes != 0;
+    }
+
+    /**
+     * Returns the file size the header declares, only meaningful when the number of records is known
+     * @return the expected file size in bytes
+     */
+    public long getExpectedFileSize() {
+        return headerBytes + declaredRecords * recordBytes;
+    }
+
+    /**
+     * Tests whether the header and the file agree, so that the data records can be read 
+     * at the declared positions. Data content checks should only run on a consistent layout.
+     * @return true if the records can be located
+     */
+    public boolean isConsistent() {
+        if (headerBytes != getExpectedHeaderBytes() || recordBytes == 0)
+            return false;
+        if (declaredRecords >= 0)
+            return fileSize == getExpectedFileSize();
+        return !hasPartialRecord();
+    }
+
+    /**
+     * Returns the number of bytes in header as declared
+     * @return the offset of the first data record
+     */
+    public long getHeaderBytes() {
+        return headerBytes;
+    }
+
+    /**
+     * Returns the number of signals
+     * @return the number of signals
+     */
+    public int getNumberOfSignals() {
+        return numberOfSignals;
+    }
+
+    /**
+     * Returns the number of samples of a signal in each data record
+     * @param signal the signal index
+     * @return the number of samples
+     */
+    public int getSamplesPerRecord(int signal) {
+        return samplesPerRecord[signal];
+    }
+
+    /**
+     * Returns the byte offset of a signal within a data record
+     * @param signal the signal index
+     * @return the offset in bytes
+     */
+    public long getSignalOffset(int signal) {
+        return signalOffsets[signal];
+    }
+
+    /**
+     * Returns the size of a data record
+     * @return the number of bytes of a data record
+     */
+    public long getRecordBytes() {
+        return recordBytes;
+    }
+
+    /**
+     * Returns the number of data records declared in the header
+     * @return the declared number, -1 if unknown
+     */
+    public long getDeclaredRecords() {
+        return declaredRecords;
+    }
+
+    /**
+     * Returns the actual file size
+     * @return the file size in bytes
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+}
@@ -0,0 +1,84 @@
+package tools.validator.data;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+
+/**
+ * Verifies the structure of the data section of an EDF file against its header: 
+ * the header size, the file size and the completeness of the last data record
+ */
+public class DataRecordVerifier {
+
+    /**
+     * Verifies the data section layout using file-size arithmetic only
+     * @param header the EDF header of the file
+     * @param edfFile the EDF file
+     * @param fileName the EDF file name used in the Incompliances
+     * @return an array of Incompliances, empty when the layout is consistent or cannot be computed
+     */
+    public static ArrayList<Incompliance> verify(EDFFileHeader header, File edfFile, String fileName) {
+        return verify(DataLayout.fromHeader(header, edfFile.length()), fileName);
+    }
+
+    /**
+     * Verifies a data section layout
+     * @param layout the layout declared by the header, may be null
+     * @param fileName the EDF file name used in the Incompliances
+     * @return an array of Incompliances
+     */
+    public static ArrayList<Incompliance> verify(DataLayout layout, String fileName) {
+        return verify(layout, fileName, false);
+    }
+
+    /**
+     * Verifies a data section layout, stopping at the first critical Incompliance if asked to
+     * @param layout the layout declared by the header, may be null
+     * @param fileName the EDF file name used in the Incompliances
+     * @param failFast true to report a truncated file without its incomplete last record
+     * @return an array of Incompliances, all critical; at most one in fail-fast mode
+     */
+    public static ArrayList<Incompliance> verify(DataLayout layout, String fileName, boolean failFast) {
+        ArrayList<Incompliance> dataIncompliances = new ArrayList<Incompliance>();
+        if (layout == null)
+            return dataIncompliances;
+
+        final int errorSrcTypeIndex = Incompliance.index_incomp_src_data;
+
+        // the records cannot be located without the right header size
+        if (layout.getHeaderBytes() != layout.getExpectedHeaderBytes()) {
+            dataIncompliances.add(new Incompliance(IncomplianceCode.DATA_HEADER_BYTES, 
+                    fileName, 0, EIA.index_of_bytes, errorSrcTypeIndex));
+            return dataIncompliances;
+        }
+        if (layout.getRecordBytes() == 0)
+            return dataIncompliances; // no sample at all, the header rules report it
+
+        if (layout.getDeclaredRecords() >= 0) {
+            // number of bytes in header + number of data records * record size
+            long expected = layout.getExpectedFileSize();
+            long actual = layout.getFileSize();
+            if (actual != expected) {
+                IncomplianceCode code = actual < expected ? IncomplianceCode.DATA_TRUNCATED : IncomplianceCode.DATA_OVERSIZED;
+                dataIncompliances.add(new Incompliance(code, 
+                        fileName, 0, EIA.index_number_of_datarecord, errorSrcTypeIndex, expected, actual));
+            }
+            if (actual < expected && layout.hasPartialRecord() && !failFast) {
+                dataIncompliances.add(new Incompliance(IncomplianceCode.DATA_PARTIAL, 
+                        fileName, 0, EIA.index_number_of_datarecord, errorSrcTypeIndex, layout.getCompleteRecordsInFile()));
+            }
+        } else if (layout.getFileSize() < layout.getHeaderBytes()) {
+            dataIncompliances.add(new Incompliance(IncomplianceCode.DATA_TRUNCATED_HEADER, 
+                    fileName, 0, EIA.index_of_bytes, errorSrcTypeIndex, layout.getHeaderBytes(), layout.getFileSize()));
+        } else if (layout.hasPartialRecord()) {
+            // number of data records unknown (-1): the file must hold whole records
+            dataIncompliances.add(new Incompliance(IncomplianceCode.DATA_PARTIAL, 
+                    fileName, 0, EIA.index_number_of_datarecord, errorSrcTypeIndex, layout.getCompleteRecordsInFile()));
+        }
+        return dataIncompliances;
+    }
+}
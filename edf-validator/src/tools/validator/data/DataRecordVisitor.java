@@ -0,0 +1,39 @@
+package tools.validator.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A data-level check plugged into the DataScanner. The scanner splits the data section 
+ * into ranges of whole records visited in parallel, each range accumulating into its 
+ * own partial result; partial results are then merged in record order. 
+ * A visitor may stop the scan early, e.g. once it has found what fails the file.
+ * @param <P> the partial result type
+ */
+public interface DataRecordVisitor<P> {
+
+    /**
+     * Creates an empty partial result for a range of records
+     * @return a new partial result
+     */
+    public P newPartial();
+
+    /**
+     * Visits one data record. Samples are 2-byte little-endian integers; 
+     * the buffer is already in little-endian order.
+     * @param partial the partial result of the range being scanned
+     * @param records the buffer holding the range of records
+     * @param offset the position of the record in the buffer
+     * @param recordIndex the index of the record in the file
+     * @return true to go on, false if the partial result settles the check, 
+     * so that the scanner stops visiting records in every range
+     */
+    public boolean visitRecord(P partial, ByteBuffer records, int offset, long recordIndex);
+
+    /**
+     * Merges the partial results of two adjacent ranges
+     * @param left the partial result of the earlier records
+     * @param right the partial result of the later records
+     * @return the merged partial result, possibly one of the arguments
+     */
+    public P merge(P left, P right);
+}
@@ -0,0 +1,176 @@
+package tools.validator.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tools.validator.metrics.ValidationMetrics;
+
+/**
+ * Scans the data section of an EDF file by memory-mapping it in ranges of whole records 
+ * and visiting the ranges in parallel on a fork-join pool. Each range is mapped on its own 
+ * and kept well below 2GB, so recordings of any size can be scanned. 
+ * When a visitor asks to stop, the ranges not yet visited are skipped, and the others end 
+ * at their next record.
+ */
+public class DataScanner {
+
+    private static final long MAX_RANGE_BYTES = 64L << 20; // largest range mapped at once
+    private static final int RANGES_PER_THREAD = 4; // for load balancing
+    private static ForkJoinPool defaultPool = null;
+
+    private final DataLayout layout;
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a scanner running on the shared data scanning pool
+     * @param layout the data section layout, which must be consistent
+     */
+    public DataScanner(DataLayout layout) {
+        this(layout, getDefaultPool());
+    }
+
+    /**
+     * Constructs a scanner running on a given pool
+     * @param layout the data section layout, which must be consistent
+     * @param pool the fork-join pool visiting the ranges
+     */
+    public DataScanner(DataLayout layout, ForkJoinPool pool) {
+        this.layout = layout;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool shared by the data scanners, one thread per available processor
+     * @return the shared pool
+     */
+    public static synchronized ForkJoinPool getDefaultPool() {
+        if (defaultPool == null)
+            defaultPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        return defaultPool;
+    }
+
+    /**
+     * Visits every data record of the file, until the visitor asks to stop
+     * @param edfFile the EDF file
+     * @param visitor the check to run on the records
+     * @return the partial results of all ranges, merged; of the ranges visited when the visitor stopped
+     * @throws IOException if the data records cannot be mapped
+     */
+    public <P> P scan(File edfFile, DataRecordVisitor<P> visitor) throws IOException {
+        long nRecords = layout.getNumberOfRecords();
+        long recordBytes = layout.getRecordBytes();
+        if (recordBytes > Integer.MAX_VALUE)
+            throw new IOException("Data record too large: " + recordBytes + " bytes");
+        if (nRecords == 0 || recordBytes == 0)
+            return visitor.newPartial();
+
+        // ranges small enough to keep every thread busy, and to be mapped
+        long perRange = (nRecords + (long) pool.getParallelism() * RANGES_PER_THREAD - 1) / 
+                ((long) pool.getParallelism() * RANGES_PER_THREAD);
+        perRange = Math.max(1, Math.min(perRange, MAX_RANGE_BYTES / recordBytes));
+
+        FileInputStream in = new FileInputStream(edfFile);
+        try {
+            ScanState state = new ScanState();
+            RangeTask<P> task = new RangeTask<P>(in.getChannel(), layout, visitor, state, 0, nRecords, perRange);
+            try {
+                P result = pool.invoke(task);
+                ValidationMetrics.addBytesRead(state.visited.get() * recordBytes);
+                return result;
+            } catch (ScanException e) {
+                throw e.getCause();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * What the ranges of a scan share: whether the visitor asked to stop, and the records visited
+     */
+    private static class ScanState {
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicLong visited = new AtomicLong();
+    }
+
+    /**
+     * Splits a range of records in halves until it is small enough to be mapped and visited
+     */
+    @SuppressWarnings("serial")
+    private static class RangeTask<P> extends RecursiveTask<P> {
+        private final FileChannel channel;
+        private final DataLayout layout;
+        private final DataRecordVisitor<P> visitor;
+        private final ScanState state;
+        private final long first;
+        private final long count;
+        private final long perRange;
+
+        RangeTask(FileChannel channel, DataLayout layout, DataRecordVisitor<P> visitor, ScanState state, 
+                long first, long count, long perRange) {
+            this.channel = channel;
+            this.layout = layout;
+            this.visitor = visitor;
+            this.state = state;
+            this.first = first;
+            this.count = count;
+            this.perRange = perRange;
+        }
+
+        @Override
+        protected P compute() {
+            if (count > perRange) {
+                long half = count / 2;
+                RangeTask<P> left = new RangeTask<P>(channel, layout, visitor, state, first, half, perRange);
+                RangeTask<P> right = new RangeTask<P>(channel, layout, visitor, state, first + half, count - half, perRange);
+                left.fork();
+                P rightResult = right.compute();
+                return visitor.merge(left.join(), rightResult);
+            }
+
+            if (state.stopped.get())
+                return visitor.newPartial();
+            int recordBytes = (int) layout.getRecordBytes();
+            MappedByteBuffer records;
+            try {
+                records = channel.map(FileChannel.MapMode.READ_ONLY, 
+                        layout.getHeaderBytes() + first * recordBytes, count * recordBytes);
+            } catch (IOException e) {
+                throw new ScanException(e);
+            }
+            records.order(ByteOrder.LITTLE_ENDIAN);
+            P partial = visitor.newPartial();
+            int r = 0;
+            while (r < count && !state.stopped.get()) {
+                if (!visitor.visitRecord(partial, records, r * recordBytes, first + r))
+                    state.stopped.set(true);
+                r++;
+            }
+            state.visited.addAndGet(r);
+            return partial;
+        }
+    }
+
+    /**
+     * Carries an IOException out of a fork-join task
+     */
+    @SuppressWarnings("serial")
+    private static class ScanException extends RuntimeException {
+        ScanException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
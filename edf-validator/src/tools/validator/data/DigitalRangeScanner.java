@@ -0,0 +1,220 @@
+package tools.validator.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import tools.validator.header.ESA;
+import tools.validator.header.ESAHeader;
+import tools.validator.utils.FieldLexer;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+import tools.validator.utils.IncomplianceSink;
+
+/**
+ * Counts, per channel, the digital samples of the data records outside 
+ * [digital minimum, digital maximum]. The first few offending samples of 
+ * each channel are reported with their record and sample position.
+ * Runs as a visitor of the DataScanner; nothing is allocated per sample. 
+ * In fail-fast mode the scan stops at the first offending sample found.
+ */
+public class DigitalRangeScanner implements DataRecordVisitor<DigitalRangeScanner.Partial> {
+
+    public static final int DEFAULT_MAX_REPORTED = 5; // offending samples reported per channel
+    private static final int COL_DIGITAL_MINIMUM = ESA.indexOfAttribute(ESA.DIGITAL_MINIMUM);
+    private static final int COL_DIGITAL_MAXIMUM = ESA.indexOfAttribute(ESA.DIGITAL_MAXIMUM);
+
+    private final DataLayout layout;
+    private final int[] digitalMinimum;
+    private final int[] digitalMaximum;
+    private final int maxReported;
+    private boolean failFast = false;
+
+    /**
+     * Constructs a scanner for a data section
+     * @param layout the data section layout, which must be consistent
+     * @param digitalMinimum the digital minimum of each channel
+     * @param digitalMaximum the digital maximum of each channel
+     * @param maxReported the number of offending samples reported per channel
+     */
+    public DigitalRangeScanner(DataLayout layout, int[] digitalMinimum, int[] digitalMaximum, int maxReported) {
+        this.layout = layout;
+        this.digitalMinimum = digitalMinimum;
+        this.digitalMaximum = digitalMaximum;
+        this.maxReported = maxReported;
+    }
+
+    /**
+     * Constructs a scanner using the digital minimum and maximum of an ESA header. 
+     * Channels whose range cannot be parsed, or whose digital minimum is above their 
+     * digital maximum, are not checked: the header rules report their range already.
+     * @param layout the data section layout, which must be consistent
+     * @param esaHeader the ESA header of the file
+     * @return the scanner
+     */
+    public static DigitalRangeScanner fromHeader(DataLayout layout, ESAHeader esaHeader) {
+        int ns = layout.getNumberOfSignals();
+        int[] min = new int[ns];
+        int[] max = new int[ns];
+        for (int i = 0; i < ns; i++) {
+            long low = esaHeader.getIntegerAt(i, COL_DIGITAL_MINIMUM);
+            long high = esaHeader.getIntegerAt(i, COL_DIGITAL_MAXIMUM);
+            if (low == FieldLexer.NOT_AN_INTEGER || high == FieldLexer.NOT_AN_INTEGER || low > high) {
+                min[i] = Short.MIN_VALUE;
+                max[i] = Short.MAX_VALUE;
+            } else {
+                min[i] = (int) low;
+                max[i] = (int) high;
+            }
+        }
+        return new DigitalRangeScanner(layout, min, max, DEFAULT_MAX_REPORTED);
+    }
+
+    /**
+     * Sets whether the scan stops at the first offending sample found, false by default. 
+     * The ranges of records are scanned in parallel, so that sample is not always the 
+     * earliest of the file; it is reported on its own, without the count of its channel
+     * @param failFast true to stop at the first offending sample
+     */
+    public void setFailFast(boolean failFast) {
+        this.failFast = failFast;
+    }
+
+    /**
+     * Scans all data records of the file on the shared data scanning pool
+     * @param edfFile the EDF file
+     * @param fileName the EDF file name used in the Incompliances
+     * @return an array of Incompliances, per channel a count followed by the first offending samples
+     * @throws IOException if the data records cannot be read
+     */
+    public ArrayList<Incompliance> scan(File edfFile, String fileName) throws IOException {
+        final ArrayList<Incompliance> dataIncompliances = new ArrayList<Incompliance>();
+        scan(edfFile, fileName, new IncomplianceSink() {
+            @Override
+            public void add(Incompliance incompliance) {
+                dataIncompliances.add(incompliance);
+            }
+        });
+        return dataIncompliances;
+    }
+
+    /**
+     * Scans all data records of the file on the shared data scanning pool, 
+     * handing the Incompliances to a sink once the scan is done
+     * @param edfFile the EDF file
+     * @param fileName the EDF file name used in the Incompliances
+     * @param sink receives, per channel, a count followed by the first offending samples
+     * @return the number of Incompliances handed to the sink
+     * @throws IOException if the data records cannot be read, or the sink cannot keep an Incompliance
+     */
+    public int scan(File edfFile, String fileName, IncomplianceSink sink) throws IOException {
+        return toIncompliances(new DataScanner(layout).scan(edfFile, this), fileName, sink);
+    }
+
+    @Override
+    public Partial newPartial() {
+        return new Partial(layout.getNumberOfSignals(), maxReported);
+    }
+
+    @Override
+    public boolean visitRecord(Partial partial, ByteBuffer records, int offset, long recordIndex) {
+        int ns = layout.getNumberOfSignals();
+        int pos = offset;
+        for (int s = 0; s < ns; s++) {
+            int n = layout.getSamplesPerRecord(s);
+            int min = digitalMinimum[s];
+            int max = digitalMaximum[s];
+            if (min <= Short.MIN_VALUE && max >= Short.MAX_VALUE) {
+                pos += n * DataLayout.BYTES_PER_SAMPLE; // every 2-byte value is in range
+                continue;
+            }
+            for (int k = 0; k < n; k++, pos += DataLayout.BYTES_PER_SAMPLE) {
+                int value = records.getShort(pos);
+                if (value < min || value > max) {
+                    partial.add(s, recordIndex, k, value);
+                    if (failFast)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Partial merge(Partial left, Partial right) {
+        for (int s = 0; s < left.outOfRange.length; s++) {
+            for (int n = 0; n < Math.min(right.outOfRange[s], maxReported); n++) {
+                int i = s * maxReported + n;
+                left.add(s, right.reportedRecord[i], right.reportedSample[i], right.reportedValue[i]);
+            }
+            left.outOfRange[s] += right.outOfRange[s] - Math.min(right.outOfRange[s], maxReported);
+        }
+        return left;
+    }
+
+    private int toIncompliances(Partial result, String fileName, IncomplianceSink sink) throws IOException {
+        final int errorSrcTypeIndex = Incompliance.index_incomp_src_data;
+        final int col = COL_DIGITAL_MAXIMUM;
+        int added = 0;
+        for (int s = 0; s < result.outOfRange.length && !(failFast && added > 0); s++) {
+            if (result.outOfRange[s] == 0)
+                continue;
+            if (failFast && maxReported > 0) {
+                int i = s * maxReported;
+                sink.add(new Incompliance(IncomplianceCode.DATA_SAMPLE_RANGE, fileName, s, col, errorSrcTypeIndex, 
+                        result.reportedRecord[i] + 1, result.reportedSample[i] + 1, result.reportedValue[i]));
+                return 1; // the one critical Incompliance of the file
+            }
+            sink.add(new Incompliance(IncomplianceCode.DATA_SAMPLE_COUNT, fileName, s, col, errorSrcTypeIndex, 
+                    result.outOfRange[s], digitalMinimum[s], digitalMaximum[s]));
+            added++;
+            for (int n = 0; n < Math.min(result.outOfRange[s], maxReported); n++) {
+                int i = s * maxReported + n;
+                sink.add(new Incompliance(IncomplianceCode.DATA_SAMPLE_RANGE, fileName, s, col, errorSrcTypeIndex, 
+                        result.reportedRecord[i] + 1, result.reportedSample[i] + 1, result.reportedValue[i]));
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Per range counts and first offending samples, in primitive arrays
+     */
+    public static class Partial {
+        private final int maxReported;
+        private final long[] outOfRange; // per channel count
+        private final long[] reportedRecord; // [channel * maxReported + n]
+        private final int[] reportedSample;
+        private final int[] reportedValue;
+
+        Partial(int ns, int maxReported) {
+            this.maxReported = maxReported;
+            outOfRange = new long[ns];
+            reportedRecord = new long[ns * maxReported];
+            reportedSample = new int[ns * maxReported];
+            reportedValue = new int[ns * maxReported];
+        }
+
+        // counts a sample, and keeps its position while fewer than maxReported are kept
+        void add(int signal, long record, int sample, int value) {
+            long n = outOfRange[signal]++;
+            if (n < maxReported) {
+                int i = signal * maxReported + (int) n;
+                reportedRecord[i] = record;
+                reportedSample[i] = sample;
+                reportedValue[i] = value;
+            }
+        }
+
+        /**
+         * Returns the number of samples out of range found on a channel
+         * @param signal the channel index
+         * @return the number of offending samples
+         */
+        public long getOutOfRangeCount(int signal) {
+            return outOfRange[signal];
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package tools.validator.header;
+
+/**
+ * A read-only grid of header attribute values, one row per header (EIA) or per channel (ESA).
+ * Implemented by the headers themselves and by the Swing tables that display them, 
+ * so that validation does not depend on how the header is presented
+ */
+public interface AttributeSource {
+
+    /**
+     * Returns the number of rows of this source
+     * @return the number of rows
+     */
+    public int getRowCount();
+
+    /**
+     * Returns the attribute value at the specified row and column
+     * @param row the row index
+     * @param column the column index, following the attribute order of EIA or ESA
+     * @return the String value of the attribute
+     */
+    public String getValueAt(int row, int column);
+}
@@ -1,8 +1,14 @@
 package tools.validator.header;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import tools.validator.metrics.HeaderReadEvent;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
 
 /**
  * EDF file header, consists of EIAHeader and ESA header
@@ -34,12 +40,30 @@ public class EDFFileHeader {
      * @param edfFile the host EDF file
      */
     public EDFFileHeader(RandomAccessFile raf, File edfFile) {
+//      Algorithm:
+//      1. read the fixed 256 bytes EIA block in one go
+//      2. parse the number of signals from it
+//      3. read the whole ns * 256 bytes signal header in one go and build every channel from it
+//      4. close the file
+        HeaderReadEvent event = new HeaderReadEvent();
+        event.begin();
+        long bytesRead = 0;
         try {
-            eiaHeader = new EIAHeader(raf, edfFile);
+            long start = System.nanoTime();
+            eiaHeader = new EIAHeader(EIAHeader.readEiaBlock(raf), edfFile); //1.
+            bytesRead = EIA.BYTES_OF_EIA;
+            ValidationMetrics.addBytesRead(EIA.BYTES_OF_EIA);
+            ValidationMetrics.record(Phase.EIA_READ, start);
             try {
             	if (edfFile.getAbsolutePath().indexOf(".eia") == -1) {
+            		start = System.nanoTime();
             		int numberOfChannels = Integer.parseInt(eiaHeader.getAttributeValueAt(EIA.NUMBER_OF_SIGNALS)); //2.
-            		esaHeader = new ESAHeader(raf, edfFile, numberOfChannels); //3.
+            		byte[] buffer = new byte[numberOfChannels * ESA.BYTES_PER_CHANNEL];
+            		int length = readSignalBlock(raf, buffer);
+            		esaHeader = new ESAHeader(buffer, length, edfFile, numberOfChannels); //3.
+            		bytesRead += length;
+            		ValidationMetrics.addBytesRead(length);
+            		ValidationMetrics.record(Phase.ESA_READ, start);
             	}
             } catch(Exception e) {
             	e.printStackTrace();
@@ -49,6 +73,51 @@ public class EDFFileHeader {
         } catch (IOException e) {
             e.printStackTrace();
         } //1.
+        event.commit(edfFile.getPath(), esaHeader == null ? 0 : esaHeader.getNumberOfChannels(), bytesRead, 0);
+    }
+
+    /**
+     * Constructs EDFFileHeader from header bytes already in memory, for example uploaded ones
+     * @param header the header bytes, starting with the EIA block
+     * @param length the number of valid bytes in header
+     * @param edfFile the host EDF file, used for its name
+     * @throws IOException if the EIA block is incomplete
+     */
+    public EDFFileHeader(byte[] header, int length, File edfFile) throws IOException {
+        if (length < EIA.BYTES_OF_EIA)
+            throw new EOFException();
+        eiaHeader = new EIAHeader(header, edfFile);
+        try {
+            if (edfFile.getAbsolutePath().indexOf(".eia") == -1) {
+                int numberOfChannels = Integer.parseInt(eiaHeader.getAttributeValueAt(EIA.NUMBER_OF_SIGNALS));
+                int size = numberOfChannels * ESA.BYTES_PER_CHANNEL;
+                byte[] buffer = Arrays.copyOfRange(header, ESA.EIA_OFFSET, ESA.EIA_OFFSET + size);
+                int available = Math.min(size, length - ESA.EIA_OFFSET);
+                esaHeader = new ESAHeader(buffer, available, edfFile, numberOfChannels);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the signal header that follows the EIA block, normally with a single read.
+     * A truncated file fills the buffer only partially.
+     * @param raf the file to be read
+     * @param buffer the buffer to fill
+     * @return the number of bytes actually read
+     * @throws IOException IOException
+     */
+    private static int readSignalBlock(RandomAccessFile raf, byte[] buffer) throws IOException {
+        int length = 0;
+        raf.seek(ESA.EIA_OFFSET);
+        while (length < buffer.length) {
+            int n = raf.read(buffer, length, buffer.length - length);
+            if (n < 0)
+                break;
+            length += n;
+        }
+        return length;
     }
 
     /**
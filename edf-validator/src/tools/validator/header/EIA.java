@@ -87,6 +87,18 @@ public class EIA {
         return eiaAttributes[index];
     }
 
+    /**
+     * Get the position of an EIA attribute
+     * @param key the attribute name
+     * @return the index of the attribute, 0 being the file name, or -1 if key is not an EIA attribute
+     */
+    public static int indexOfAttribute(String key) {
+        for (int i = 0; i < eiaAttributes.length; i++)
+            if (eiaAttributes[i].equals(key))
+                return i;
+        return -1;
+    }
+
     /**
      * Get the array of EIA attribute byte lengths
      * @return an array of attribute length
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -21,16 +22,23 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import tools.validator.utils.FieldLexer;
+
 /**
- * EIA header file in format of HashTable
+ * EIA header of a file: the attribute values in EIA order, file name first, 
+ * and the numeric fields parsed from them on first use
  */
-public class EIAHeader extends EIA {
+public class EIAHeader extends EIA implements AttributeSource {
 
-	// wei wang, 2014-6-18
-	// Change HashMap to HashMap<String,String>
-	
     private File hostEdfFile = null; // to register the host EDF file of current header
-    private HashMap<String,Object> eiaHeader = new HashMap<String,Object>(); // store the eia header
+    private String[] values = new String[NUMBER_OF_ATTRIBUTES + 1]; // store the eia header, plus file name
+
+    // numeric fields, FieldLexer.NOT_AN_INTEGER or NaN if they do not parse
+    private boolean numbersParsed = false;
+    private long numberOfBytesInHeader;
+    private long numberOfDataRecords;
+    private long numberOfSignals;
+    private float durationOfDataRecord;
     
     // what is this field used for? Will conflict with EIA class.
     // conflict solved by changing EIA field to aEIA, XML to aXML
@@ -41,18 +49,7 @@ public class EIAHeader extends EIA {
      * Default constructor with the file name entry
      */
     public EIAHeader() {
-        eiaHeader = new HashMap<String,Object>(NUMBER_OF_ATTRIBUTES + 1); // plus file name
-        eiaHeader.put(FILE_NAME, "");
-        eiaHeader.put(VERSION, "");
-        eiaHeader.put(LOCAL_PATIENT_ID, "");
-        eiaHeader.put(LOCAL_RECORDING_ID, "");
-        eiaHeader.put(START_DATE_RECORDING, "");
-        eiaHeader.put(START_TIME_RECORDING, "");
-        eiaHeader.put(NUMBER_OF_BYTES_IN_HEADER, "");
-        eiaHeader.put(RESERVED, "");
-        eiaHeader.put(NUMBER_OF_DATA_RECORDS, "");
-        eiaHeader.put(DURATION_OF_DATA_RECORD, "");
-        eiaHeader.put(NUMBER_OF_SIGNALS, "");
+        Arrays.fill(values, "");
     }
 
     /**
@@ -62,50 +59,48 @@ public class EIAHeader extends EIA {
      * @throws IOException IOException
      */
      public EIAHeader(RandomAccessFile raf, File edfFile) throws IOException {
+         this(readEiaBlock(raf), edfFile);
+     }
+
+    /**
+     * Construct an EIA header from the first 256 bytes of a file
+     * @param buffer the EIA block of the file, at least 256 bytes long
+     * @param edfFile the host file
+     */
+     public EIAHeader(byte[] buffer, File edfFile) {
 //       Algorithm:
 //       1. fill the value for "file name" key
-//       2. initialize byte pointer for read operation
-//       3. read attribute to pointer and put it to the header hash map structure;
-//       4. register host file of the header;
-         eiaHeader = new HashMap<String,Object>(); 
-         
+//       2. cut each attribute out of the buffer and put it to the header hash map structure;
+//       3. register host file of the header;
          String fullName = edfFile.getName();
          int extname_len = 4;
-         eiaHeader.put(FILE_NAME, fullName.substring(0, fullName.length() - extname_len)); // end of 1.
+         values[index_filename] = fullName.substring(0, fullName.length() - extname_len); // end of 1.
  
-         byte[] version = new byte[8];// start of 2.
-         byte[] patientID = new byte[80];
-         byte[] recordID = new byte[80];
-         byte[] startDate = new byte[8];
-         byte[] startTime = new byte[8];
-         byte[] nbBytesHeader = new byte[8];
+         values[index_version] = FieldLexer.decode(buffer, 0, 8); // start of 2.
+         values[index_patient_id] = FieldLexer.decode(buffer, 8, 80);
+         values[index_recording_id] = FieldLexer.decode(buffer, 88, 80);
+         values[index_start_date] = FieldLexer.decode(buffer, 168, 8);
+         values[index_start_time] = FieldLexer.decode(buffer, 176, 8);
+         values[index_of_bytes] = FieldLexer.decode(buffer, 184, 8);
          // 44 bytes: reserved
-         byte[] nbDataRecords = new byte[8];
-         byte[] duration = new byte[8];
-         byte[] nbSignals = new byte[4]; // end of 2.
-         
-         raf.seek(0); // start of 3.
-         raf.readFully(version);
-         eiaHeader.put(VERSION, new String(version).trim());
-         raf.readFully(patientID);
-         eiaHeader.put(LOCAL_PATIENT_ID, new String(patientID).trim());
-         raf.readFully(recordID);
-         eiaHeader.put(LOCAL_RECORDING_ID, new String(recordID).trim());
-         raf.readFully(startDate);
-         eiaHeader.put(START_DATE_RECORDING, new String(startDate).trim());
-         raf.readFully(startTime);
-         eiaHeader.put(START_TIME_RECORDING, new String(startTime).trim());
-         raf.readFully(nbBytesHeader);
-         eiaHeader.put(NUMBER_OF_BYTES_IN_HEADER, new String(nbBytesHeader).trim());
-         raf.skipBytes(44);
-         eiaHeader.put(RESERVED, "");
-         raf.readFully(nbDataRecords);
-         eiaHeader.put(NUMBER_OF_DATA_RECORDS, new String(nbDataRecords).trim());
-         raf.readFully(duration);
-         eiaHeader.put(DURATION_OF_DATA_RECORD, new String(duration).trim());
-         raf.readFully(nbSignals);
-         eiaHeader.put(NUMBER_OF_SIGNALS, new String(nbSignals).trim());// end of 3.
-         setHostEdfFile(edfFile); // end of 4.
+         values[index_reserved] = "";
+         values[index_number_of_datarecord] = FieldLexer.decode(buffer, 236, 8);
+         values[index_duration] = FieldLexer.decode(buffer, 244, 8);
+         values[index_number_of_channels] = FieldLexer.decode(buffer, 252, 4); // end of 2.
+         setHostEdfFile(edfFile); // end of 3.
+     }
+
+    /**
+     * Reads the fixed size EIA block at the beginning of a file with a single read
+     * @param raf the file to be read
+     * @return the 256 bytes of the EIA block
+     * @throws IOException if the file is shorter than the EIA block
+     */
+     public static byte[] readEiaBlock(RandomAccessFile raf) throws IOException {
+         byte[] buffer = new byte[BYTES_OF_EIA];
+         raf.seek(0);
+         raf.readFully(buffer);
+         return buffer;
      }
 
     /**
@@ -163,7 +158,7 @@ public class EIAHeader extends EIA {
      * @param header EIA header to be copied
      */
     public EIAHeader(HashMap<String,Object> header) {
-        eiaHeader = header;
+        setEiaHeader(header);
     }
 
 //    /**
@@ -247,32 +242,107 @@ public class EIAHeader extends EIA {
      * @param value the value specified by the key
      */
     public void setValueAt(String key, Object value) {
-        eiaHeader.put(key, (String)value); // wei wang, generic HashMap<String,String>
+        int index = indexOfAttribute(key);
+        if (index == -1)
+            throw new IllegalArgumentException("Not an EIA attribute: " + key);
+        values[index] = (String) value;
+        numbersParsed = false;
     }
 
     /**
      * Gets current EIA header
-     * @return current EIA header
+     * @return a copy of current EIA header; changes to it are not seen by this header
      */
     public HashMap<String,Object> getEIAHeader() {
-        return eiaHeader;
+        HashMap<String,Object> header = new HashMap<String,Object>((NUMBER_OF_ATTRIBUTES + 1) * 2);
+        for (int i = 0; i < values.length; i++)
+            header.put(eiaAttributes[i], values[i]);
+        return header;
     }
 
     /**
      * Using external header to set this EIA header
-     * @param eiaHeader current EIA header
+     * @param eiaHeader current EIA header, whose values are copied
      */
     public void setEiaHeader(HashMap<String,Object> eiaHeader) {
-        this.eiaHeader = eiaHeader;
+        for (int i = 0; i < values.length; i++)
+            values[i] = (String) eiaHeader.get(eiaAttributes[i]);
+        numbersParsed = false;
     }
 
     /**
      * Returns the value given the key
      * @param key key of the EIA header
-     * @return string value of the attribute
+     * @return string value of the attribute, null if key is not an EIA attribute
      */
     public String getAttributeValueAt(String key) {
-        return (String)eiaHeader.get(key);
+        int index = indexOfAttribute(key);
+        return index == -1 ? null : values[index];
+    }
+
+    /**
+     * Returns the number of bytes in header record
+     * @return the value, or FieldLexer.NOT_AN_INTEGER if the field is not an integer
+     */
+    public long getNumberOfBytesInHeader() {
+        parseNumbers();
+        return numberOfBytesInHeader;
+    }
+
+    /**
+     * Returns the number of data records, -1 if unknown
+     * @return the value, or FieldLexer.NOT_AN_INTEGER if the field is not an integer
+     */
+    public long getNumberOfDataRecords() {
+        parseNumbers();
+        return numberOfDataRecords;
+    }
+
+    /**
+     * Returns the number of signals
+     * @return the value, or FieldLexer.NOT_AN_INTEGER if the field is not an integer
+     */
+    public long getNumberOfSignals() {
+        parseNumbers();
+        return numberOfSignals;
+    }
+
+    /**
+     * Returns the duration of a data record, in seconds
+     * @return the value, or Float.NaN if the field is not a number
+     */
+    public float getDurationOfDataRecord() {
+        parseNumbers();
+        return durationOfDataRecord;
+    }
+
+    private void parseNumbers() {
+        if (numbersParsed)
+            return;
+        numberOfBytesInHeader = FieldLexer.parseInt(values[index_of_bytes]);
+        numberOfDataRecords = FieldLexer.parseInt(values[index_number_of_datarecord]);
+        numberOfSignals = FieldLexer.parseInt(values[index_number_of_channels]);
+        String duration = values[index_duration];
+        durationOfDataRecord = FieldLexer.isFloat(duration) ? Float.parseFloat(duration) : Float.NaN;
+        numbersParsed = true;
+    }
+
+    /**
+     * An EIA header is a single row of attributes
+     * @return 1
+     */
+    public int getRowCount() {
+        return 1;
+    }
+
+    /**
+     * Returns the value at the given column, in the order of the EIA attributes
+     * @param row ignored, an EIA header has a single row
+     * @param column the index of the attribute, 0 being the file name
+     * @return string value of the attribute
+     */
+    public String getValueAt(int row, int column) {
+        return values[column];
     }
 
     /**
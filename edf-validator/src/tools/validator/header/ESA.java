@@ -21,6 +21,7 @@ public class ESA {
     public static final String CORRECTED_LABEL = "corrected label";
     public static final int NUMBER_OF_ATTRIBUTES = 10; // the number of ESA attributes
     public static final int EIA_OFFSET = 256; // the offset of EIA header
+    public static final int BYTES_PER_CHANNEL = 256; // the ESA bytes of a single channel
     
     // ESA attribute names in manner of array
     protected final static String[] esaAttributes = {
@@ -67,6 +68,18 @@ public class ESA {
         return esaAttributes[index];
     }
     
+    /**
+     * Get the position of an ESA attribute
+     * @param key the attribute name
+     * @return the index of the attribute, or -1 if key is not an ESA attribute
+     */
+    public static int indexOfAttribute(String key) {
+        for (int i = 0; i < esaAttributes.length; i++)
+            if (esaAttributes[i].equals(key))
+                return i;
+        return -1;
+    }
+    
     /**
      * Get an ESA template attribute at the specified index
      * @param index the position to return an ESA template attribute
@@ -4,14 +4,18 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.HashMap;
 
+
 /**
  * ESAChannel is responsible of reading and writing signal channel information from and to a file
  */
 public class ESAChannel extends ESA {
 	
-	// wei wang, 2014-6-18:
-	// Change HashMap to HashMap<String,Object>
-    private HashMap<String,Object> esaChannel = null;
+    // attribute values in ESA order, for a channel standing on its own
+    private String[] values = null;
+    // or the header holding the values and the position of the channel in it, 
+    // for a channel viewed in an ESAHeader
+    private ESAHeader header = null;
+    private int channelIndex = -1;
     ///////////////////////////////////////////////////////////////////////////////
     ///////////////// START of constructor zone //////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////////
@@ -21,14 +25,26 @@ public class ESAChannel extends ESA {
      */
     public ESAChannel() {
         super();
+        values = new String[NUMBER_OF_ATTRIBUTES];
     }
 
     /**
      * Construct the ESA channel using an external channel represented by a HashMap
-     * @param channel the external channel to use
+     * @param channel the external channel to use, its values are copied
      */
     public ESAChannel(HashMap<String,Object> channel) {
-        esaChannel = channel;
+        values = new String[NUMBER_OF_ATTRIBUTES];
+        setEsaChannel(channel);
+    }
+
+    /**
+     * Construct a view of a channel of an ESA header: reads and writes go to the header
+     * @param header the header holding the channel
+     * @param channelIndex the position of the channel in the header
+     */
+    ESAChannel(ESAHeader header, int channelIndex) {
+        this.header = header;
+        this.channelIndex = channelIndex;
     }
 
     /**
@@ -50,7 +66,7 @@ public class ESAChannel extends ESA {
         byte[] reserved = new byte[32];
         
         int offset = EIA_OFFSET; // skip the EIA part of 256 bytes large
-        esaChannel = new HashMap<String,Object>(NUMBER_OF_ATTRIBUTES);
+        values = new String[NUMBER_OF_ATTRIBUTES];
 
         /**
          * the algorithm is:
@@ -145,6 +161,7 @@ public class ESAChannel extends ESA {
             e.printStackTrace();
         }
   }
+
 ///////////////////////////////////////////////////////////////////////////////
 ////////////////////// END of constructor zone ////////////////////////////////
 ///////////////////////////////////////////////////////////////////////////////
@@ -247,19 +264,20 @@ public class ESAChannel extends ESA {
 
     /**
      * Get the ESA channel in hashmap form
-     * @return the complete channel in form of HashMap
+     * @return a copy of the complete channel in form of HashMap
      */
     public HashMap<String,Object> getThisChannel() {
-        return esaChannel;
+        return getEsaChannel();
     }
 
     /**
      * Get the signal attribute value given a key
      * @param key the attribute key for the ESA channel
-     * @return  the attribute value
+     * @return  the attribute value, null if key is not an ESA attribute
      */
     public Object getSignalAttributeValueAt(String key) {
-        return esaChannel.get(key);
+        int index = ESA.indexOfAttribute(key);
+        return index == -1 ? null : getSignalAttributeValueAt(index);
     }
     
     /**
@@ -268,33 +286,54 @@ public class ESAChannel extends ESA {
      * @return the attribute value
      */
     public Object getSignalAttributeValueAt(int index) {
-        String key = ESA.getESAAttributeAt(index);
-        return esaChannel.get(key);
+        if (header != null)
+            return header.getValueAt(channelIndex, index);
+        return values[index];
     }
 
     /**
      * Set the attribute value given a key
      * @param key the attribute key for the ESA channel
      * @param value the value for the attribute
+     * @throws IllegalArgumentException if key is not an ESA attribute
      */
     public void setAttributeValueAt(String key, Object value) {
-        esaChannel.put(key, value);
+        int index = ESA.indexOfAttribute(key);
+        if (index == -1)
+            throw new IllegalArgumentException("Not an ESA attribute: " + key);
+        setSignalAttributeValueAt(index, (String) value);
+    }
+
+    /**
+     * Set the attribute value given an index
+     * @param index the position of the ESA attribute
+     * @param value the value for the attribute
+     */
+    public void setSignalAttributeValueAt(int index, String value) {
+        if (header != null)
+            header.setValueAt(channelIndex, index, value);
+        else
+            values[index] = value;
     }
     
     /**
      * Set ESA channel using a HashMap
-     * @param esaChannel the channel used to set to the current channel
+     * @param esaChannel the channel used to set to the current channel, its values are copied
      */
     public void setEsaChannel(HashMap<String,Object> esaChannel) {
-        this.esaChannel = esaChannel;
+        for (int i = 0; i < NUMBER_OF_ATTRIBUTES; i++)
+            setSignalAttributeValueAt(i, (String) esaChannel.get(esaAttributes[i]));
     }
     
     /**
      * Get ESA channel of HashMap format
-     * @return the HashMap representation of the current ESA channel
+     * @return a copy of the current ESA channel as a HashMap; changes to it are not seen by the channel
      */
     public HashMap<String,Object> getEsaChannel(){
-        return esaChannel;
+        HashMap<String,Object> channel = new HashMap<String,Object>(NUMBER_OF_ATTRIBUTES * 2);
+        for (int i = 0; i < NUMBER_OF_ATTRIBUTES; i++)
+            channel.put(esaAttributes[i], getSignalAttributeValueAt(i));
+        return channel;
     }
  
     /**
@@ -3,19 +3,30 @@ package tools.validator.header;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import javax.swing.JTable;
 
+import tools.validator.utils.FieldLexer;
+
 /**
- * Records signal attributes of all channels, one by one, contained in an EDF file
+ * Records signal attributes of all channels contained in an EDF file.
+ * The values are kept one array per attribute across all channels, 
+ * and ESAChannel objects handed out are views of a column of these arrays
  */
-public class ESAHeader extends ESAChannel {
+public class ESAHeader extends ESAChannel implements AttributeSource {
 
-    private ESAChannel[] signalHeader = null; // all attribute values of the channel
+    // columns[attribute][channel], all attribute values of all channels
+    private String[][] columns = new String[NUMBER_OF_ATTRIBUTES][0];
 //    private ESATemplateChannel[] signalTemplateHeader = null;
     private int numberOfChannels = 0; // the number of channels
     private File hostEdfFile = null; // the host file of the header
+    private LabelIndex labelIndex = null; // built on first use
+    private boolean truncated = false; // read from fewer bytes than the channels take
+    // numeric values of the attributes, parsed on first use
+    private long[][] integerColumns = new long[NUMBER_OF_ATTRIBUTES][];
+    private float[][] floatColumns = new float[NUMBER_OF_ATTRIBUTES][];
 
     //////////////////////////////////////////////////////////////////////////////
     ////////////// START of constructor zone /////////////////////////////////////
@@ -42,16 +53,62 @@ public class ESAHeader extends ESAChannel {
     	// 3. attach channels to the header
     	setNumberOfChannels(nChannels); // end of 1.
 	    setHostEdfFile(edfFile); // end of 2.
-    	if (nChannels == 0) {
-    	    signalHeader = null;
-    	    return;
-    	}
-    	signalHeader = new ESAChannel[nChannels]; // start of 3.
-    	for (int i = 0; i < nChannels; i++) {                    
-    		signalHeader[i] = new ESAChannel(raf, i, nChannels);          
+    	for (int i = 0; i < nChannels; i++) { // start of 3.
+    		setSignalChannel(i, new ESAChannel(raf, i, nChannels));
     	} // end of 3.
     }
 
+    /**
+     * Constructs an ESAHeader from the signal header bytes read in one go from a file.
+     * @param buffer the ns * 256 bytes following the EIA header
+     * @param length the number of valid bytes in buffer
+     * @param edfFile host EDF file of the header
+     * @param nChannels the number of Channels
+     */
+    public ESAHeader(byte[] buffer, int length, File edfFile, int nChannels) {
+//      Algorithm:
+//      1. cut each attribute block into the values of its column;
+//      2. a value with the same bytes as the one of the previous channel shares its String, 
+//         which is the common case for all attributes but the label;
+//      3. attributes past the end of a truncated buffer are left null, as in a partial read;
+    	setNumberOfChannels(nChannels);
+	    setHostEdfFile(edfFile);
+	    int offset = 0;
+	    for (int j = 0; j < NUMBER_OF_ATTRIBUTES; j++) {
+	        int size = byteLength[j];
+	        String[] column = columns[j];
+	        for (int i = 0; i < nChannels; i++) {
+	            int start = offset + i * size;
+	            if (start + size > length) {
+	                truncated = true; // end of 3.
+	                break;
+	            }
+	            if (i > 0 && sameBytes(buffer, start - size, start, size))
+	                column[i] = column[i - 1]; // end of 2.
+	            else
+	                column[i] = FieldLexer.decode(buffer, start, size); // end of 1.
+	        }
+	        offset += nChannels * size;
+	    }
+    }
+
+    /**
+     * Tests whether the signal header was read from fewer bytes than its channels take, 
+     * its last attributes being left null. Validation reports it as IncomplianceCode.ESA_TRUNCATED, 
+     * and the missing attributes as empty fields
+     * @return true if the signal header is truncated
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private static boolean sameBytes(byte[] buffer, int a, int b, int size) {
+        for (int k = 0; k < size; k++)
+            if (buffer[a + k] != buffer[b + k])
+                return false;
+        return true;
+    }
+
     /**
      * Constructs an ESA header from an ESA table
      * @param table  ESA table used to extract ESA header
@@ -66,27 +123,18 @@ public class ESAHeader extends ESAChannel {
         int nColumns = table.getColumnCount();
         int nChannels = nRows; // number of channels, end of 1.
     	if(!template) {            
-            signalHeader = new ESAChannel[nChannels];
-            for (int i = 0; i < nChannels; i++) {
-                signalHeader[i] = new ESAChannel();
-            }
-                 
+            this.setNumberOfChannels(nChannels);
             String cellValue;
             for (int row = 0; row < nChannels; row++) {
-                HashMap<String,Object> tempHeader = new HashMap<String,Object>(ESA.NUMBER_OF_ATTRIBUTES);
                 for (int col = 0; col < nColumns; col++) {
-                    String attributeName = ESA.getESAAttributeAt(col);
                     cellValue = (String) table.getModel().getValueAt(row, col); 
                     if (cellValue == null)
                         cellValue = "";
                     else
                         cellValue = cellValue.trim();
-                    tempHeader.put(attributeName, cellValue);
+                    columns[col][row] = cellValue;
                 }
-                signalHeader[row] = new ESAChannel(tempHeader);
-                //signalHeader[row].setEsaChannel(tempHeader);
             }            
-            this.setNumberOfChannels(nChannels);
     	} else {            
 //            signalTemplateHeader = new ESATemplateChannel[nChannels];
 //            for (int i = 0; i < nChannels; i++) {
@@ -118,7 +166,7 @@ public class ESAHeader extends ESAChannel {
      */
     public ESAHeader(int nChannels) {
 //    	Note: seems to be obsolete. Not removed before finalized
-        signalHeader = new ESAChannel[nChannels];
+        setNumberOfChannels(nChannels);
 //        signalTemplateHeader = new ESATemplateChannel[nChannels];
     }
 
@@ -171,7 +219,7 @@ public class ESAHeader extends ESAChannel {
     private void writeNumberOfChannelsToHeader(RandomAccessFile raf, File file, int nChannel) {
         EIAHeader eiaHeader = new EIAHeader();
         
-        eiaHeader.getEIAHeader().put(EIA.NUMBER_OF_SIGNALS, "" + nChannel);
+        eiaHeader.setValueAt(EIA.NUMBER_OF_SIGNALS, "" + nChannel);
         eiaHeader.saveToDisk(raf, file);
     }
     
@@ -180,12 +228,20 @@ public class ESAHeader extends ESAChannel {
     ///////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Sets the channel number
+     * Sets the channel number. The values of the channels kept are preserved, 
+     * the values of added channels are null
      * @param nChannels number of Channels
      * {@literal numberOfChannels setter}
      */
     public void setNumberOfChannels(int nChannels) {
         this.numberOfChannels = nChannels;
+        for (int j = 0; j < NUMBER_OF_ATTRIBUTES; j++) {
+            if (columns[j].length != nChannels)
+                columns[j] = Arrays.copyOf(columns[j], nChannels);
+            integerColumns[j] = null;
+            floatColumns[j] = null;
+        }
+        labelIndex = null;
     }
 
     /**
@@ -197,13 +253,23 @@ public class ESAHeader extends ESAChannel {
         return numberOfChannels;
     }
 
+    /**
+     * Gets the number of rows, one row per channel
+     * @return number of Channels
+     */
+    public int getRowCount() {
+        return numberOfChannels;
+    }
+
     /**
      * Gets the ESA channel at specified position
      * @param index the index of channel to be acquired
-     * @return the ESA channel with indexed channel
+     * @return a view of the indexed channel, reading and writing this header
      */
     public ESAChannel getEsaChannelAt(int index) {
-        return signalHeader[index];
+        if (index < 0 || index >= numberOfChannels)
+            throw new ArrayIndexOutOfBoundsException(index);
+        return new ESAChannel(this, index);
     }
     
     /**
@@ -233,27 +299,44 @@ public class ESAHeader extends ESAChannel {
     
     /**
      * Sets the signal header from an array of ESA channel
-     * @param signalHeader an array of ESA channel
+     * @param signalHeader an array of ESA channel, whose values are copied
      */
     public void setSignalHeader(ESAChannel[] signalHeader) {
-        this.signalHeader = signalHeader;
+        setNumberOfChannels(signalHeader.length);
+        for (int i = 0; i < signalHeader.length; i++)
+            setSignalChannel(i, signalHeader[i]);
     }
     
     /**
      * Sets the signal channel at specified position
      * @param index the position to set 
-     * @param channel the channel to set at the specified position
+     * @param channel the channel to set at the specified position, whose values are copied
      */
     public void setSignalChannel(int index, ESAChannel channel) {
-        this.signalHeader[index] = channel;
+        for (int j = 0; j < NUMBER_OF_ATTRIBUTES; j++)
+            setValueAt(index, j, (String) channel.getSignalAttributeValueAt(j));
+    }
+
+    /**
+     * Gets the case-insensitive index of the channel labels, built once per header.
+     * Labels changed directly on a channel afterwards are not seen by the index.
+     * @return the label index
+     */
+    public LabelIndex getLabelIndex() {
+        if (labelIndex == null)
+            labelIndex = new LabelIndex(this, 0); // label is the first ESA attribute
+        return labelIndex;
     }
 
     /**
      * Gets Signal header
-     * @return signal header
+     * @return views of all channels of the signal header
      */
     public ESAChannel[] getSignalHeader() {
-        return signalHeader;
+        ESAChannel[] channels = new ESAChannel[numberOfChannels];
+        for (int i = 0; i < numberOfChannels; i++)
+            channels[i] = new ESAChannel(this, i);
+        return channels;
     }
     
     /**
@@ -270,7 +353,7 @@ public class ESAHeader extends ESAChannel {
      * @return the ESA channel at index 
      */
     public ESAChannel getSignalChannelAt(int index) {
-        return signalHeader[index];
+        return getEsaChannelAt(index);
     }
     
     /**
@@ -289,9 +372,59 @@ public class ESAHeader extends ESAChannel {
      * @return the String value of an attribute
      */
     public String getValueAt(int indexOfChannel, int indexOfAttribute) {
-        ESAChannel channel = this.getEsaChannelAt(indexOfChannel);
-        String value = (String) channel.getSignalAttributeValueAt(indexOfAttribute);
-        return value;
+        return columns[indexOfAttribute][indexOfChannel];
+    }
+
+    /**
+     * Sets the attribute of a specified channel
+     * @param indexOfChannel the channel position
+     * @param indexOfAttribute the attribute position of a channel
+     * @param value the String value of the attribute
+     */
+    public void setValueAt(int indexOfChannel, int indexOfAttribute, String value) {
+        columns[indexOfAttribute][indexOfChannel] = value;
+        integerColumns[indexOfAttribute] = null;
+        floatColumns[indexOfAttribute] = null;
+        if (indexOfAttribute == 0)
+            labelIndex = null;
+    }
+
+    /**
+     * Gets the attribute of a specified channel as an integer, e.g. the digital minimum 
+     * or the number of samples. The whole attribute is parsed once, on first use
+     * @param indexOfChannel the channel position
+     * @param indexOfAttribute the attribute position of a channel
+     * @return the value, or FieldLexer.NOT_AN_INTEGER if it is not an integer
+     */
+    public long getIntegerAt(int indexOfChannel, int indexOfAttribute) {
+        long[] column = integerColumns[indexOfAttribute];
+        if (column == null) {
+            column = new long[numberOfChannels];
+            for (int i = 0; i < numberOfChannels; i++)
+                column[i] = FieldLexer.parseInt(columns[indexOfAttribute][i]);
+            integerColumns[indexOfAttribute] = column;
+        }
+        return column[indexOfChannel];
+    }
+
+    /**
+     * Gets the attribute of a specified channel as a number, e.g. the physical minimum. 
+     * The whole attribute is parsed once, on first use
+     * @param indexOfChannel the channel position
+     * @param indexOfAttribute the attribute position of a channel
+     * @return the value, or Float.NaN if it is not a number
+     */
+    public float getFloatAt(int indexOfChannel, int indexOfAttribute) {
+        float[] column = floatColumns[indexOfAttribute];
+        if (column == null) {
+            column = new float[numberOfChannels];
+            for (int i = 0; i < numberOfChannels; i++) {
+                String value = columns[indexOfAttribute][i];
+                column[i] = FieldLexer.isFloat(value) ? Float.parseFloat(value) : Float.NaN;
+            }
+            floatColumns[indexOfAttribute] = column;
+        }
+        return column[indexOfChannel];
     }
 
     
@@ -304,9 +437,8 @@ public class ESAHeader extends ESAChannel {
     public void printEsaHeaderToScreen() {
         int nChannels = this.getNumberOfChannels();
         for (int i = 0; i < nChannels; i++) {
-            ESAChannel channel = this.getSignalChannelAt(i);
             for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++) {
-                String value = (String) channel.getSignalAttributeValueAt(ESA.getESAAttributeAt(j));
+                String value = getValueAt(i, j);
                 System.out.print(value + "\t");                
             }
             System.out.print("\n");
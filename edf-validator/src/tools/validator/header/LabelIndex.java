@@ -0,0 +1,108 @@
+package tools.validator.header;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A case-insensitive index of the signal labels of an ESA header, built in one pass. 
+ * Channels sharing a label are chained in channel order, so duplicate groups and 
+ * channel lookups by label cost no more than the number of channels involved.
+ */
+public class LabelIndex {
+
+    private final HashMap<String,Integer> firstChannel; // normalized label -> first channel
+    private final int[] nextChannel; // next channel with the same label, -1 if none
+    private int numberOfDuplicates = 0; // channels whose label is already used by an earlier one
+
+    /**
+     * Builds the index of the labels found in a column of an attribute source
+     * @param source the ESA attributes, one row per channel
+     * @param column the label column
+     */
+    public LabelIndex(AttributeSource source, int column) {
+        int nChannels = source.getRowCount();
+        firstChannel = new HashMap<String,Integer>(nChannels * 2);
+        nextChannel = new int[nChannels];
+        int[] lastChannel = new int[nChannels]; // last channel of each group, kept at the first one
+        for (int i = 0; i < nChannels; i++) {
+            nextChannel[i] = -1;
+            String label = source.getValueAt(i, column);
+            if (label == null || label.equals(""))
+                continue; // an empty label is reported as such, not as a duplicate
+            Integer first = firstChannel.get(normalize(label));
+            if (first == null) {
+                firstChannel.put(normalize(label), i);
+                lastChannel[i] = i;
+            } else {
+                nextChannel[lastChannel[first]] = i;
+                lastChannel[first] = i;
+                numberOfDuplicates++;
+            }
+        }
+    }
+
+    /**
+     * Returns the key under which a label is indexed: labels that are 
+     * equal ignoring case, as String.equalsIgnoreCase, have the same key
+     * @param label the label
+     * @return the normalized label
+     */
+    public static String normalize(String label) {
+        char[] chars = label.toCharArray();
+        for (int i = 0; i < chars.length; i++)
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        return new String(chars);
+    }
+
+    /**
+     * Returns the first channel with a label, ignoring case
+     * @param label the label to look for
+     * @return the channel index, -1 if no channel has this label
+     */
+    public int indexOf(String label) {
+        if (label == null)
+            return -1;
+        Integer first = firstChannel.get(normalize(label));
+        return first == null ? -1 : first;
+    }
+
+    /**
+     * Returns the next channel after a given one having the same label
+     * @param channel the channel index
+     * @return the next channel index, -1 if none
+     */
+    public int nextWithSameLabel(int channel) {
+        return nextChannel[channel];
+    }
+
+    /**
+     * Tests whether some label is used by several channels
+     * @return true if there is at least one duplicate group
+     */
+    public boolean hasDuplicates() {
+        return numberOfDuplicates > 0;
+    }
+
+    /**
+     * Returns the groups of channels sharing a label, in channel order
+     * @return one array of channel indices per duplicated label
+     */
+    public ArrayList<int[]> getDuplicateGroups() {
+        ArrayList<int[]> groups = new ArrayList<int[]>();
+        if (!hasDuplicates())
+            return groups;
+        for (Integer first : firstChannel.values()) {
+            if (nextChannel[first] == -1)
+                continue;
+            int size = 0;
+            for (int i = first; i != -1; i = nextChannel[i])
+                size++;
+            int[] group = new int[size];
+            size = 0;
+            for (int i = first; i != -1; i = nextChannel[i])
+                group[size++] = i;
+            groups.add(group);
+        }
+        return groups;
+    }
+}
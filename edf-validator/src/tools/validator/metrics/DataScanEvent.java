@@ -0,0 +1,14 @@
+package tools.validator.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Checking the data section of a file: its size against the header, then the samples
+ */
+@Name("tools.validator.DataScan")
+@Label("EDF Data Scan")
+@Description("Checking the data records of an EDF file")
+public class DataScanEvent extends ValidationEvent {
+}
@@ -0,0 +1,14 @@
+package tools.validator.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Reading and parsing the EIA block and the signal header of a file, i.e. constructing an EDFFileHeader
+ */
+@Name("tools.validator.HeaderRead")
+@Label("EDF Header Read")
+@Description("Reading and parsing the EIA and ESA headers of an EDF file")
+public class HeaderReadEvent extends ValidationEvent {
+}
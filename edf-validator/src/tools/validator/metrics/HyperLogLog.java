@@ -0,0 +1,112 @@
+package tools.validator.metrics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Estimates the number of distinct values offered, in a fixed amount of memory: a
+ * HyperLogLog sketch of 2^precision registers, each keeping the highest rank seen
+ * among the hashes falling on it. The standard error is 1.04 / sqrt(2^precision),
+ * 1.6% at the default precision of 12, whatever the number of values.
+ * Many threads offer values without a lock: a register only ever grows, so it is
+ * written only the first few times one of its hashes ranks higher, and read otherwise
+ */
+public class HyperLogLog {
+
+    /** the default precision, 4096 registers */
+    public static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    /**
+     * Constructs an empty sketch of DEFAULT_PRECISION
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs an empty sketch
+     * @param precision the base 2 logarithm of the number of registers, from 4 to 18
+     */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("precision must be from 4 to 18");
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    /**
+     * Offers a value
+     * @param value the value, counted once however often it is offered
+     */
+    public void offer(CharSequence value) {
+        offerHash(hash(value));
+    }
+
+    /**
+     * Offers the 64-bit hash of a value
+     * @param hash the hash, evenly distributed over its bits
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the rank is the position of the first 1 bit after the index bits;
+        // the sentinel bit keeps it within 64 - precision + 1
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        int current = registers.get(index);
+        while (rank > current) {
+            if (registers.compareAndSet(index, current, rank))
+                return;
+            current = registers.get(index);
+        }
+    }
+
+    /**
+     * Estimates the number of distinct values offered so far
+     * @return the estimate, exact to within a few values when there are fewer than the registers
+     */
+    public long estimate() {
+        int m = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            int rank = registers.get(i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0)
+                zeros++;
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros); // linear counting while registers are still empty
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the relative standard error of the estimates
+     * @return 1.04 / sqrt(number of registers)
+     */
+    public double getStandardError() {
+        return 1.04 / Math.sqrt(registers.length());
+    }
+
+    /**
+     * Hashes a value to 64 bits: FNV-1a over its characters, then the finalizer of
+     * MurmurHash3, so that values differing in their last characters differ in the high bits
+     * @param value the value
+     * @return the hash
+     */
+    public static long hash(CharSequence value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
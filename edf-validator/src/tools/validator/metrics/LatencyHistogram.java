@@ -0,0 +1,88 @@
+package tools.validator.metrics;
+
+/**
+ * A histogram of durations over fixed buckets from 50 microseconds to 10 seconds,
+ * the bounds Prometheus expects of a histogram in seconds. Built on StripedCounters,
+ * so recording takes no lock
+ */
+public class LatencyHistogram {
+
+    /** upper bounds of the buckets, in seconds; a last bucket takes everything above */
+    static final double[] BOUNDS = {
+        0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01,
+        0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+    static {
+        for (int i = 0; i < BOUNDS.length; i++)
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * 1e9);
+    }
+
+    private static final int SUM = BOUNDS.length + 1; // the counter after the buckets holds the total nanoseconds
+
+    private final StripedCounters counters = new StripedCounters(BOUNDS.length + 2);
+
+    /**
+     * Records a duration
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUND_NANOS.length && nanos > BOUND_NANOS[bucket])
+            bucket++;
+        counters.increment(bucket);
+        counters.add(SUM, nanos);
+    }
+
+    /**
+     * Returns the number of durations per bucket, not cumulative
+     * @return BOUNDS.length + 1 counts, the last one for durations above every bound
+     */
+    public long[] getBucketCounts() {
+        long[] counts = new long[BOUNDS.length + 1];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = counters.get(i);
+        return counts;
+    }
+
+    /**
+     * Returns the number of durations recorded
+     * @return the count
+     */
+    public long getCount() {
+        long count = 0;
+        for (long n : getBucketCounts())
+            count += n;
+        return count;
+    }
+
+    /**
+     * Returns the sum of the durations recorded
+     * @return the sum in seconds
+     */
+    public double getSumSeconds() {
+        return counters.get(SUM) / 1e9;
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket it falls in
+     * @param p the percentile in (0, 100]
+     * @return the estimate in seconds, infinite if it lies above every bound, 0 if nothing was recorded
+     */
+    public double getPercentileSeconds(double p) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long n : counts)
+            total += n;
+        if (total == 0)
+            return 0;
+        long rank = (long) Math.ceil(p / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return BOUNDS[i];
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
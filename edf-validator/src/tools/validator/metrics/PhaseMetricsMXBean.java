@@ -0,0 +1,33 @@
+package tools.validator.metrics;
+
+/**
+ * The time spent in one phase of validation, registered as tools.validator:type=Phase,name=PHASE.
+ * Percentiles are the upper bound of the histogram bucket they fall in
+ */
+public interface PhaseMetricsMXBean {
+
+    /**
+     * @return the number of times the phase ran
+     */
+    long getCount();
+
+    /**
+     * @return the time spent in the phase, in seconds
+     */
+    double getTotalSeconds();
+
+    /**
+     * @return the mean duration of the phase, in milliseconds
+     */
+    double getMeanMillis();
+
+    /**
+     * @return the median duration of the phase, in milliseconds
+     */
+    double getP50Millis();
+
+    /**
+     * @return the 99th percentile of the duration of the phase, in milliseconds
+     */
+    double getP99Millis();
+}
@@ -0,0 +1,14 @@
+package tools.validator.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Formatting the report of a file and handing it to the report writer or the HTTP client
+ */
+@Name("tools.validator.ReportWrite")
+@Label("EDF Report Write")
+@Description("Formatting and writing the report of an EDF file")
+public class ReportWriteEvent extends ValidationEvent {
+}
@@ -0,0 +1,26 @@
+package tools.validator.metrics;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Checking the rules of an EIA or ESA header, read from a file or shown in a table
+ */
+@Name("tools.validator.RuleEvaluation")
+@Label("EDF Rule Evaluation")
+@Description("Checking the rules of an EIA or ESA header")
+public class RuleEvaluationEvent extends ValidationEvent {
+
+    @Label("Header")
+    @Description("EIA or ESA")
+    public String header;
+
+    /**
+     * Constructs the event of a header
+     * @param header "EIA" or "ESA"
+     */
+    public RuleEvaluationEvent(String header) {
+        this.header = header;
+    }
+}
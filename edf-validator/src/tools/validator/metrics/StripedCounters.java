@@ -0,0 +1,78 @@
+package tools.validator.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed set of counters that many threads add to without contending: every thread
+ * adds to the row of its stripe, and a read sums the rows. Rows are padded apart by a
+ * cache line, so threads on different stripes never share one. Sums read while threads
+ * add are not a snapshot across counters, which is fine for monitoring
+ */
+public class StripedCounters {
+
+    private static final int PADDING = 8; // longs in a cache line of 64 bytes
+    private static final int MAX_STRIPES = 64;
+    private static final int STRIPES = stripes();
+
+    private final int counters;
+    private final int width;
+    private final AtomicLongArray cells;
+
+    /**
+     * Constructs counters starting at 0
+     * @param counters the number of counters
+     */
+    public StripedCounters(int counters) {
+        this.counters = counters;
+        this.width = counters + PADDING;
+        this.cells = new AtomicLongArray(STRIPES * width);
+    }
+
+    /**
+     * The number of stripes: a power of two, twice the processors so
+     * pool threads rarely share a stripe, at most MAX_STRIPES
+     */
+    private static int stripes() {
+        int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        return Math.min(n, MAX_STRIPES);
+    }
+
+    /**
+     * Adds to a counter
+     * @param counter the index of the counter
+     * @param delta the amount to add
+     */
+    public void add(int counter, long delta) {
+        // thread ids are handed out in sequence, so the threads of a pool fall on distinct stripes
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        cells.getAndAdd(stripe * width + counter, delta);
+    }
+
+    /**
+     * Adds 1 to a counter
+     * @param counter the index of the counter
+     */
+    public void increment(int counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Returns the value of a counter
+     * @param counter the index of the counter
+     * @return the sum over all stripes
+     */
+    public long get(int counter) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++)
+            sum += cells.get(stripe * width + counter);
+        return sum;
+    }
+
+    /**
+     * Returns the number of counters
+     * @return the number of counters
+     */
+    public int size() {
+        return counters;
+    }
+}
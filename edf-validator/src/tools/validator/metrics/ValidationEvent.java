@@ -0,0 +1,53 @@
+package tools.validator.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * The fields shared by the Flight Recorder events of the validator. The events are enabled
+ * by default, so any recording, e.g. -XX:StartFlightRecording=filename=run.jfr, holds them
+ * next to the GC, I/O and lock events; "jfr print --categories 'EDF Validator' run.jfr" lists them.
+ * They record no stack trace, and their fields are only set when the event is committed,
+ * so they cost next to nothing while no recording runs
+ */
+@Category("EDF Validator")
+@StackTrace(false)
+public abstract class ValidationEvent extends jdk.jfr.Event {
+
+    @Label("File")
+    @Description("Path of the EDF file")
+    public String path;
+
+    @Label("Channels")
+    @Description("Number of signals of the file, 0 where not known")
+    public int channels;
+
+    @Label("Bytes")
+    @Description("Bytes read, evaluated or written")
+    @DataAmount
+    public long bytes;
+
+    @Label("Incompliances")
+    @Description("Number of Incompliances found or reported, 0 where not applicable")
+    public int incompliances;
+
+    /**
+     * Sets the fields and commits the event, if the recording takes it
+     * @param path the path of the EDF file
+     * @param channels the number of signals
+     * @param bytes the bytes read, evaluated or written
+     * @param incompliances the number of Incompliances
+     */
+    public void commit(String path, int channels, long bytes, int incompliances) {
+        if (!shouldCommit())
+            return;
+        this.path = path;
+        this.channels = channels;
+        this.bytes = bytes;
+        this.incompliances = incompliances;
+        commit();
+    }
+}
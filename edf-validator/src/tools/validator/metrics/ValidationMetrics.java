@@ -0,0 +1,396 @@
+package tools.validator.metrics;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceRules;
+
+/**
+ * The metrics registry of the validator: a latency histogram per phase of validation,
+ * a failure counter per rule of IncomplianceRules, the files validated by verdict and the bytes read.
+ * Everything is kept in StripedCounters, so parallel validations record without contending.
+ * The registry is exposed as MXBeans under the tools.validator domain, and can be written
+ * as a Prometheus text file for the textfile collector of node_exporter
+ */
+public class ValidationMetrics {
+
+    /**
+     * The phases timed while validating a file
+     */
+    public enum Phase {
+        /** the whole validation of a file, the phases below included */
+        FILE("file"),
+        /** opening the EDF file */
+        OPEN("file_open"),
+        /** reading and parsing the EIA block */
+        EIA_READ("eia_read"),
+        /** reading and parsing the signal header */
+        ESA_READ("esa_read"),
+        /** building an EIA or ESA table, e.g. for display */
+        TABLE_CONSTRUCTION("table_construction"),
+        /** checking the header rules */
+        RULE_EVALUATION("rule_evaluation"),
+        /** checking the data records: sizes, then the samples */
+        DATA_SCAN("data_scan"),
+        /** formatting and writing the report of a file */
+        REPORT_WRITING("report_writing");
+
+        private final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the name of the phase in JMX object names and Prometheus labels
+         * @return the name, in snake case
+         */
+        public String getName() {
+            return name;
+        }
+    }
+
+    /** the rule name of the Incompliances given as text by no header rule */
+    public static final String OTHER_RULE = IncomplianceRules.OTHER;
+
+    public static final String JMX_DOMAIN = "tools.validator";
+
+    private static final int VALID = 0;
+    private static final int INCOMPLIANT = 1;
+    private static final int ERROR = 2;
+    private static final int BYTES_READ = 3;
+
+    private static final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    static {
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new LatencyHistogram();
+    }
+    private static final StripedCounters totals = new StripedCounters(4);
+
+    // by the index of the rule in IncomplianceRules
+    private static final StripedCounters ruleFailures = new StripedCounters(IncomplianceRules.CAPACITY);
+
+    private static boolean registered = false;
+    private static ScheduledExecutorService dumper = null;
+    private static String dumpFile = null;
+
+    private ValidationMetrics() {
+    }
+
+    /**
+     * Records the time spent in a phase
+     * @param phase the phase
+     * @param startNanos the System.nanoTime() when the phase started
+     */
+    public static void record(Phase phase, long startNanos) {
+        phases[phase.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Counts an Incompliance against its rule, as it is found
+     * @param incompliance the Incompliance found
+     */
+    public static void countIncompliance(Incompliance incompliance) {
+        ruleFailures.increment(incompliance.getRule());
+    }
+
+    /**
+     * Counts a validated file by its verdict
+     * @param error true if the file could not be validated
+     * @param valid true if the file has no Incompliance
+     */
+    public static void countFile(boolean error, boolean valid) {
+        totals.increment(error ? ERROR : valid ? VALID : INCOMPLIANT);
+    }
+
+    /**
+     * Counts bytes read from an EDF file
+     * @param bytes the number of bytes
+     */
+    public static void addBytesRead(long bytes) {
+        totals.add(BYTES_READ, bytes);
+    }
+
+    /**
+     * Returns the histogram of a phase
+     * @param phase the phase
+     * @return the live histogram
+     */
+    public static LatencyHistogram getHistogram(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    /**
+     * Returns the number of Incompliances found per rule. The header rules are all listed,
+     * under the names given by --list-rules; the other Incompliances are listed under the
+     * name of their code, e.g. data.truncated, once one was found
+     * @return the counts by rule name, in alphabetical order, OTHER_RULE last
+     */
+    public static Map<String,Long> getRuleFailures() {
+        TreeMap<String,Long> failures = new TreeMap<String,Long>();
+        long other = 0;
+        for (int i = 0; i < IncomplianceRules.size(); i++) {
+            long count = ruleFailures.get(i);
+            if (IncomplianceRules.getName(i).equals(OTHER_RULE))
+                other += count;
+            else if (count > 0 || !IncomplianceRules.isCode(i))
+                failures.put(IncomplianceRules.getName(i), count);
+        }
+        Map<String,Long> sorted = new LinkedHashMap<String,Long>(failures);
+        sorted.put(OTHER_RULE, other);
+        return sorted;
+    }
+
+    /**
+     * Returns the number of files found valid
+     * @return the count since the JVM started
+     */
+    public static long getFilesValid() {
+        return totals.get(VALID);
+    }
+
+    /**
+     * Returns the number of files with Incompliances
+     * @return the count since the JVM started
+     */
+    public static long getFilesWithIncompliances() {
+        return totals.get(INCOMPLIANT);
+    }
+
+    /**
+     * Returns the number of files that could not be validated
+     * @return the count since the JVM started
+     */
+    public static long getFilesWithErrors() {
+        return totals.get(ERROR);
+    }
+
+    /**
+     * Returns the number of bytes read from EDF files
+     * @return the count since the JVM started
+     */
+    public static long getBytesRead() {
+        return totals.get(BYTES_READ);
+    }
+
+    /**
+     * Registers the MXBeans of the registry with the platform MBean server, once per JVM
+     * @throws IllegalStateException if the MBean server refuses them
+     */
+    public static synchronized void registerMBeans() {
+        if (registered)
+            return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new Totals(), new ObjectName(JMX_DOMAIN + ":type=ValidationMetrics"));
+            for (Phase phase : Phase.values())
+                server.registerMBean(new PhaseMetrics(phase),
+                        new ObjectName(JMX_DOMAIN + ":type=Phase,name=" + phase.getName()));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register the validation metrics: " + e.getMessage(), e);
+        }
+        registered = true;
+    }
+
+    /**
+     * Renders the registry in the Prometheus text exposition format
+     * @return the metrics, one sample per line
+     */
+    public static String toPrometheus() {
+        StringBuilder sb = new StringBuilder(8192);
+        sb.append("# HELP edf_validator_phase_seconds Time spent per phase of validation.\n");
+        sb.append("# TYPE edf_validator_phase_seconds histogram\n");
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = getHistogram(phase);
+            long[] counts = histogram.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String bound = i < LatencyHistogram.BOUNDS.length ?
+                        BigDecimal.valueOf(LatencyHistogram.BOUNDS[i]).stripTrailingZeros().toPlainString() : "+Inf";
+                sb.append("edf_validator_phase_seconds_bucket{phase=\"").append(phase.getName())
+                        .append("\",le=\"").append(bound).append("\"} ").append(cumulative).append('\n');
+            }
+            sb.append("edf_validator_phase_seconds_sum{phase=\"").append(phase.getName()).append("\"} ")
+                    .append(histogram.getSumSeconds()).append('\n');
+            sb.append("edf_validator_phase_seconds_count{phase=\"").append(phase.getName()).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        sb.append("# HELP edf_validator_rule_failures_total Incompliances found per rule.\n");
+        sb.append("# TYPE edf_validator_rule_failures_total counter\n");
+        for (Map.Entry<String,Long> rule : getRuleFailures().entrySet())
+            sb.append("edf_validator_rule_failures_total{rule=\"").append(rule.getKey()).append("\"} ")
+                    .append(rule.getValue()).append('\n');
+        sb.append("# HELP edf_validator_files_total Files validated per verdict.\n");
+        sb.append("# TYPE edf_validator_files_total counter\n");
+        sb.append("edf_validator_files_total{verdict=\"valid\"} ").append(getFilesValid()).append('\n');
+        sb.append("edf_validator_files_total{verdict=\"incompliant\"} ").append(getFilesWithIncompliances()).append('\n');
+        sb.append("edf_validator_files_total{verdict=\"error\"} ").append(getFilesWithErrors()).append('\n');
+        sb.append("# HELP edf_validator_bytes_read_total Bytes read from EDF files.\n");
+        sb.append("# TYPE edf_validator_bytes_read_total counter\n");
+        sb.append("edf_validator_bytes_read_total ").append(getBytesRead()).append('\n');
+        return sb.toString();
+    }
+
+    /**
+     * Writes the registry as a Prometheus text file. The file is written aside and moved
+     * into place, so a collector never reads it half written
+     * @param file the file, named *.prom for node_exporter
+     * @throws IOException if the file cannot be written
+     */
+    public static void writePrometheus(String file) throws IOException {
+        Path target = Paths.get(file).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Writer out = new OutputStreamWriter(Files.newOutputStream(temporary), "UTF-8");
+        try {
+            out.write(toPrometheus());
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Rewrites the Prometheus text file periodically from a daemon thread,
+     * for long-running modes. Replaces any earlier periodic dump
+     * @param file the file, named *.prom for node_exporter
+     * @param periodMillis the time between two writes
+     */
+    public static synchronized void startPrometheusDump(final String file, long periodMillis) {
+        stopPrometheusDump();
+        dumpFile = file;
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writePrometheus(file);
+                } catch (IOException e) {
+                    System.err.println("Cannot write the metrics to " + file + ": " + e.getMessage());
+                }
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, writing the file a last time
+     */
+    public static synchronized void stopPrometheusDump() {
+        if (dumper == null)
+            return;
+        dumper.shutdownNow();
+        try {
+            dumper.awaitTermination(1, TimeUnit.SECONDS);
+            writePrometheus(dumpFile);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Cannot write the metrics to " + dumpFile + ": " + e.getMessage());
+        }
+        dumper = null;
+        dumpFile = null;
+    }
+
+    /**
+     * The ValidationMetrics MXBean
+     */
+    private static class Totals implements ValidationMetricsMXBean {
+        @Override
+        public long getFilesValidated() {
+            return getFilesValid() + getFilesWithIncompliances() + getFilesWithErrors();
+        }
+
+        @Override
+        public long getFilesValid() {
+            return ValidationMetrics.getFilesValid();
+        }
+
+        @Override
+        public long getFilesWithIncompliances() {
+            return ValidationMetrics.getFilesWithIncompliances();
+        }
+
+        @Override
+        public long getFilesWithErrors() {
+            return ValidationMetrics.getFilesWithErrors();
+        }
+
+        @Override
+        public long getBytesRead() {
+            return ValidationMetrics.getBytesRead();
+        }
+
+        @Override
+        public Map<String,Long> getRuleFailures() {
+            return ValidationMetrics.getRuleFailures();
+        }
+    }
+
+    /**
+     * The MXBean of a phase
+     */
+    private static class PhaseMetrics implements PhaseMetricsMXBean {
+        private final LatencyHistogram histogram;
+
+        PhaseMetrics(Phase phase) {
+            this.histogram = getHistogram(phase);
+        }
+
+        @Override
+        public long getCount() {
+            return histogram.getCount();
+        }
+
+        @Override
+        public double getTotalSeconds() {
+            return histogram.getSumSeconds();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long count = histogram.getCount();
+            return count == 0 ? 0 : histogram.getSumSeconds() * 1000 / count;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return histogram.getPercentileSeconds(50) * 1000;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return histogram.getPercentileSeconds(99) * 1000;
+        }
+    }
+}
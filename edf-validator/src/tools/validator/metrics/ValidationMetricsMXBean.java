@@ -0,0 +1,39 @@
+package tools.validator.metrics;
+
+import java.util.Map;
+
+/**
+ * The totals of the validations done by this JVM, registered as tools.validator:type=ValidationMetrics
+ */
+public interface ValidationMetricsMXBean {
+
+    /**
+     * @return the number of files validated, whatever their verdict
+     */
+    long getFilesValidated();
+
+    /**
+     * @return the number of files found valid
+     */
+    long getFilesValid();
+
+    /**
+     * @return the number of files with Incompliances
+     */
+    long getFilesWithIncompliances();
+
+    /**
+     * @return the number of files that could not be validated
+     */
+    long getFilesWithErrors();
+
+    /**
+     * @return the number of bytes read from EDF files, headers and data records
+     */
+    long getBytesRead();
+
+    /**
+     * @return the number of Incompliances found per rule, by rule name
+     */
+    Map<String,Long> getRuleFailures();
+}
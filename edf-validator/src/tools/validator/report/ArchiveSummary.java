@@ -0,0 +1,308 @@
+package tools.validator.report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.header.EIAHeader;
+import tools.validator.header.ESAHeader;
+import tools.validator.header.LabelIndex;
+import tools.validator.metrics.HyperLogLog;
+import tools.validator.metrics.StripedCounters;
+import tools.validator.utils.FieldLexer;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceRules;
+
+/**
+ * Totals of a whole run, for an archive too large to read file by file: the files by verdict,
+ * the failures per rule, the distribution of the duration of data record, the number of distinct
+ * channel labels and patient IDs, and the sampling rates per label. The workers validating the files
+ * feed it as they go, so it takes no second read of the archive, and it is kept in a fixed amount
+ * of memory however many files there are: counts in StripedCounters, distinct values in HyperLogLog
+ * sketches, and the rates of the first maxLabels labels seen, the others being added up together
+ */
+public class ArchiveSummary {
+
+	/** default number of labels whose sampling rates are kept apart */
+	public static final int DEFAULT_MAX_LABELS = 256;
+
+	/** upper bounds of the buckets of the duration of data record, in seconds; a last bucket takes everything above */
+	static final double[] DURATION_BOUNDS = { 0.1, 0.25, 0.5, 1, 2, 5, 10, 30, 60 };
+
+	private static final int COL_LABEL = 0; // ESA attribute columns
+	private static final int COL_NUMBER_OF_SAMPLES = 8;
+
+	// the counters of files
+	private static final int FILES = 0;
+	private static final int VALID = 1;
+	private static final int INCOMPLIANT = 2;
+	private static final int ERROR = 3;
+	private static final int INCOMPLIANCES = 4;
+	private static final int HEADERS = 5;
+	private static final int CHANNELS = 6;
+
+	// the counters of a label, in its row of labelCounters
+	private static final int LABEL_CHANNELS = 0;
+	private static final int LABEL_RATED = 1; // channels with a sampling rate
+	private static final int LABEL_RATE_SUM = 2; // in millihertz
+	private static final int LABEL_WIDTH = 3;
+
+	private final StripedCounters files = new StripedCounters(7);
+	private final StripedCounters ruleFailures = new StripedCounters(IncomplianceRules.CAPACITY); // by IncomplianceRules index
+	// the first bucket takes the durations which are not a positive number
+	private final StripedCounters durations = new StripedCounters(DURATION_BOUNDS.length + 2);
+	private final HyperLogLog labels = new HyperLogLog();
+	private final HyperLogLog patients = new HyperLogLog();
+
+	private final int maxLabels;
+	private final ConcurrentHashMap<String,Integer> labelRows = new ConcurrentHashMap<String,Integer>();
+	private final AtomicInteger nextLabelRow = new AtomicInteger();
+	private final AtomicReferenceArray<String> labelNames; // as first seen, the keys being normalized
+	private final StripedCounters labelCounters;
+	private final AtomicLongArray minRates; // in millihertz, by label row
+	private final AtomicLongArray maxRates;
+
+	/**
+	 * Constructs an empty summary keeping the rates of DEFAULT_MAX_LABELS labels apart
+	 */
+	public ArchiveSummary() {
+		this(DEFAULT_MAX_LABELS);
+	}
+
+	/**
+	 * Constructs an empty summary
+	 * @param maxLabels the number of labels whose sampling rates are kept apart,
+	 * the first ones seen; the rates of the others are added up in a last row
+	 */
+	public ArchiveSummary(int maxLabels) {
+		if (maxLabels < 0)
+			throw new IllegalArgumentException("maxLabels must not be negative");
+		this.maxLabels = maxLabels;
+		this.labelNames = new AtomicReferenceArray<String>(maxLabels);
+		this.labelCounters = new StripedCounters((maxLabels + 1) * LABEL_WIDTH);
+		this.minRates = new AtomicLongArray(maxLabels + 1);
+		this.maxRates = new AtomicLongArray(maxLabels + 1);
+		for (int i = 0; i <= maxLabels; i++) {
+			minRates.set(i, Long.MAX_VALUE);
+			maxRates.set(i, Long.MIN_VALUE);
+		}
+	}
+
+	/**
+	 * Adds the verdict of a file, whether validated or served from a cache
+	 * @param error true if the file could not be validated
+	 * @param incompliances the Incompliances found, empty if the file is valid
+	 */
+	public void addVerdict(boolean error, List<Incompliance> incompliances) {
+		files.increment(FILES);
+		if (error) {
+			files.increment(ERROR);
+			return;
+		}
+		if (incompliances.isEmpty()) {
+			files.increment(VALID);
+			return;
+		}
+		files.increment(INCOMPLIANT);
+		files.add(INCOMPLIANCES, incompliances.size());
+		for (Incompliance incompliance : incompliances)
+			ruleFailures.increment(incompliance.getRule());
+	}
+
+	/**
+	 * Adds what the header of a file declares, whether it is valid or not
+	 * @param header the header read from the file
+	 */
+	public void addHeader(EDFFileHeader header) {
+		EIAHeader eia = header.getEiaHeader();
+		if (eia == null)
+			return;
+		files.increment(HEADERS);
+		float duration = eia.getDurationOfDataRecord();
+		durations.increment(durationBucket(duration));
+		String patient = eia.getValueAt(0, EIA.index_patient_id);
+		if (patient != null && !patient.trim().isEmpty())
+			patients.offer(patient.trim());
+
+		ESAHeader esa = header.getEsaHeader();
+		if (esa == null)
+			return;
+		int nchannel = esa.getNumberOfChannels();
+		files.add(CHANNELS, nchannel);
+		for (int i = 0; i < nchannel; i++) {
+			String label = esa.getValueAt(i, COL_LABEL);
+			label = label == null ? "" : label.trim();
+			String key = LabelIndex.normalize(label);
+			labels.offer(key);
+			int row = labelRow(key, label);
+			labelCounters.increment(row * LABEL_WIDTH + LABEL_CHANNELS);
+			long samples = esa.getIntegerAt(i, COL_NUMBER_OF_SAMPLES);
+			if (samples == FieldLexer.NOT_AN_INTEGER || samples <= 0 || !(duration > 0))
+				continue;
+			long rate = Math.round(samples * 1000.0 / duration);
+			labelCounters.increment(row * LABEL_WIDTH + LABEL_RATED);
+			labelCounters.add(row * LABEL_WIDTH + LABEL_RATE_SUM, rate);
+			lower(minRates, row, rate);
+			raise(maxRates, row, rate);
+		}
+	}
+
+	private static int durationBucket(float duration) {
+		if (!(duration > 0))
+			return 0;
+		int bucket = 0;
+		while (bucket < DURATION_BOUNDS.length && duration > DURATION_BOUNDS[bucket])
+			bucket++;
+		return bucket + 1;
+	}
+
+	/**
+	 * Returns the row of a label, giving it one while rows are left. A row
+	 * taken by two threads adding the same new label at once is left unused
+	 */
+	private int labelRow(String key, String label) {
+		Integer row = labelRows.get(key);
+		if (row != null)
+			return row;
+		if (nextLabelRow.get() >= maxLabels)
+			return maxLabels;
+		int free = nextLabelRow.getAndIncrement();
+		if (free >= maxLabels)
+			return maxLabels;
+		labelNames.set(free, label);
+		row = labelRows.putIfAbsent(key, free);
+		return row == null ? free : row;
+	}
+
+	// the extremes only change the first few times a label is seen, so they are mostly read
+	private static void lower(AtomicLongArray values, int i, long value) {
+		long current = values.get(i);
+		while (value < current && !values.compareAndSet(i, current, value))
+			current = values.get(i);
+	}
+
+	private static void raise(AtomicLongArray values, int i, long value) {
+		long current = values.get(i);
+		while (value > current && !values.compareAndSet(i, current, value))
+			current = values.get(i);
+	}
+
+	/**
+	 * Returns the number of files added
+	 * @return the number of verdicts
+	 */
+	public long getFiles() {
+		return files.get(FILES);
+	}
+
+	/**
+	 * Returns the number of headers added
+	 * @return the number of headers read
+	 */
+	public long getHeaders() {
+		return files.get(HEADERS);
+	}
+
+	/**
+	 * Estimates the number of distinct channel labels, ignoring case
+	 * @return the estimate
+	 */
+	public long getDistinctLabels() {
+		return labels.estimate();
+	}
+
+	/**
+	 * Estimates the number of distinct patient IDs
+	 * @return the estimate
+	 */
+	public long getDistinctPatients() {
+		return patients.estimate();
+	}
+
+	/**
+	 * Formats the summary as the lines of a report, in the register of the run summary
+	 * @return the lines
+	 */
+	public List<String> format() {
+		List<String> lines = new ArrayList<String>();
+		lines.add("  >>> Archive summary");
+		lines.add("  >>> Files: " + files.get(FILES) + ", valid: " + files.get(VALID) + ", with incompliances: " +
+				files.get(INCOMPLIANT) + ", not validated: " + files.get(ERROR));
+		lines.add("  >>> Headers read: " + files.get(HEADERS) + ", channels: " + files.get(CHANNELS));
+
+		lines.add("  >>> Incompliances per rule: " + files.get(INCOMPLIANCES));
+		final long[] failures = new long[IncomplianceRules.size()];
+		List<Integer> rules = new ArrayList<Integer>();
+		for (int i = 0; i < failures.length; i++) {
+			failures[i] = ruleFailures.get(i);
+			if (failures[i] > 0)
+				rules.add(i);
+		}
+		Collections.sort(rules, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return failures[a] != failures[b] ? Long.compare(failures[b], failures[a])
+						: IncomplianceRules.getName(a).compareTo(IncomplianceRules.getName(b));
+			}
+		});
+		for (int rule : rules)
+			lines.add("      " + IncomplianceRules.getName(rule) + ": " + failures[rule]);
+
+		lines.add("  >>> Duration of data record:");
+		lines.add("      not a positive number: " + durations.get(0));
+		for (int i = 0; i < DURATION_BOUNDS.length; i++)
+			lines.add("      <= " + seconds(DURATION_BOUNDS[i]) + " s: " + durations.get(i + 1));
+		lines.add("      > " + seconds(DURATION_BOUNDS[DURATION_BOUNDS.length - 1]) + " s: " +
+				durations.get(DURATION_BOUNDS.length + 1));
+
+		lines.add(String.format("  >>> Distinct channel labels: about %d (+/- %.1f%%)",
+				labels.estimate(), labels.getStandardError() * 100));
+		lines.add(String.format("  >>> Distinct patient IDs: about %d (+/- %.1f%%)",
+				patients.estimate(), patients.getStandardError() * 100));
+
+		lines.add("  >>> Sampling rates per label, in Hz: channels, with a rate, min / mean / max");
+		final long[] channels = new long[maxLabels + 1];
+		List<Integer> rows = new ArrayList<Integer>();
+		for (Map.Entry<String,Integer> entry : labelRows.entrySet())
+			rows.add(entry.getValue());
+		rows.add(maxLabels);
+		for (int row : rows)
+			channels[row] = labelCounters.get(row * LABEL_WIDTH + LABEL_CHANNELS);
+		Collections.sort(rows, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return channels[a] != channels[b] ? Long.compare(channels[b], channels[a]) : a - b;
+			}
+		});
+		for (int row : rows) {
+			if (channels[row] == 0)
+				continue;
+			String name = row == maxLabels ? "(other labels)" : labelNames.get(row).isEmpty() ? "(no label)" : labelNames.get(row);
+			long rated = labelCounters.get(row * LABEL_WIDTH + LABEL_RATED);
+			StringBuilder line = new StringBuilder("      ").append(name).append(": ")
+					.append(channels[row]).append(", ").append(rated);
+			if (rated > 0)
+				line.append(", ").append(hertz(minRates.get(row)))
+						.append(" / ").append(hertz(Math.round((double) labelCounters.get(row * LABEL_WIDTH + LABEL_RATE_SUM) / rated)))
+						.append(" / ").append(hertz(maxRates.get(row)));
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	private static String seconds(double seconds) {
+		return seconds == Math.rint(seconds) ? Long.toString((long) seconds) : Double.toString(seconds);
+	}
+
+	private static String hertz(long millihertz) {
+		return millihertz % 1000 == 0 ? Long.toString(millihertz / 1000) : String.format("%.3f", millihertz / 1000.0);
+	}
+}
@@ -0,0 +1,238 @@
+package tools.validator.report;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Writes report messages to a log file from a background thread.
+ * The file is opened once per run and written through a buffer; messages are handed
+ * over through a bounded queue, so callers only wait when the writer falls behind by
+ * more than the queue capacity. Messages from several threads are written whole,
+ * in the order they were queued.
+ * A failure to write is kept and thrown by the next flush or close.
+ * Nothing is queued behind the close request: a write or flush either gets in before it
+ * or fails with IllegalStateException
+ */
+public class AsyncReportWriter {
+
+	/** default number of messages that can wait for the writer thread */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final BlockingQueue<Object> queue;
+	private final Writer out;
+	private final Thread writerThread;
+	private volatile IOException failure = null;
+	// write and flush queue under the read lock, close under the write lock,
+	// so the closed check and the enqueue are one step
+	private final ReadWriteLock closing = new ReentrantReadWriteLock();
+	private volatile boolean closed = false;
+
+	/**
+	 * Opens a log file for appending, creating its directory if needed
+	 * @param log log file path
+	 * @throws IOException if the file cannot be opened
+	 */
+	public AsyncReportWriter(String log) throws IOException {
+		this(log, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens a log file for appending, creating its directory if needed
+	 * @param log log file path
+	 * @param capacity the number of messages that can wait for the writer thread
+	 * @throws IOException if the file cannot be opened
+	 */
+	public AsyncReportWriter(String log, int capacity) throws IOException {
+		File file = new File(log);
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true)), BUFFER_SIZE);
+		queue = new ArrayBlockingQueue<Object>(capacity);
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "report-writer " + file.getName());
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Queues a message to be written as it is
+	 * @param message the message
+	 * @throws IllegalStateException if the writer is closed
+	 */
+	public void write(String message) {
+		closing.readLock().lock();
+		try {
+			if (closed)
+				throw new IllegalStateException("report writer is closed");
+			put(message);
+		} finally {
+			closing.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Queues a message followed by the line separator of the report
+	 * @param message the message
+	 */
+	public void writeLine(String message) {
+		write(message + "\r\n");
+	}
+
+	/**
+	 * Waits until every message queued before this call is written to the file
+	 * @throws IllegalStateException if the writer is closed
+	 * @throws IOException if a message could not be written
+	 */
+	public void flush() throws IOException {
+		Marker marker = new Marker(false);
+		closing.readLock().lock();
+		try {
+			if (closed)
+				throw new IllegalStateException("report writer is closed");
+			put(marker);
+		} finally {
+			closing.readLock().unlock();
+		}
+		marker.await(); // queued before the close request, so the writer always counts it down
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Writes every queued message, closes the file and stops the writer thread.
+	 * Closing twice has no effect. An interrupt does not cut the close short, 
+	 * so the file is closed even by a thread that is being shut down; the interrupt 
+	 * status is kept
+	 * @throws IOException if a message could not be written or the file could not be closed
+	 */
+	public void close() throws IOException {
+		Marker marker = new Marker(true);
+		closing.writeLock().lock();
+		try {
+			if (closed)
+				return;
+			closed = true;
+			boolean interrupted = false;
+			while (true) {
+				try {
+					queue.put(marker);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		} finally {
+			closing.writeLock().unlock();
+		}
+		marker.awaitUninterruptibly();
+		if (failure != null)
+			throw failure;
+	}
+
+	private void put(Object element) {
+		try {
+			queue.put(element);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while queuing a report message", e);
+		}
+	}
+
+	/**
+	 * The loop of the writer thread
+	 */
+	private void drain() {
+//		Algorithm:
+//		1. take whatever is queued in one go, waiting only when the queue is empty;
+//		2. write the messages, flushing the file at each marker;
+//		3. after a write failure keep draining, so callers never wait on a dead writer;
+		ArrayList<Object> batch = new ArrayList<Object>();
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				continue; // only close stops the writer
+			}
+			queue.drainTo(batch); // end of 1.
+
+			for (Object element : batch) {
+				if (element instanceof Marker) {
+					Marker marker = (Marker) element;
+					try {
+						if (marker.close)
+							out.close();
+						else if (failure == null)
+							out.flush();
+					} catch (IOException e) {
+						if (failure == null)
+							failure = e;
+					}
+					marker.done.countDown(); // end of 2.
+					if (marker.close)
+						return;
+				} else if (failure == null) {
+					try {
+						out.write((String) element);
+					} catch (IOException e) {
+						failure = e; // end of 3.
+					}
+				}
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * A flush or close request travelling through the queue behind the messages it covers
+	 */
+	private static class Marker {
+		final boolean close;
+		final CountDownLatch done = new CountDownLatch(1);
+
+		Marker(boolean close) {
+			this.close = close;
+		}
+
+		void await() {
+			try {
+				done.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for the report writer", e);
+			}
+		}
+
+		void awaitUninterruptibly() {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package tools.validator.report;
+
+import java.util.List;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * Writes one RFC 4180 row per Incompliance, after a header row. The rule is the stable
+ * name of the rule broken, e.g. data.sample_range, and the description the text of the report.
+ * A file that could not be validated gets a row with its error as description and "error" as severity.
+ * Channel and attribute are numbered from 1, as in the text report
+ */
+public class CsvReportFormatter implements ReportFormatter {
+
+	private static final String EOL = "\r\n";
+
+	@Override
+	public String header() {
+		return "file,type,rule,description,channel,attribute,severity" + EOL;
+	}
+
+	@Override
+	public String formatFile(String edfFile, List<Incompliance> incompliances) {
+		StringBuilder sb = new StringBuilder(128 * incompliances.size());
+		for (Incompliance incompliance : incompliances) {
+			appendField(sb, edfFile).append(',');
+			appendField(sb, incompliance.getIncomplianceType()).append(',');
+			appendField(sb, incompliance.getRuleName()).append(',');
+			appendField(sb, incompliance.getDescription()).append(',');
+			sb.append(incompliance.getRowIndex() + 1).append(',');
+			sb.append(incompliance.getColumnIndex() + 1).append(',');
+			appendField(sb, incompliance.getSeverity()).append(EOL);
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public String formatError(String edfFile, String error) {
+		StringBuilder sb = new StringBuilder(64 + edfFile.length());
+		appendField(sb, edfFile).append(",,,");
+		appendField(sb, error).append(",,,error").append(EOL);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a field, quoted only if it holds a separator, a quote or a line break
+	 * @param sb the output
+	 * @param value the field, written empty if null
+	 * @return sb
+	 */
+	static StringBuilder appendField(StringBuilder sb, String value) {
+		if (value == null)
+			return sb;
+		boolean quote = false;
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+		}
+		if (!quote)
+			return sb.append(value);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"')
+				sb.append('"');
+			sb.append(c);
+		}
+		return sb.append('"');
+	}
+}
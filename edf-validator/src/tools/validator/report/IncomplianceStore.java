@@ -0,0 +1,350 @@
+package tools.validator.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceSink;
+
+/**
+ * Collects the Incompliances of a run in bounded memory, to be read back grouped by file.
+ * At most maxInMemory Incompliances are held; when the buffer is full, it is sorted by file
+ * and spilled as a run to a temporary file, and a Cursor merges the runs and what is left
+ * in the buffer. The files come in the order they were first added, and the Incompliances
+ * of a file in the order they were added. Beyond the buffer, only the names of the files
+ * and a read buffer per spilled run are kept, however many Incompliances are added.
+ * Validation adds to it as a sink while the Incompliances are found, so they are never all in a list.
+ * Not thread-safe, like the lists it replaces; nothing may be added while a Cursor is open
+ */
+public class IncomplianceStore implements IncomplianceSink {
+
+	/** default number of Incompliances held in memory */
+	public static final int DEFAULT_MAX_IN_MEMORY = 1 << 16;
+
+	private static final int MERGE_BUFFER = 1 << 20; // bytes of read buffers shared by the runs of a merge
+	private static final int MIN_RUN_BUFFER = 512;
+	private static final int INITIAL_CAPACITY = 256;
+
+	private final int maxInMemory;
+	private final File directory;
+	private final HashMap<String,Integer> fileIndexes = new HashMap<String,Integer>();
+	private final ArrayList<String> fileNames = new ArrayList<String>();
+	private Incompliance[] buffer; // grows up to maxInMemory
+	private int[] bufferFiles; // the index of the file of each buffered Incompliance
+	private int buffered = 0;
+	private long size = 0;
+	private File spillFile = null;
+	private FileOutputStream spillOut = null;
+	private DataOutputStream spill = null;
+	private final ArrayList<long[]> runs = new ArrayList<long[]>(); // {start, end} of each spilled run
+
+	/**
+	 * Constructs a store holding DEFAULT_MAX_IN_MEMORY Incompliances in memory,
+	 * spilling to the default temporary directory
+	 */
+	public IncomplianceStore() {
+		this(DEFAULT_MAX_IN_MEMORY, null);
+	}
+
+	/**
+	 * Constructs a store
+	 * @param maxInMemory the number of Incompliances held in memory before they are spilled
+	 * @param directory the directory of the spill file, null for the default temporary directory
+	 */
+	public IncomplianceStore(int maxInMemory, File directory) {
+		if (maxInMemory < 1)
+			throw new IllegalArgumentException("maxInMemory must be at least 1");
+		this.maxInMemory = maxInMemory;
+		this.directory = directory;
+		this.buffer = new Incompliance[Math.min(maxInMemory, INITIAL_CAPACITY)];
+		this.bufferFiles = new int[buffer.length];
+	}
+
+	/**
+	 * Adds an Incompliance, spilling the buffer if it is full
+	 * @param incompliance the Incompliance
+	 * @throws IOException if the buffer cannot be spilled
+	 */
+	@Override
+	public void add(Incompliance incompliance) throws IOException {
+		if (buffered == maxInMemory) {
+			spillBuffer();
+		} else if (buffered == buffer.length) {
+			int capacity = (int) Math.min(maxInMemory, 2L * buffer.length);
+			buffer = Arrays.copyOf(buffer, capacity);
+			bufferFiles = Arrays.copyOf(bufferFiles, capacity);
+		}
+		buffer[buffered] = incompliance;
+		bufferFiles[buffered] = indexOf(incompliance.getFileName());
+		buffered++;
+		size++;
+	}
+
+	/**
+	 * Adds Incompliances
+	 * @param incompliances the Incompliances
+	 * @throws IOException if the buffer cannot be spilled
+	 */
+	public void addAll(List<Incompliance> incompliances) throws IOException {
+		for (Incompliance incompliance : incompliances)
+			add(incompliance);
+	}
+
+	private int indexOf(String fileName) {
+		Integer index = fileIndexes.get(fileName);
+		if (index == null) {
+			index = fileNames.size();
+			fileIndexes.put(fileName, index);
+			fileNames.add(fileName);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the number of Incompliances added
+	 * @return the number of Incompliances
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of files the Incompliances were found in
+	 * @return the number of files
+	 */
+	public int getFileCount() {
+		return fileNames.size();
+	}
+
+	/**
+	 * Returns the number of runs spilled to disk so far
+	 * @return the number of runs
+	 */
+	public int getSpilledRuns() {
+		return runs.size();
+	}
+
+	/**
+	 * Sorts the buffer by file, keeping the order of the Incompliances of each file:
+	 * the position in the buffer breaks the ties of the file index
+	 */
+	private void sortBuffer() {
+		long[] keys = new long[buffered];
+		for (int i = 0; i < buffered; i++)
+			keys[i] = ((long) bufferFiles[i] << 32) | i;
+		Arrays.sort(keys);
+		Incompliance[] sorted = new Incompliance[buffered];
+		for (int i = 0; i < buffered; i++) {
+			int from = (int) keys[i];
+			sorted[i] = buffer[from];
+			bufferFiles[i] = (int) (keys[i] >>> 32);
+		}
+		System.arraycopy(sorted, 0, buffer, 0, buffered);
+	}
+
+	private void spillBuffer() throws IOException {
+		sortBuffer();
+		if (spill == null) {
+			spillFile = File.createTempFile("edf-incompliances", ".run", directory);
+			spillOut = new FileOutputStream(spillFile);
+			spill = new DataOutputStream(new BufferedOutputStream(spillOut, 1 << 16));
+		}
+		long start = spillOut.getChannel().position();
+		for (int i = 0; i < buffered; i++) {
+			spill.writeInt(bufferFiles[i]);
+			buffer[i].writeTo(spill);
+			buffer[i] = null;
+		}
+		spill.flush();
+		runs.add(new long[] { start, spillOut.getChannel().position() });
+		buffered = 0;
+	}
+
+	/**
+	 * Opens a cursor over the Incompliances added so far, grouped by file
+	 * @return the cursor, to be closed
+	 * @throws IOException if the spilled runs cannot be read
+	 */
+	public Cursor cursor() throws IOException {
+		sortBuffer();
+		if (spill != null)
+			spill.flush();
+		return new Cursor();
+	}
+
+	/**
+	 * Deletes the spill file. The store is empty afterwards
+	 * @throws IOException if the spill file cannot be closed
+	 */
+	public void close() throws IOException {
+		Arrays.fill(buffer, 0, buffered, null);
+		buffered = 0;
+		size = 0;
+		fileIndexes.clear();
+		fileNames.clear();
+		runs.clear();
+		if (spill != null) {
+			try {
+				spill.close();
+			} finally {
+				spill = null;
+				spillOut = null;
+				if (!spillFile.delete())
+					spillFile.deleteOnExit();
+				spillFile = null;
+			}
+		}
+	}
+
+	/**
+	 * Reads the Incompliances of a store grouped by file: an external merge of the
+	 * spilled runs and of the buffer, each sorted by file
+	 */
+	public class Cursor {
+		private final RandomAccessFile file;
+		private final PriorityQueue<Run> heads = new PriorityQueue<Run>();
+		private Incompliance current = null;
+
+		private Cursor() throws IOException {
+			file = runs.isEmpty() ? null : new RandomAccessFile(spillFile, "r");
+			int runBuffer = Math.max(MIN_RUN_BUFFER, MERGE_BUFFER / Math.max(1, runs.size()));
+			try {
+				for (int r = 0; r < runs.size(); r++)
+					advance(new Run(r, runs.get(r)[0], runs.get(r)[1], runBuffer));
+				advance(new Run(runs.size()));
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+		}
+
+		private void advance(Run run) throws IOException {
+			if (run.next())
+				heads.add(run);
+		}
+
+		/**
+		 * Moves to the next Incompliance
+		 * @return false when there is none left
+		 * @throws IOException if a spilled run cannot be read
+		 */
+		public boolean next() throws IOException {
+			Run run = heads.poll();
+			if (run == null) {
+				current = null;
+				return false;
+			}
+			current = run.head;
+			advance(run);
+			return true;
+		}
+
+		/**
+		 * Returns the Incompliance moved to by next
+		 * @return the Incompliance
+		 */
+		public Incompliance getIncompliance() {
+			return current;
+		}
+
+		/**
+		 * Closes the spill file opened for the merge
+		 * @throws IOException if it cannot be closed
+		 */
+		public void close() throws IOException {
+			heads.clear();
+			if (file != null)
+				file.close();
+		}
+
+		/**
+		 * A run of Incompliances sorted by file: spilled, or the buffer
+		 */
+		private class Run implements Comparable<Run> {
+			private final int order; // the runs of a file are merged in the order they were spilled
+			private final DataInputStream in; // null for the buffer
+			private int position = 0; // in the buffer
+			private Incompliance head;
+			private int headFile;
+
+			Run(int order, long start, long end, int bufferSize) {
+				this.order = order;
+				this.in = new DataInputStream(new BufferedInputStream(new RunStream(start, end), bufferSize));
+			}
+
+			Run(int order) {
+				this.order = order;
+				this.in = null;
+			}
+
+			boolean next() throws IOException {
+				if (in == null) {
+					if (position == buffered)
+						return false;
+					headFile = bufferFiles[position];
+					head = buffer[position++];
+					return true;
+				}
+				int fileIndex;
+				try {
+					fileIndex = in.readInt();
+				} catch (EOFException e) {
+					return false;
+				}
+				headFile = fileIndex;
+				head = Incompliance.readFrom(in, fileNames.get(fileIndex));
+				return true;
+			}
+
+			@Override
+			public int compareTo(Run other) {
+				if (headFile != other.headFile)
+					return headFile < other.headFile ? -1 : 1;
+				return order < other.order ? -1 : order > other.order ? 1 : 0;
+			}
+		}
+
+		/**
+		 * The bytes of one run, read through the spill file shared by the runs
+		 */
+		private class RunStream extends InputStream {
+			private long position;
+			private final long end;
+
+			RunStream(long start, long end) {
+				this.position = start;
+				this.end = end;
+			}
+
+			@Override
+			public int read() throws IOException {
+				byte[] one = new byte[1];
+				return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (position >= end)
+					return -1;
+				file.seek(position);
+				int n = file.read(b, off, (int) Math.min(len, end - position));
+				if (n > 0)
+					position += n;
+				return n;
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package tools.validator.report;
+
+import java.util.List;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * Writes one JSON object per line: an Incompliance of a file,
+ * or the error of a file that could not be validated. The rule is the stable name of the
+ * rule broken, e.g. esa.label.unique_label, as given by --list-rules and the metrics; the
+ * description is the text of the report. Channel and attribute are numbered from 1, as in the text report
+ */
+public class NdjsonReportFormatter implements ReportFormatter {
+
+	@Override
+	public String header() {
+		return "";
+	}
+
+	@Override
+	public String formatFile(String edfFile, List<Incompliance> incompliances) {
+		StringBuilder sb = new StringBuilder(160 * incompliances.size());
+		for (Incompliance incompliance : incompliances) {
+			sb.append("{\"file\":");
+			appendString(sb, edfFile);
+			sb.append(',');
+			appendFields(sb, incompliance);
+			sb.append("}\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the members describing an Incompliance, without the enclosing braces
+	 * @param sb the output
+	 * @param incompliance the Incompliance
+	 */
+	public static void appendFields(StringBuilder sb, Incompliance incompliance) {
+		sb.append("\"type\":");
+		appendString(sb, incompliance.getIncomplianceType());
+		sb.append(",\"rule\":");
+		appendString(sb, incompliance.getRuleName());
+		sb.append(",\"description\":");
+		appendString(sb, incompliance.getDescription());
+		sb.append(",\"channel\":").append(incompliance.getRowIndex() + 1);
+		sb.append(",\"attribute\":").append(incompliance.getColumnIndex() + 1);
+		sb.append(",\"severity\":");
+		appendString(sb, incompliance.getSeverity());
+	}
+
+	@Override
+	public String formatError(String edfFile, String error) {
+		StringBuilder sb = new StringBuilder(64 + edfFile.length());
+		sb.append("{\"file\":");
+		appendString(sb, edfFile);
+		sb.append(",\"error\":");
+		appendString(sb, error);
+		sb.append(",\"severity\":\"error\"}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a JSON string literal
+	 * @param sb the output
+	 * @param value the string, written as null if null
+	 */
+	public static void appendString(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': sb.append("\\\""); break;
+			case '\\': sb.append("\\\\"); break;
+			case '\n': sb.append("\\n"); break;
+			case '\r': sb.append("\\r"); break;
+			case '\t': sb.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					sb.append("\\u00");
+					sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+				} else {
+					sb.append(c);
+				}
+			}
+		}
+		sb.append('"');
+	}
+}
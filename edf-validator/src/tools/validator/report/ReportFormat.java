@@ -0,0 +1,37 @@
+package tools.validator.report;
+
+/**
+ * The formats a validation report can be written in
+ */
+public enum ReportFormat {
+	/** the sections of the text report, grouped by file */
+	TEXT,
+	/** one JSON object per Incompliance and line */
+	NDJSON,
+	/** one row per Incompliance, after a header row */
+	CSV;
+
+	/**
+	 * Creates a formatter writing this format
+	 * @return a new formatter
+	 */
+	public ReportFormatter newFormatter() {
+		switch (this) {
+		case NDJSON:
+			return new NdjsonReportFormatter();
+		case CSV:
+			return new CsvReportFormatter();
+		default:
+			return new TextReportFormatter();
+		}
+	}
+
+	/**
+	 * Tests whether the format is meant for other programs, in which case
+	 * nothing else than the records may be written to the report
+	 * @return true for NDJSON and CSV
+	 */
+	public boolean isMachineReadable() {
+		return this != TEXT;
+	}
+}
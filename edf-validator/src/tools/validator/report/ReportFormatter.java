@@ -0,0 +1,34 @@
+package tools.validator.report;
+
+import java.util.List;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * Turns the outcome of each validated file into report text, one file at a time,
+ * so a report can be written while the run goes on
+ */
+public interface ReportFormatter {
+
+	/**
+	 * Returns the text written once before the first file
+	 * @return the header of the report, empty if the format has none
+	 */
+	String header();
+
+	/**
+	 * Formats the Incompliances of a validated file
+	 * @param edfFile the EDF file path
+	 * @param incompliances the Incompliances found in the file
+	 * @return the report text of the file, empty if there is nothing to report
+	 */
+	String formatFile(String edfFile, List<Incompliance> incompliances);
+
+	/**
+	 * Formats a file that could not be validated
+	 * @param edfFile the EDF file path
+	 * @param error the reason why the file could not be validated
+	 * @return the report text of the file
+	 */
+	String formatError(String edfFile, String error);
+}
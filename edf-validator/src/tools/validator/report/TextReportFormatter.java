@@ -0,0 +1,34 @@
+package tools.validator.report;
+
+import java.util.List;
+
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.ValidatorUtility;
+
+/**
+ * Writes the sections of the text report, the format of generateInvalidReport
+ */
+public class TextReportFormatter implements ReportFormatter {
+
+	private static final String separator =
+			"  ---------------------------------------------------------------------------------------------";
+
+	@Override
+	public String header() {
+		return "";
+	}
+
+	@Override
+	public String formatFile(String edfFile, List<Incompliance> incompliances) {
+		if (incompliances.isEmpty())
+			return "";
+		return ValidatorUtility.generateFileReport(edfFile, incompliances) + "\r\n";
+	}
+
+	@Override
+	public String formatError(String edfFile, String error) {
+		return separator + "\r\n" +
+				"  EDF file: " + edfFile + "\r\n" +
+				"  Error: " + error + "\r\n" + "\r\n";
+	}
+}
@@ -0,0 +1,184 @@
+package tools.validator.rules;
+
+import tools.validator.header.LabelIndex;
+import tools.validator.utils.FieldLexer;
+
+/**
+ * The predicates a HeaderRule can apply to a field. Each one requires its fields to reach
+ * a Level first, so that a field which is not even ascii is not also reported as a bad number:
+ * the checks of a field short-circuit the way the nested checks of the EDF specification do
+ */
+public enum Check {
+
+    /** the field is not empty */
+    NOT_EMPTY(Level.ANY, FieldValues.PRESENT),
+    /** the field holds 7-bit ascii characters only */
+    ASCII(Level.PRESENT, FieldValues.ASCII),
+    /** the field is an integer */
+    INTEGER(Level.ASCII, FieldValues.INTEGER),
+    /** the field is a decimal number */
+    NUMBER(Level.ASCII, FieldValues.NUMBER),
+    /** the integer is 0 */
+    ZERO(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.integer(column) == 0;
+        }
+    },
+    /** the integer is greater than 0 */
+    POSITIVE(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.integer(column) > 0;
+        }
+    },
+    /** the integer is greater than 0, or -1 for unknown */
+    POSITIVE_OR_UNKNOWN(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            long value = fields.integer(column);
+            return value > 0 || value == -1;
+        }
+    },
+    /** the number is not negative */
+    NON_NEGATIVE(Level.NUMBER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return !(fields.number(column) < 0);
+        }
+    },
+    /** the integer fits a 2-byte sample, [-32768, 32767] */
+    SAMPLE_RANGE(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            long value = fields.integer(column);
+            return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+        }
+    },
+    /** the date is made of 3 two-digit numbers separated by periods */
+    DATE_FORMAT(Level.ASCII) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.date(column) != FieldLexer.FIELD_BAD_FORMAT;
+        }
+    },
+    /** the date is dd:00-31, mm:00-12, yy:00-99 */
+    DATE_RANGE(Level.ASCII) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.date(column) != FieldLexer.FIELD_OUT_OF_RANGE;
+        }
+    },
+    /** the time is made of 3 two-digit numbers separated by periods */
+    TIME_FORMAT(Level.ASCII) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.time(column) != FieldLexer.FIELD_BAD_FORMAT;
+        }
+    },
+    /** the time is hh:00-23, mm:00-59, ss:00-59 */
+    TIME_RANGE(Level.ASCII) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.time(column) != FieldLexer.FIELD_OUT_OF_RANGE;
+        }
+    },
+    /** no later row has the same label; the row of a label shared with earlier rows only passes. 
+     * Its failure is described with the rows sharing the label */
+    UNIQUE_LABEL(Level.PRESENT) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.getLabelIndex().nextWithSameLabel(fields.getRow()) == -1;
+        }
+
+        long[] arguments(FieldValues fields) {
+            LabelIndex labels = fields.getLabelIndex();
+            int row = fields.getRow();
+            int count = 1;
+            for (int j = labels.nextWithSameLabel(row); j != -1; j = labels.nextWithSameLabel(j))
+                count++;
+            long[] rows = new long[count];
+            rows[0] = row + 1;
+            for (int j = labels.nextWithSameLabel(row), k = 1; j != -1; j = labels.nextWithSameLabel(j))
+                rows[k++] = j + 1;
+            return rows;
+        }
+    },
+    /** the number differs from the number of the other column */
+    NUMBERS_DIFFER(Level.NUMBER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.number(other) != fields.number(column);
+        }
+    },
+    /** the number is not below the number of the other column */
+    NUMBERS_ORDERED(Level.NUMBER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return !(fields.number(other) > fields.number(column));
+        }
+    },
+    /** the integer differs from the integer of the other column */
+    INTEGERS_DIFFER(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return fields.integer(other) != fields.integer(column);
+        }
+    },
+    /** the integer is not below the integer of the other column */
+    INTEGERS_ORDERED(Level.INTEGER) {
+        boolean test(FieldValues fields, int column, int other) {
+            return !(fields.integer(other) > fields.integer(column));
+        }
+    };
+
+    /**
+     * How far a field gets through the lexical checks, each level implying the ones before.
+     * A check is only evaluated when its fields reach the level it requires
+     */
+    public enum Level {
+        /** any value, even a missing one */
+        ANY(0),
+        /** a non-empty value */
+        PRESENT(FieldValues.PRESENT),
+        /** a non-empty value of 7-bit ascii characters */
+        ASCII(FieldValues.PRESENT | FieldValues.ASCII),
+        /** an ascii integer */
+        INTEGER(FieldValues.PRESENT | FieldValues.ASCII | FieldValues.INTEGER),
+        /** an ascii decimal number */
+        NUMBER(FieldValues.PRESENT | FieldValues.ASCII | FieldValues.NUMBER);
+
+        final int bits; // the lexical properties making up the level
+
+        private Level(int bits) {
+            this.bits = bits;
+        }
+    }
+
+    private final Level requires;
+    final int property; // the lexical property the check tests, 0 for a check of the value
+
+    private Check(Level requires) {
+        this(requires, 0);
+    }
+
+    private Check(Level requires, int property) {
+        this.requires = requires;
+        this.property = property;
+    }
+
+    /**
+     * @return the level the fields of the check must reach before it is evaluated
+     */
+    public Level getRequiredLevel() {
+        return requires;
+    }
+
+    /**
+     * Applies the check to the current row. The lexical checks are answered
+     * from the properties the field was lexed with, the others override this
+     * @param fields the fields of the row, known to reach the required level
+     * @param column the column checked
+     * @param other the column compared with, -1 for a check of a single field
+     * @return true if the field passes
+     */
+    boolean test(FieldValues fields, int column, int other) {
+        return (fields.lex(column) & property) != 0;
+    }
+
+    /**
+     * Records what a failure of the check is described with, besides the description of the rule
+     * @param fields the fields of the row
+     * @return the numbers following the description, null if none
+     */
+    long[] arguments(FieldValues fields) {
+        return null;
+    }
+}
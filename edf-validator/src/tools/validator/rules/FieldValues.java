@@ -0,0 +1,181 @@
+package tools.validator.rules;
+
+import tools.validator.header.AttributeSource;
+import tools.validator.header.ESAHeader;
+import tools.validator.header.LabelIndex;
+import tools.validator.utils.FieldLexer;
+
+/**
+ * The fields of the header row being evaluated, each fetched and lexed once whatever
+ * the number of rules reading it: a number is parsed once and shared by the format,
+ * range and min/max rules. A field is lexed for the properties its rules ask for only.
+ * On an ESAHeader, numbers come from its typed columns, which the data scan reuses.
+ * Reused from header to header by the thread evaluating them
+ */
+class FieldValues {
+
+    // the lexical properties of a field, as bits of a mask
+    static final int PRESENT = 1;
+    static final int ASCII = 2;
+    static final int INTEGER = 4;
+    static final int NUMBER = 8;
+
+    private AttributeSource source;
+    private ESAHeader typed;
+    private final int[] wanted;
+    private final String[] values;
+    private final int[] lexed;
+    private final int[] lexedRow; // the stamp of the row each field was lexed for, so moving to a row clears nothing
+    private final long[] integers;
+    private final float[] numbers;
+    private final int[] triples;
+    private final int[] triplesRow;
+    private int row = -1;
+    private int stamp = -1; // unique to a row of a header
+    private LabelIndex labels = null;
+
+    /**
+     * Constructs the field cache of the headers of a HeaderEvaluator
+     * @param wanted by column of the source, the lexical properties the rules ask of the field
+     */
+    FieldValues(int[] wanted) {
+        int columns = wanted.length;
+        this.wanted = wanted;
+        this.values = new String[columns];
+        this.lexed = new int[columns];
+        this.lexedRow = new int[columns];
+        this.integers = new long[columns];
+        this.numbers = new float[columns];
+        this.triples = new int[columns];
+        this.triplesRow = new int[columns];
+        for (int i = 0; i < columns; i++)
+            lexedRow[i] = triplesRow[i] = -1;
+    }
+
+    /**
+     * Starts on a header
+     * @param source the header attributes
+     */
+    void reset(AttributeSource source) {
+        this.source = source;
+        this.typed = source instanceof ESAHeader ? (ESAHeader) source : null;
+        this.labels = null;
+    }
+
+    /**
+     * Moves to a row
+     * @param row the row index
+     */
+    void moveTo(int row) {
+        this.row = row;
+        if (++stamp < 0) { // wrapped around, forget the stamps given so far
+            for (int i = 0; i < lexedRow.length; i++)
+                lexedRow[i] = triplesRow[i] = -1;
+            stamp = 0;
+        }
+    }
+
+    int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the label index of the source, built on first use
+     * @return the index of the label column
+     */
+    LabelIndex getLabelIndex() {
+        if (labels == null)
+            labels = typed != null ? typed.getLabelIndex() : new LabelIndex(source, 0);
+        return labels;
+    }
+
+    /**
+     * Lexes a field once per row, finding only the properties the rules ask for
+     * @param column the column of the field
+     * @return the mask of the properties the field has among PRESENT, ASCII, INTEGER and NUMBER
+     */
+    int lex(int column) {
+        if (lexedRow[column] == stamp)
+            return lexed[column];
+        String value = source.getValueAt(row, column);
+        int want = wanted[column];
+        int mask = 0;
+        if (value != null && !value.isEmpty()) {
+            mask = PRESENT;
+            if ((want & ~PRESENT) != 0 && FieldLexer.isAscii(value)) {
+                mask |= ASCII;
+                if ((want & INTEGER) != 0) {
+                    long integer = typed != null ? typed.getIntegerAt(row, column) : FieldLexer.parseInt(value);
+                    integers[column] = integer;
+                    if (integer != FieldLexer.NOT_AN_INTEGER)
+                        mask |= INTEGER;
+                }
+                if ((want & NUMBER) != 0) {
+                    float number = typed != null ? typed.getFloatAt(row, column)
+                            : FieldLexer.isFloat(value) ? Float.parseFloat(value) : Float.NaN;
+                    numbers[column] = number;
+                    if (!Float.isNaN(number))
+                        mask |= NUMBER;
+                }
+            }
+        }
+        values[column] = value;
+        lexed[column] = mask;
+        lexedRow[column] = stamp;
+        return mask;
+    }
+
+    /**
+     * Returns the value of a field of the current row
+     * @param column the column of the field
+     * @return the value, null if missing
+     */
+    String value(int column) {
+        lex(column);
+        return values[column];
+    }
+
+    /**
+     * Returns a field as an integer, once lexed as one
+     * @param column the column of the field, known to have the INTEGER property
+     * @return the value
+     */
+    long integer(int column) {
+        return integers[column];
+    }
+
+    /**
+     * Returns a field as a decimal number, once lexed as one
+     * @param column the column of the field, known to have the NUMBER property
+     * @return the value
+     */
+    float number(int column) {
+        return numbers[column];
+    }
+
+    /**
+     * Returns the check of a dd.mm.yy field
+     * @param column the column of the field
+     * @return FieldLexer.FIELD_VALID, FIELD_BAD_FORMAT or FIELD_OUT_OF_RANGE
+     */
+    int date(int column) {
+        if (triplesRow[column] != stamp) {
+            triples[column] = FieldLexer.checkDate(value(column));
+            triplesRow[column] = stamp;
+        }
+        return triples[column];
+    }
+
+    /**
+     * Returns the check of a hh.mm.ss field
+     * @param column the column of the field
+     * @return FieldLexer.FIELD_VALID, FIELD_BAD_FORMAT or FIELD_OUT_OF_RANGE
+     */
+    int time(int column) {
+        if (triplesRow[column] != stamp) {
+            triples[column] = FieldLexer.checkTime(value(column));
+            triplesRow[column] = stamp;
+        }
+        return triples[column];
+    }
+}
@@ -0,0 +1,133 @@
+package tools.validator.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tools.validator.header.AttributeSource;
+import tools.validator.utils.Incompliance;
+
+/**
+ * The enabled rules of a header compiled into one pass over each row: the rules are
+ * grouped by field in the order of the header, and the fields are lexed once per row
+ * and shared by every rule reading them. A field with every lexical property its rules
+ * ask for passes all of its lexical rules at once, leaving only the checks of its value
+ * to evaluate; the other fields go through their rules one by one. A field without rules
+ * is not even fetched, unless traced. In fail-fast mode the pass ends at the first critical
+ * Incompliance. Immutable, and so shared by every thread validating files
+ */
+public class HeaderEvaluator {
+
+    private static final HeaderRule[] NO_RULES = new HeaderRule[0];
+
+    private final HeaderType header;
+    private final HeaderRule[][] rules; // by field of the header
+    private final HeaderRule[][] valueRules; // by field, the rules left once the lexical ones pass
+    private final int[] lexical; // by field, the lexical properties the rules of the field ask of it
+    private final int[] wanted; // by column of the source, the lexical properties the rules ask for
+    private final ThreadLocal<FieldValues> fieldValues = new ThreadLocal<FieldValues>() {
+        @Override
+        protected FieldValues initialValue() {
+            return new FieldValues(wanted);
+        }
+    };
+
+    /**
+     * Compiles rules
+     * @param header the header evaluated
+     * @param enabled the rules to evaluate, all of this header; the rules of a field are evaluated in this order
+     */
+    HeaderEvaluator(HeaderType header, List<HeaderRule> enabled) {
+        this.header = header;
+        int nfield = header.getFieldCount();
+        this.rules = new HeaderRule[nfield][];
+        this.valueRules = new HeaderRule[nfield][];
+        this.lexical = new int[nfield];
+        for (int i = 0; i < nfield; i++) {
+            int column = header.getColumn(i);
+            ArrayList<HeaderRule> ofField = new ArrayList<HeaderRule>();
+            ArrayList<HeaderRule> ofValue = new ArrayList<HeaderRule>();
+            for (HeaderRule rule : enabled) {
+                if (rule.getColumn() == column) {
+                    ofField.add(rule);
+                    lexical[i] |= rule.gate | rule.property;
+                    if (rule.property == 0)
+                        ofValue.add(rule);
+                }
+            }
+            rules[i] = toArray(ofField);
+            valueRules[i] = toArray(ofValue);
+        }
+        this.wanted = new int[header.getColumnCount()];
+        for (HeaderRule rule : enabled) {
+            wanted[rule.getColumn()] |= rule.gate | rule.property;
+            if (rule.getOtherColumn() != -1)
+                wanted[rule.getOtherColumn()] |= rule.gate;
+        }
+    }
+
+    private static HeaderRule[] toArray(ArrayList<HeaderRule> rules) {
+        return rules.isEmpty() ? NO_RULES : rules.toArray(new HeaderRule[rules.size()]);
+    }
+
+    public HeaderType getHeader() {
+        return header;
+    }
+
+    /**
+     * Evaluates the rules on a header
+     * @param source the header attributes, laid out as described by the HeaderType
+     * @param edfFile the EDF file name
+     * @param trace true to trace every field on screen
+     * @return the Incompliances, in the order of the rows, then fields, then rules
+     */
+    public ArrayList<Incompliance> evaluate(AttributeSource source, String edfFile, boolean trace) {
+        return evaluate(source, edfFile, trace, false);
+    }
+
+    /**
+     * Evaluates the rules on a header, stopping at the first critical Incompliance if asked to
+     * @param source the header attributes, laid out as described by the HeaderType
+     * @param edfFile the EDF file name
+     * @param trace true to trace every field on screen
+     * @param failFast true to stop at the first critical Incompliance, for a verdict rather than a report
+     * @return the Incompliances, in the order of the rows, then fields, then rules; 
+     * in fail-fast mode, the last one is the only critical one, if any
+     */
+    public ArrayList<Incompliance> evaluate(AttributeSource source, String edfFile, boolean trace, boolean failFast) {
+        if (trace) System.out.println(header.getTitle());
+        ArrayList<Incompliance> incompliances = new ArrayList<Incompliance>();
+        FieldValues fields = fieldValues.get();
+        fields.reset(source);
+        int nrow = header.isPerChannel() ? source.getRowCount() : 1;
+        rows:
+        for (int i = 0; i < nrow; i++) {
+            fields.moveTo(i);
+            if (trace && header.isPerChannel())
+                System.out.println(">>>>>>>>>> Processing signal " + (i + 1) + " <<<<<<<<<<<");
+            for (int k = 0; k < rules.length; k++) {
+                if (trace)
+                    System.out.print(header.getTraceLabel(k) + "[" + fields.value(header.getColumn(k)) + "] >>> ");
+                HeaderRule[] ofField = rules[k];
+                boolean pass = true;
+                if (ofField.length > 0) {
+                    int lexed = fields.lex(header.getColumn(k));
+                    if ((lexed & lexical[k]) == lexical[k])
+                        ofField = valueRules[k]; // every lexical rule passes
+                    for (HeaderRule rule : ofField) {
+                        if (rule.fails(fields, lexed)) {
+                            incompliances.add(rule.toIncompliance(fields, edfFile));
+                            pass = false;
+                            if (failFast && rule.getErrorLevel() == Incompliance.errorLevel_critical) {
+                                if (trace) System.out.println("FAIL");
+                                break rows;
+                            }
+                        }
+                    }
+                }
+                if (trace) System.out.println(pass ? "PASS" : "FAIL");
+            }
+        }
+        fields.reset(null); // do not hold on to the header
+        return incompliances;
+    }
+}
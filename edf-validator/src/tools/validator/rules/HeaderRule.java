@@ -0,0 +1,141 @@
+package tools.validator.rules;
+
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+import tools.validator.utils.IncomplianceRules;
+
+/**
+ * One declared rule of a header: the field it applies to, the Check it makes, and the
+ * Incompliance it records when the check fails. Its name is made of the header, the field
+ * and the check, e.g. esa.digital_minimum.sample_range
+ */
+public class HeaderRule {
+
+    private final HeaderType header;
+    private final String name;
+    private final int column;
+    private final int otherColumn;
+    private final Check check;
+    private final String description;
+    private final IncomplianceCode code; // TEXT for a description not declared by Incompliance
+    private final int errorLevel;
+    private final int rule; // the index the Incompliances are counted under, see IncomplianceRules
+    final int gate; // the lexical properties the fields need before the check
+    final int property; // the lexical property the check tests, 0 for a check of the value
+
+    /**
+     * Declares a rule on a single field
+     * @param header the header of the field
+     * @param field the name of the field, e.g. digital_minimum
+     * @param check the check of the field
+     * @param description the description of the Incompliance
+     * @param errorLevel Incompliance.errorLevel_critical or errorLevel_warning
+     * @throws IllegalArgumentException if the header has no such field
+     */
+    public HeaderRule(HeaderType header, String field, Check check, String description, int errorLevel) {
+        this(header, field, null, check, description, errorLevel);
+    }
+
+    /**
+     * Declares a rule comparing two fields of a row, reported on the first one
+     * @param header the header of the fields
+     * @param field the name of the field reported, e.g. digital_maximum
+     * @param otherField the name of the field it is compared with, e.g. digital_minimum
+     * @param check the check of the pair
+     * @param description the description of the Incompliance
+     * @param errorLevel Incompliance.errorLevel_critical or errorLevel_warning
+     * @throws IllegalArgumentException if the header has no such field
+     */
+    public HeaderRule(HeaderType header, String field, String otherField, Check check, String description, int errorLevel) {
+        this.header = header;
+        this.name = header.name().toLowerCase() + "." + field + "." + check.name().toLowerCase();
+        this.column = header.getColumn(header.indexOf(field));
+        this.otherColumn = otherField == null ? -1 : header.getColumn(header.indexOf(otherField));
+        this.check = check;
+        this.description = description;
+        this.code = IncomplianceCode.forMessage(description);
+        this.errorLevel = errorLevel;
+        this.rule = IncomplianceRules.declare(name, code);
+        this.gate = check.getRequiredLevel().bits;
+        this.property = check.property;
+    }
+
+    public HeaderType getHeader() {
+        return header;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the column of the field in the header source
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * @return the column compared with, -1 for a rule on a single field
+     */
+    public int getOtherColumn() {
+        return otherColumn;
+    }
+
+    public Check getCheck() {
+        return check;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getErrorLevel() {
+        return errorLevel;
+    }
+
+    /**
+     * Evaluates the rule on the current row, if its fields reach the level its check requires
+     * @param fields the fields of the row
+     * @param lexed the lexical properties of the field of the rule
+     * @return true if the rule was evaluated and failed
+     */
+    boolean fails(FieldValues fields, int lexed) {
+        if ((lexed & gate) != gate)
+            return false;
+        if (otherColumn != -1 && (fields.lex(otherColumn) & gate) != gate)
+            return false;
+        if (property != 0)
+            return (lexed & property) == 0;
+        return !check.test(fields, column, otherColumn);
+    }
+
+    /**
+     * Records a failure of the rule on the current row
+     * @param fields the fields of the row
+     * @param fileName the EDF file name
+     * @return the Incompliance
+     */
+    Incompliance toIncompliance(FieldValues fields, String fileName) {
+        int srcTypeIndex = header.getSrcTypeIndex();
+        long[] arguments = check.arguments(fields);
+        Incompliance incomp;
+        if (code == IncomplianceCode.TEXT)
+            incomp = new Incompliance(Incompliance.typeOfErrorHeader[srcTypeIndex],
+                    arguments == null ? description : code.describe(description, arguments), 
+                    fileName, fields.getRow(), column, srcTypeIndex);
+        else if (arguments == null)
+            incomp = new Incompliance(code, fileName, fields.getRow(), column, srcTypeIndex);
+        else
+            incomp = new Incompliance(code, fileName, fields.getRow(), column, srcTypeIndex, arguments);
+        incomp.setRule(rule);
+        if (errorLevel != Incompliance.errorLevel_critical)
+            incomp.setErrorLevel(errorLevel);
+        return incomp;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + Incompliance.nameOfErrorLevel[errorLevel] + "): " + description;
+    }
+}
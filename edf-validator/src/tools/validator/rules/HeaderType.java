@@ -0,0 +1,108 @@
+package tools.validator.rules;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * The layout of the two headers the rules apply to: the fields, their column in the
+ * header source and their name in the trace. The EIA source has the file name in
+ * column 0 and its fields in the first row; the ESA source has one row per channel
+ */
+public enum HeaderType {
+
+    EIA(Incompliance.index_incomp_src_eia, ">>> Parsing File Header...", 1, 26,
+            new String[] {"version", "patient_id", "recording_id", "start_date", "start_time",
+                "header_bytes", "reserved", "data_records", "record_duration", "signals"},
+            new String[] {"version", "local patient ID", "local recording ID", "start date of recording",
+                "start time of recording", "number of bytes in header", "reserved", "number of data records",
+                "duration of data records", "number of signals"}),
+
+    ESA(Incompliance.index_incomp_src_esa, ">>> Parsing Signal Header...", 0, 21,
+            new String[] {"label", "transducer_type", "physical_dimension", "physical_minimum",
+                "physical_maximum", "digital_minimum", "digital_maximum", "prefiltering", "samples", "reserved"},
+            new String[] {"label", "transducer type", "physical_dimension", "physical_minimum",
+                "physical_maximum", "digital_minimum", "digital_maximum", "prefiltering", "num signals", "reserved"});
+
+    private final int srcTypeIndex;
+    private final String title;
+    private final int firstColumn;
+    private final String[] fields;
+    private final String[] traceLabels;
+
+    private HeaderType(int srcTypeIndex, String title, int firstColumn, int traceWidth, String[] fields, String[] traceNames) {
+        this.srcTypeIndex = srcTypeIndex;
+        this.title = title;
+        this.firstColumn = firstColumn;
+        this.fields = fields;
+        this.traceLabels = new String[traceNames.length];
+        for (int i = 0; i < traceNames.length; i++)
+            traceLabels[i] = String.format("  :%" + traceWidth + "s: ", traceNames[i]);
+    }
+
+    /**
+     * @return Incompliance.index_incomp_src_eia or index_incomp_src_esa
+     */
+    public int getSrcTypeIndex() {
+        return srcTypeIndex;
+    }
+
+    /**
+     * @return the line traced before the fields of the header
+     */
+    String getTitle() {
+        return title;
+    }
+
+    /**
+     * @return the number of fields of the header
+     */
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    /**
+     * @return the number of columns of the header source
+     */
+    public int getColumnCount() {
+        return firstColumn + fields.length;
+    }
+
+    /**
+     * @param index the position of the field in the header
+     * @return the name of the field, as used in rule names
+     */
+    public String getField(int index) {
+        return fields[index];
+    }
+
+    /**
+     * @param index the position of the field in the header
+     * @return the column of the field in the header source
+     */
+    public int getColumn(int index) {
+        return firstColumn + index;
+    }
+
+    /**
+     * Finds a field by name
+     * @param field the name of the field
+     * @return the position of the field in the header
+     * @throws IllegalArgumentException if the header has no such field
+     */
+    public int indexOf(String field) {
+        for (int i = 0; i < fields.length; i++)
+            if (fields[i].equals(field))
+                return i;
+        throw new IllegalArgumentException("no field " + field + " in the " + name() + " header");
+    }
+
+    String getTraceLabel(int index) {
+        return traceLabels[index];
+    }
+
+    /**
+     * @return true if every row of the source is a header, one per channel, false if only the first one is
+     */
+    boolean isPerChannel() {
+        return this == ESA;
+    }
+}
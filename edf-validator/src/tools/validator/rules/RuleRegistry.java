@@ -0,0 +1,271 @@
+package tools.validator.rules;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import tools.validator.utils.Incompliance;
+
+/**
+ * The rules of the EIA and ESA headers, each declaring its field, check and severity.
+ * Rules can be added, inserted before others and disabled by name; the enabled ones
+ * are compiled into a HeaderEvaluator per header, recompiled after a change.
+ * The default registry holds the rules of the EDF specification and is the one
+ * ValidatorUtility evaluates
+ */
+public class RuleRegistry {
+
+    private static final int CRITICAL = Incompliance.errorLevel_critical;
+
+    private static volatile RuleRegistry defaultRegistry = standard();
+
+    private final ArrayList<HeaderRule> rules = new ArrayList<HeaderRule>();
+    private final Set<String> disabled = new HashSet<String>();
+    private volatile HeaderEvaluator[] compiled = new HeaderEvaluator[HeaderType.values().length]; // by header, read without locking
+
+    /**
+     * Constructs an empty registry
+     */
+    public RuleRegistry() {
+    }
+
+    /**
+     * Returns the registry ValidatorUtility evaluates
+     * @return the default registry
+     */
+    public static RuleRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Replaces the registry ValidatorUtility evaluates, e.g. with one with rules disabled
+     * @param registry the new default registry
+     */
+    public static void setDefault(RuleRegistry registry) {
+        defaultRegistry = registry;
+    }
+
+    /**
+     * Returns a registry of the rules of the EDF specification, the references
+     * of the specification given before each field
+     * @return a new registry
+     */
+    public static RuleRegistry standard() {
+        RuleRegistry registry = new RuleRegistry();
+        HeaderType eia = HeaderType.EIA;
+        // (A) 8 ascii : version of this data format (0)
+        registry.add(eia, "version", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "version", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "version", Check.INTEGER, Incompliance.error_eia_version);
+        registry.add(eia, "version", Check.ZERO, Incompliance.error_eia_version);
+        // (B) 80 ascii : local patient identification, can be empty
+        registry.add(eia, "patient_id", Check.ASCII, Incompliance.error_eia_ascii);
+        // (C) 80 ascii : local recording identification, can be empty
+        registry.add(eia, "recording_id", Check.ASCII, Incompliance.error_eia_ascii);
+        // (D) 8 ascii : startdate of recording (dd.mm.yy)
+        registry.add(eia, "start_date", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "start_date", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "start_date", Check.DATE_FORMAT, Incompliance.error_eia_dateformat);
+        registry.add(eia, "start_date", Check.DATE_RANGE, Incompliance.error_eia_daterange);
+        // (E) 8 ascii : starttime of recording (hh.mm.ss)
+        registry.add(eia, "start_time", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "start_time", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "start_time", Check.TIME_FORMAT, Incompliance.error_eia_timeformat);
+        registry.add(eia, "start_time", Check.TIME_RANGE, Incompliance.error_eia_timerange);
+        // (F) 8 ascii : number of bytes in header record
+        registry.add(eia, "header_bytes", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "header_bytes", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "header_bytes", Check.INTEGER, Incompliance.error_eia_num_bytes);
+        registry.add(eia, "header_bytes", Check.POSITIVE, Incompliance.error_eia_num_bytes);
+        // (G) 44 ascii : reserved, can be empty
+        registry.add(eia, "reserved", Check.ASCII, Incompliance.error_eia_ascii);
+        // (H) 8 ascii : number of data records (-1 if unknown)
+        registry.add(eia, "data_records", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "data_records", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "data_records", Check.INTEGER, Incompliance.error_eia_num_records);
+        registry.add(eia, "data_records", Check.POSITIVE_OR_UNKNOWN, Incompliance.error_eia_num_records);
+        // (I) 8 ascii : duration of a data record, in seconds
+        registry.add(eia, "record_duration", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "record_duration", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "record_duration", Check.NUMBER, Incompliance.error_eia_duration);
+        registry.add(eia, "record_duration", Check.NON_NEGATIVE, Incompliance.error_eia_duration);
+        // (J) 4 ascii : number of signals (ns) in data record
+        registry.add(eia, "signals", Check.NOT_EMPTY, Incompliance.error_eia_empty);
+        registry.add(eia, "signals", Check.ASCII, Incompliance.error_eia_ascii);
+        registry.add(eia, "signals", Check.INTEGER, Incompliance.error_eia_nsignals);
+        registry.add(eia, "signals", Check.POSITIVE, Incompliance.error_eia_nsignals);
+
+        HeaderType esa = HeaderType.ESA;
+        // (K) ns * 16 ascii : label (e.g. EEG Fpz-Cz or Body temp)
+        registry.add(esa, "label", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "label", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "label", Check.UNIQUE_LABEL, Incompliance.error_esa_label);
+        // (L) ns * 80 ascii : transducer type (e.g. AgAgCl electrode), can be empty
+        registry.add(esa, "transducer_type", Check.ASCII, Incompliance.error_esa_ascii);
+        // (M) ns * 8 ascii : physical dimension (e.g. uV or degreeC), can be empty
+        registry.add(esa, "physical_dimension", Check.ASCII, Incompliance.error_esa_ascii);
+        // (N) ns * 8 ascii : physical minimum (e.g. -500 or 34)
+        registry.add(esa, "physical_minimum", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "physical_minimum", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "physical_minimum", Check.NUMBER, Incompliance.error_esa_phymin);
+        // (O) ns * 8 ascii : physical maximum (e.g. 500 or 40)
+        registry.add(esa, "physical_maximum", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "physical_maximum", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "physical_maximum", Check.NUMBER, Incompliance.error_esa_phymax);
+        registry.add(new HeaderRule(esa, "physical_maximum", "physical_minimum", Check.NUMBERS_DIFFER,
+                Incompliance.error_esa_phy_equal, CRITICAL));
+        registry.add(new HeaderRule(esa, "physical_maximum", "physical_minimum", Check.NUMBERS_ORDERED,
+                Incompliance.error_esa_phymaxmin, CRITICAL));
+        // (P) ns * 8 ascii : digital minimum (e.g. -2048)
+        registry.add(esa, "digital_minimum", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "digital_minimum", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "digital_minimum", Check.INTEGER, Incompliance.error_esa_digmin);
+        registry.add(esa, "digital_minimum", Check.SAMPLE_RANGE, Incompliance.error_esa_digrange);
+        // (Q) ns * 8 ascii : digital maximum (e.g. 2047)
+        registry.add(esa, "digital_maximum", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "digital_maximum", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "digital_maximum", Check.INTEGER, Incompliance.error_esa_digmax);
+        registry.add(esa, "digital_maximum", Check.SAMPLE_RANGE, Incompliance.error_esa_digrange);
+        registry.add(new HeaderRule(esa, "digital_maximum", "digital_minimum", Check.INTEGERS_DIFFER,
+                Incompliance.error_esa_dig_equal, CRITICAL));
+        registry.add(new HeaderRule(esa, "digital_maximum", "digital_minimum", Check.INTEGERS_ORDERED,
+                Incompliance.error_esa_digmaxmin, CRITICAL));
+        // (R) ns * 80 ascii : prefiltering (e.g. HP:0.1Hz LP:75Hz), can be empty
+        registry.add(esa, "prefiltering", Check.ASCII, Incompliance.error_esa_ascii);
+        // (S) ns * 8 ascii : nr of samples in each data record
+        registry.add(esa, "samples", Check.NOT_EMPTY, Incompliance.error_esa_empty);
+        registry.add(esa, "samples", Check.ASCII, Incompliance.error_esa_ascii);
+        registry.add(esa, "samples", Check.INTEGER, Incompliance.error_esa_nrSig);
+        registry.add(esa, "samples", Check.POSITIVE, Incompliance.error_esa_nrSig_range);
+        // (T) ns * 32 ascii : reserved, can be empty
+        registry.add(esa, "reserved", Check.ASCII, Incompliance.error_esa_ascii);
+        return registry;
+    }
+
+    private void add(HeaderType header, String field, Check check, String description) {
+        add(new HeaderRule(header, field, check, description, CRITICAL));
+    }
+
+    /**
+     * Adds a rule after the others of its field
+     * @param rule the rule
+     * @throws IllegalArgumentException if a rule of the same name is already registered
+     */
+    public synchronized void add(HeaderRule rule) {
+        add(rules.size(), rule);
+    }
+
+    /**
+     * Adds a rule before another one, evaluating it first if they are of the same field
+     * @param before the name of the rule to insert before
+     * @param rule the rule
+     * @throws IllegalArgumentException if there is no rule named before, or a rule of the same name is already registered
+     */
+    public synchronized void addBefore(String before, HeaderRule rule) {
+        add(indexOf(before), rule);
+    }
+
+    private void add(int index, HeaderRule rule) {
+        for (HeaderRule registered : rules)
+            if (registered.getName().equals(rule.getName()))
+                throw new IllegalArgumentException("rule " + rule.getName() + " is already registered");
+        rules.add(index, rule);
+        compiled = new HeaderEvaluator[HeaderType.values().length];
+    }
+
+    /**
+     * Removes a rule
+     * @param name the name of the rule
+     * @return the removed rule
+     * @throws IllegalArgumentException if there is no such rule
+     */
+    public synchronized HeaderRule remove(String name) {
+        HeaderRule rule = rules.remove(indexOf(name));
+        disabled.remove(name);
+        compiled = new HeaderEvaluator[HeaderType.values().length];
+        return rule;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < rules.size(); i++)
+            if (rules.get(i).getName().equals(name))
+                return i;
+        throw new IllegalArgumentException("no rule " + name);
+    }
+
+    /**
+     * Enables or disables rules by name. A name ending at a dot of rule names selects all
+     * of them: esa.reserved selects every rule of the reserved field of the signal header,
+     * and esa all the rules of the signal header
+     * @param name the name of a rule, or a prefix of rule names ending at a dot
+     * @param enabled true to enable, false to disable
+     * @return the number of rules selected
+     * @throws IllegalArgumentException if no rule is selected
+     */
+    public synchronized int setEnabled(String name, boolean enabled) {
+        int selected = 0;
+        for (HeaderRule rule : rules) {
+            String ruleName = rule.getName();
+            if (ruleName.equals(name) || ruleName.startsWith(name + ".")) {
+                if (enabled)
+                    disabled.remove(ruleName);
+                else
+                    disabled.add(ruleName);
+                selected++;
+            }
+        }
+        if (selected == 0)
+            throw new IllegalArgumentException("no rule " + name);
+        compiled = new HeaderEvaluator[HeaderType.values().length];
+        return selected;
+    }
+
+    /**
+     * @param name the name of a rule
+     * @return true unless the rule was disabled
+     */
+    public synchronized boolean isEnabled(String name) {
+        return !disabled.contains(name);
+    }
+
+    /**
+     * Returns a fingerprint of the enabled rules, their order and severity,
+     * which changes whenever a rule is added, removed, disabled or moved
+     * @return the fingerprint, in hexadecimal
+     */
+    public synchronized String getFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        for (HeaderRule rule : rules)
+            if (!disabled.contains(rule.getName()))
+                sb.append(rule.getName()).append('/').append(rule.getErrorLevel()).append(';');
+        return Integer.toHexString(sb.toString().hashCode());
+    }
+
+    /**
+     * @return the registered rules in order of evaluation, enabled or not
+     */
+    public synchronized List<HeaderRule> getRules() {
+        return new ArrayList<HeaderRule>(rules);
+    }
+
+    /**
+     * Returns the enabled rules of a header compiled into one pass, compiled again only after a change
+     * @param header the header
+     * @return the evaluator
+     */
+    public HeaderEvaluator getEvaluator(HeaderType header) {
+        HeaderEvaluator evaluator = compiled[header.ordinal()];
+        if (evaluator == null) {
+            synchronized (this) {
+                ArrayList<HeaderRule> enabled = new ArrayList<HeaderRule>();
+                for (HeaderRule rule : rules)
+                    if (rule.getHeader() == header && !disabled.contains(rule.getName()))
+                        enabled.add(rule);
+                evaluator = new HeaderEvaluator(header, enabled);
+                compiled[header.ordinal()] = evaluator;
+            }
+        }
+        return evaluator;
+    }
+}
@@ -9,6 +9,7 @@ import javax.swing.table.TableModel;
 import tools.validator.utils.Incompliance;
 import tools.validator.utils.ValidatorConfiguration;
 import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
 
 /**
  * A customized JTable to represent the ESA, EIA table information 
@@ -95,6 +96,16 @@ public class EDFTable extends JTable {
 	 * @return An array of Incompliances
 	 */
 	public ArrayList<Incompliance> parseESATable(String edfPath) {
+		return parseESATable(edfPath, false);
+	}
+
+	/**
+	 * Validates ESA table, or only until its first critical Incompliance
+	 * @param edfPath the EDF file name used in the Incompliances
+	 * @param failFast true to stop at the first critical Incompliance
+	 * @return An array of Incompliances
+	 */
+	public ArrayList<Incompliance> parseESATable(String edfPath, boolean failFast) {
 		
 //		String wrkFileName = this.getMasterFile().getAbsolutePath();
 //		String srcFileName = "";
@@ -102,7 +113,13 @@ public class EDFTable extends JTable {
 //			srcFileName = afile.getAbsolutePath();
 //		}
 		
-		return ValidatorUtility.parseESATable(this, edfPath);
+		if (!(this instanceof ESATable))
+			return new ArrayList<Incompliance>();
+		ArrayList<Incompliance> esaIncompliances = 
+				ValidatorUtility.parseESAHeader(new TableAttributeSource(this.getModel()), edfPath, Verbosity.TRACE, failFast);
+		if (esaIncompliances.size() > 0)
+			setEdfValid(false);
+		return esaIncompliances;
 	}
 
 	/**
@@ -110,9 +127,23 @@ public class EDFTable extends JTable {
 	 * @return an array list of Incompliances generated during parsing
 	 */
     public ArrayList<Incompliance> parseEIATable(String edfPath) {
+    	return parseEIATable(edfPath, false);
+    }
+
+    /**
+     * Validates EIA tables, or only until their first critical Incompliance
+     * @param edfPath the EDF file name used in the Incompliances
+     * @param failFast true to stop at the first critical Incompliance
+     * @return an array list of Incompliances generated during parsing
+     */
+    public ArrayList<Incompliance> parseEIATable(String edfPath, boolean failFast) {
     	// 1. get edf-file name
     	// 2. validate edf file
-        return ValidatorUtility.parseEIATable((EIATable)this, edfPath);
+    	ArrayList<Incompliance> eiaIncompliances = 
+    			ValidatorUtility.parseEIAHeader(new TableAttributeSource(this.getModel()), edfPath, Verbosity.TRACE, failFast);
+    	if (eiaIncompliances.size() > 0)
+    		setEdfValid(false);
+        return eiaIncompliances;
     }
     
     protected final int[] lowerbounds = {0, 0, 0};
@@ -7,6 +7,8 @@ import javax.swing.table.TableModel;
 import tools.validator.header.EDFFileHeader;
 import tools.validator.header.EIA;
 import tools.validator.header.EIAHeader;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
 
 /**
  * An EIATable is a customized EDFTable
@@ -42,6 +44,7 @@ public class EIATable extends EDFTable {
      */
     public EIATable(EDFFileHeader edfHeader) {    	
         super(new EIATableModel(1));
+        long start = System.nanoTime();
         debugEdfHeader = edfHeader;
         
         String key, value;
@@ -52,6 +55,7 @@ public class EIATable extends EDFTable {
             value = eiaHeader.getAttributeValueAt(key);
             this.getModel().setValueAt(value, 0, ncolumn);
         } 
+        ValidationMetrics.record(Phase.TABLE_CONSTRUCTION, start);
     }
     
     /**
@@ -61,6 +65,7 @@ public class EIATable extends EDFTable {
      */
     public EIATable(ArrayList<EDFFileHeader> edfHeaders, int numberOfHeaders) {
         super(new EIATableModel(numberOfHeaders));
+        long start = System.nanoTime();
        
         for (int nrow = 0; nrow < numberOfHeaders; nrow++)   
             for (int ncolumn = 0; ncolumn < EIA.NUMBER_OF_ATTRIBUTES + 1; ncolumn++) {
@@ -69,6 +74,7 @@ public class EIATable extends EDFTable {
                 String value = eiaHeader.getAttributeValueAt(key);
                 this.getModel().setValueAt(value, nrow, ncolumn);
             }          
+        ValidationMetrics.record(Phase.TABLE_CONSTRUCTION, start);
      }
     
     /**
@@ -7,6 +7,8 @@ import javax.swing.table.TableModel;
 import tools.validator.header.ESA;
 import tools.validator.header.ESAChannel;
 import tools.validator.header.ESAHeader;
+import tools.validator.metrics.ValidationMetrics;
+import tools.validator.metrics.ValidationMetrics.Phase;
 
 /**
  * An ESA table used to represent the data model of the EDF Signal Attributes
@@ -36,7 +38,9 @@ public class ESATable extends EDFTable {
     }
     
     public ESATable(ESAHeader esaHeader) {
+    	long start = System.nanoTime();
     	createESATable(esaHeader);
+    	ValidationMetrics.record(Phase.TABLE_CONSTRUCTION, start);
     }
     
     /**
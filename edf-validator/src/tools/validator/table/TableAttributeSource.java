@@ -0,0 +1,31 @@
+package tools.validator.table;
+
+import javax.swing.table.TableModel;
+
+import tools.validator.header.AttributeSource;
+
+/**
+ * Exposes the cells of an EDF table model to the header validation
+ */
+public class TableAttributeSource implements AttributeSource {
+
+    private final TableModel model;
+
+    /**
+     * Constructs a source over a table model
+     * @param model the table model holding the header attribute values
+     */
+    public TableAttributeSource(TableModel model) {
+        this.model = model;
+    }
+
+    @Override
+    public int getRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public String getValueAt(int row, int column) {
+        return (String) model.getValueAt(row, column);
+    }
+}
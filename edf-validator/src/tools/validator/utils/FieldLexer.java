@@ -0,0 +1,190 @@
+package tools.validator.utils;
+
+import java.nio.charset.Charset;
+
+/**
+ * Lexical checks for the fixed width ascii fields of an EDF header.
+ * The checks do not work on the raw header bytes: the fields are decoded once by decode
+ * into one String each, one char per byte, and every check then works on the decoded value.
+ * The checks themselves neither allocate nor throw on malformed input.
+ */
+public class FieldLexer {
+
+    /** returned by parseInt when the field is not an integer */
+    public static final long NOT_AN_INTEGER = Long.MIN_VALUE;
+
+    /** results of checkDate and checkTime */
+    public static final int FIELD_VALID = 0;
+    public static final int FIELD_BAD_FORMAT = 1;
+    public static final int FIELD_OUT_OF_RANGE = 2;
+
+    /** one char per byte, so that no byte is lost or replaced while decoding */
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    /**
+     * Decodes a header field, trimmed the same way as String.trim().
+     * Every byte becomes exactly one char, so non-ascii bytes stay visible to isAscii
+     * whatever the platform charset is
+     * @param buffer the header bytes
+     * @param offset start of the field
+     * @param length width of the field
+     * @return the trimmed field value
+     */
+    public static String decode(byte[] buffer, int offset, int length) {
+        int start = offset, end = offset + length;
+        while (start < end && (buffer[start] & 0xff) <= ' ')
+            start++;
+        while (end > start && (buffer[end - 1] & 0xff) <= ' ')
+            end--;
+        return new String(buffer, start, end - start, ISO_8859_1);
+    }
+
+    /**
+     * Checks that a field only contains 7-bit ascii characters
+     * @param text the field value
+     * @return true if every character is ascii, false if not or if text is null
+     */
+    public static boolean isAscii(CharSequence text) {
+        if (text == null)
+            return false;
+        for (int i = 0, n = text.length(); i < n; i++)
+            if (text.charAt(i) > 0x7f)
+                return false;
+        return true;
+    }
+
+    /**
+     * Parses a decimal integer with an optional sign, accepting what Integer.parseInt accepts
+     * for ascii input
+     * @param text the field value
+     * @return the value, or NOT_AN_INTEGER if text is not an integer fitting in an int
+     */
+    public static long parseInt(CharSequence text) {
+        if (text == null)
+            return NOT_AN_INTEGER;
+        return parseInt(text, 0, text.length());
+    }
+
+    /**
+     * Parses a decimal integer out of text[start, end)
+     * @param text the field value
+     * @param start the first character
+     * @param end one past the last character
+     * @return the value, or NOT_AN_INTEGER if the range is not an integer fitting in an int
+     */
+    public static long parseInt(CharSequence text, int start, int end) {
+        boolean negative = false;
+        int i = start;
+        if (i < end) {
+            char c = text.charAt(i);
+            if (c == '-' || c == '+') {
+                negative = c == '-';
+                i++;
+            }
+        }
+        if (i == end)
+            return NOT_AN_INTEGER;
+        long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9)
+                return NOT_AN_INTEGER;
+            value = value * 10 + digit;
+            if (value > limit)
+                return NOT_AN_INTEGER;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks that a field is a decimal number as written in EDF headers:
+     * an optional sign, digits with at most one period, and an optional exponent
+     * (e.g. 500, -0.5, .25, 3., 1E-3)
+     * @param text the field value
+     * @return true if text is such a number
+     */
+    public static boolean isFloat(CharSequence text) {
+        if (text == null)
+            return false;
+        int i = 0, n = text.length();
+        if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+            i++;
+        int digits = 0;
+        boolean period = false;
+        for (; i < n; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9')
+                digits++;
+            else if (c == '.' && !period)
+                period = true;
+            else
+                break;
+        }
+        if (digits == 0)
+            return false;
+        if (i < n && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < n && (text.charAt(i) == '-' || text.charAt(i) == '+'))
+                i++;
+            int exponentDigits = 0;
+            for (; i < n && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++)
+                exponentDigits++;
+            if (exponentDigits == 0)
+                return false;
+        }
+        return i == n;
+    }
+
+    /**
+     * Checks a date field in the dd.mm.yy form, with dd:00-31, mm:00-12, yy:00-99
+     * @param text the field value
+     * @return FIELD_VALID, FIELD_BAD_FORMAT if it is not three period separated items,
+     * or FIELD_OUT_OF_RANGE if an item is not an integer in its range
+     */
+    public static int checkDate(CharSequence text) {
+        return checkTriple(text, 31, 12, 99);
+    }
+
+    /**
+     * Checks a time field in the hh.mm.ss form, with hh:00-23, mm:00-59, ss:00-59
+     * @param text the field value
+     * @return FIELD_VALID, FIELD_BAD_FORMAT if it is not three period separated items,
+     * or FIELD_OUT_OF_RANGE if an item is not an integer in its range
+     */
+    public static int checkTime(CharSequence text) {
+        return checkTriple(text, 23, 59, 59);
+    }
+
+    private static int checkTriple(CharSequence text, int max0, int max1, int max2) {
+//      Algorithm:
+//      1. locate the two periods, any other count is a format error;
+//      2. parse the three items in place and check their ranges;
+        if (text == null)
+            return FIELD_BAD_FORMAT;
+        int n = text.length();
+        int first = -1, second = -1;
+        for (int i = 0; i < n; i++) {
+            if (text.charAt(i) != '.')
+                continue;
+            if (first == -1)
+                first = i;
+            else if (second == -1)
+                second = i;
+            else
+                return FIELD_BAD_FORMAT;
+        }
+        if (second == -1)
+            return FIELD_BAD_FORMAT; // end of 1.
+
+        if (inRange(parseInt(text, 0, first), max0)
+                && inRange(parseInt(text, first + 1, second), max1)
+                && inRange(parseInt(text, second + 1, n), max2))
+            return FIELD_VALID;
+        return FIELD_OUT_OF_RANGE; // end of 2.
+    }
+
+    private static boolean inRange(long value, int max) {
+        return value >= 0 && value <= max; // NOT_AN_INTEGER is negative
+    }
+}
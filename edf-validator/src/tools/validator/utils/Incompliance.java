@@ -1,20 +1,36 @@
 package tools.validator.utils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
- * Imcompliance class corresponding to the incompliances found in the incompliance container defined in MainWindow class
+ * Imcompliance class corresponding to the incompliances found in the incompliance container defined in MainWindow class.
+ * Kept compact, as a large run holds many of them: what is reported is an IncomplianceCode with 
+ * its numbers, formatted into a description only when rendered; the file name is the path string 
+ * shared by every Incompliance of a file; the row, column, source, severity and rule are packed in one int
  */
 public class Incompliance {
     //protected static int errorNumber;
     protected String fileName;
-    protected String incomplianceType;
-    protected String description;
-    protected int rowIndex;
-    protected int columnIndex;
-    protected int srcTypeIndex;
+    private Object arguments; // the text of a TEXT description, else null or the numbers of the code
+    private int packed; // the row, column, source, severity and rule, see the masks below
+
+    // the layout of packed: the row takes the 16 high bits, signed, then the column 4 bits, 
+    // the source 3 bits, whether it is a warning 1 bit, and the index of the rule 8 bits, 
+    // which is the ordinal of the code unless a declared rule recorded the incompliance
+    private static final int ROW_SHIFT = 16;
+    private static final int COLUMN_SHIFT = 12;
+    private static final int COLUMN_MASK = 0xf;
+    private static final int SOURCE_SHIFT = 9;
+    private static final int SOURCE_MASK = 0x7;
+    private static final int WARNING = 0x100;
+    private static final int RULE_MASK = 0xff;
     
     // the two types of incompliance: warning and critical error
-    protected static final int errorLevel_warning = 0;
-    protected static final int errorLevel_critical = 1; 
+    public static final int errorLevel_warning = 0;
+    public static final int errorLevel_critical = 1; 
+    public static final String nameOfErrorLevel[] = {"warning", "critical"};
     
     // the description of warnings
     protected static final String warning_eia_day = "value for day segment should lie in [1, 31]";
@@ -53,6 +69,14 @@ public class Incompliance {
     public static final String error_esa_digmaxmin   = "Signal Header: Digital maximum must be larger than digital minimum";
     public static final String error_esa_nrSig       = "Signal Header: Number of signals should be an integer";
     public static final String error_esa_nrSig_range = "Signal Header: Number of signals should be greater than 0";
+    public static final String error_esa_truncated   = "Signal Header: File ends within the signal header";
+    
+    public static final String error_data_header_bytes = "Data Section: \"Number of bytes in header record\" should equal 256 * (number of signals + 1)";
+    public static final String error_data_truncated    = "Data Section: File is shorter than declared by the header";
+    public static final String error_data_oversized    = "Data Section: File is longer than declared by the header";
+    public static final String error_data_partial      = "Data Section: Last data record is incomplete";
+    public static final String error_data_sample_count = "Data Section: Digital samples outside [digital minimum, digital maximum]: ";
+    public static final String error_data_sample_range = "Data Section: Digital sample outside [digital minimum, digital maximum]";
     
     public static final String Title_ErroIndex = "Error #"; //this might be redundant, Fangping, 09/29/2010
     public static final String Title_Description = "Description";
@@ -62,33 +86,76 @@ public class Incompliance {
     public static final String Title_Type = "Type";
     
     // text and index source of incompliances, 
-    // corresponding to the four types of incompliance container defined in MainWindow class
-    public static final String typeOfErrorHeader[] = {"ESA", "ESA template", "EIA",  "EIA template"};  
+    // corresponding to the four types of incompliance container defined in MainWindow class,
+    // plus the data section following the header
+    public static final String typeOfErrorHeader[] = {"ESA", "ESA template", "EIA",  "EIA template", "Data"};  
     public static final int index_incomp_src_esa = 0;
     public static final int index_incomp_src_esatemplate = 1;
     public static final int index_incomp_src_eia = 2;
     public static final int index_incomp_src_eiatemplate = 3;
+    public static final int index_incomp_src_data = 4;
     
     
     /**
      * Construct Incompliance using specified information
-     * @param incomplianceType type of incompliance
+     * @param code what is reported
+     * @param fileName the file that generate this incompliance
+     * @param rowIndex row index of this incompliance, in [-32768, 32767]
+     * @param columnIndex column index of this incompliance, in [0, 15]
+     * @param srcTypeIndex source of incompliance index
+     */
+    public Incompliance(IncomplianceCode code, String fileName, int rowIndex, int columnIndex, int srcTypeIndex) {
+        this.fileName = fileName;
+        setCode(code);
+        setRowIndex(rowIndex);
+        setColumnIndex(columnIndex);
+        setErrorSrcTypeIndex(srcTypeIndex);
+    }
+
+    /**
+     * Construct Incompliance using specified information, with the numbers its description is formatted with
+     * @param code what is reported
+     * @param fileName the file that generate this incompliance
+     * @param rowIndex row index of this incompliance, in [-32768, 32767]
+     * @param columnIndex column index of this incompliance, in [0, 15]
+     * @param srcTypeIndex source of incompliance index
+     * @param arguments the numbers of the description, as documented by the code
+     */
+    public Incompliance(IncomplianceCode code, String fileName, int rowIndex, int columnIndex, int srcTypeIndex, 
+    		long... arguments) {
+        this(code, fileName, rowIndex, columnIndex, srcTypeIndex);
+        this.arguments = arguments;
+    }
+
+    /**
+     * Construct Incompliance using specified information. A description declared by this class 
+     * is recorded as its IncomplianceCode, any other as text
+     * @param incomplianceType type of incompliance, the one of srcTypeIndex
      * @param description description of this incompliance
      * @param fileName the file that generate this incompliance
-     * @param rowIndex row index of this incompliance
-     * @param columnIndex column index of this incompliance
+     * @param rowIndex row index of this incompliance, in [-32768, 32767]
+     * @param columnIndex column index of this incompliance, in [0, 15]
      * @param srcTypeIndex source of incompliance index
      */
     public Incompliance (
     		String incomplianceType, String description, String fileName,  
     		int rowIndex, int columnIndex, int srcTypeIndex) {
-        this.incomplianceType = incomplianceType; 
-        this.description = description;
         this.fileName = fileName;
+        setDescription(description);
+        setRowIndex(rowIndex);
+        setColumnIndex(columnIndex);
+        setErrorSrcTypeIndex(srcTypeIndex);
+    }
 
-        this.rowIndex = rowIndex;
-        this.columnIndex = columnIndex;
-        this.srcTypeIndex = srcTypeIndex;
+    /**
+     * Copies an Incompliance, reported against another file
+     * @param incompliance the Incompliance copied
+     * @param fileName the file that generate this incompliance
+     */
+    public Incompliance(Incompliance incompliance, String fileName) {
+        this.fileName = fileName;
+        this.arguments = incompliance.arguments; // never modified
+        this.packed = incompliance.packed;
     }
     
     /**
@@ -113,27 +180,36 @@ public class Incompliance {
     }
 
     /**
-     * Set the incompliance type using a type string
-     * @param incomplianceType the type string used to set incompliance type
+     * Set the incompliance type using a type string, which sets the source of the incompliance
+     * @param incomplianceType the type string used to set incompliance type, one of typeOfErrorHeader
+     * @throws IllegalArgumentException if the type is none of typeOfErrorHeader
      */
     public void setIncomplianceType(String incomplianceType) {
-        this.incomplianceType = incomplianceType;
+        for (int i = 0; i < typeOfErrorHeader.length; i++) {
+            if (typeOfErrorHeader[i].equals(incomplianceType)) {
+                setErrorSrcTypeIndex(i);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("unknown incompliance type " + incomplianceType);
     }
 
     /**
      * Return the incompliance type
-     * @return the incompliance type
+     * @return the incompliance type, the one of its source
      */
     public String getIncomplianceType() {
-        return incomplianceType;
+        return typeOfErrorHeader[getSrcTypeIndex()];
     }
 
     /**
      * Set the row index of this incompliance instance
-     * @param rowIndex the row specified
+     * @param rowIndex the row specified, in [-32768, 32767]
      */
     public void setRowIndex(int rowIndex) {
-        this.rowIndex = rowIndex;
+        if (rowIndex != (short) rowIndex)
+            throw new IllegalArgumentException("row index out of range: " + rowIndex);
+        packed = (packed & ((1 << ROW_SHIFT) - 1)) | (rowIndex << ROW_SHIFT);
     }
 
     /**
@@ -141,15 +217,17 @@ public class Incompliance {
      * @return the row index
      */
     public int getRowIndex() {
-        return rowIndex;
+        return packed >> ROW_SHIFT;
     }
 
     /**
      * Set the column index of this compliance
-     * @param columnIndex the column index to be set
+     * @param columnIndex the column index to be set, in [0, 15]
      */
     public void setColumnIndex(int columnIndex) {
-        this.columnIndex = columnIndex;
+        if ((columnIndex & ~COLUMN_MASK) != 0)
+            throw new IllegalArgumentException("column index out of range: " + columnIndex);
+        packed = (packed & ~(COLUMN_MASK << COLUMN_SHIFT)) | (columnIndex << COLUMN_SHIFT);
     }
 
     /**
@@ -157,23 +235,72 @@ public class Incompliance {
      * @return the column index
      */
     public int getColumnIndex() {
-        return columnIndex;
+        return (packed >> COLUMN_SHIFT) & COLUMN_MASK;
     }
 
     /**
-     * Set the description of this incompliance
+     * Set the description of this incompliance. A description declared by this class 
+     * is recorded as its IncomplianceCode, any other as text
      * @param description the description of this incompliance
      */
     public void setDescription(String description) {
-        this.description = description;
+        IncomplianceCode code = IncomplianceCode.forMessage(description);
+        setCode(code);
+        this.arguments = code == IncomplianceCode.TEXT ? description : null;
     }
 
     /**
-     * Return the description of this incompliance
+     * Return the description of this incompliance, formatted from its code and arguments
      * @return the description
      */
     public String getDescription() {
-        return description;
+        return getCode().describe(arguments);
+    }
+
+    private void setCode(IncomplianceCode code) {
+        packed = (packed & ~RULE_MASK) | code.ordinal();
+    }
+
+    /**
+     * Returns what this incompliance reports
+     * @return the code of this incompliance, TEXT for a description given as text
+     */
+    public IncomplianceCode getCode() {
+        return IncomplianceRules.getCode(packed & RULE_MASK);
+    }
+
+    /**
+     * Records the declared rule that found this incompliance, which must report its code
+     * @param rule the index given by IncomplianceRules.declare
+     */
+    public void setRule(int rule) {
+        if (IncomplianceRules.getCode(rule) != getCode())
+            throw new IllegalArgumentException("rule " + IncomplianceRules.getName(rule) + " does not report " + getCode());
+        packed = (packed & ~RULE_MASK) | rule;
+    }
+
+    /**
+     * Returns the rule this incompliance is counted against
+     * @return the index of the rule in IncomplianceRules, that of its code if no declared rule recorded it
+     */
+    public int getRule() {
+        return packed & RULE_MASK;
+    }
+
+    /**
+     * Returns the name of the rule this incompliance is counted against
+     * @return the name of the declared rule, e.g. esa.label.unique_label, or of the code, e.g. data.truncated
+     */
+    public String getRuleName() {
+        return IncomplianceRules.getName(getRule());
+    }
+
+    /**
+     * Returns the numbers the description is formatted with
+     * @return the arguments of the code, null if none or for a TEXT description
+     */
+    public long[] getArguments() {
+        return arguments instanceof long[] ? (long[]) arguments : null;
     }
 
     /**
@@ -181,7 +308,9 @@ public class Incompliance {
      * @param typeIndex the error index related to this incompliance
      */
     public void setErrorSrcTypeIndex(int typeIndex) {
-        this.srcTypeIndex = typeIndex;
+        if (typeIndex < 0 || typeIndex >= typeOfErrorHeader.length)
+            throw new IllegalArgumentException("unknown incompliance source " + typeIndex);
+        packed = (packed & ~(SOURCE_MASK << SOURCE_SHIFT)) | (typeIndex << SOURCE_SHIFT);
     }
 
     /**
@@ -189,11 +318,95 @@ public class Incompliance {
      * @return the source type index
      */
     public int getSrcTypeIndex() {
-        return srcTypeIndex;
+        return (packed >> SOURCE_SHIFT) & SOURCE_MASK;
+    }
+    
+    /**
+     * Set the severity of this incompliance, critical by default
+     * @param errorLevel errorLevel_warning or errorLevel_critical
+     */
+    public void setErrorLevel(int errorLevel) {
+        packed = errorLevel == errorLevel_warning ? packed | WARNING : packed & ~WARNING;
+    }
+
+    /**
+     * Returns the severity of this incompliance
+     * @return errorLevel_warning or errorLevel_critical
+     */
+    public int getErrorLevel() {
+        return (packed & WARNING) != 0 ? errorLevel_warning : errorLevel_critical;
+    }
+
+    /**
+     * Returns the name of the severity of this incompliance
+     * @return "warning" or "critical"
+     */
+    public String getSeverity() {
+        return nameOfErrorLevel[getErrorLevel()];
+    }
+    
+    /**
+     * Writes this incompliance, but its file name, in a compact binary form
+     * @param out the output
+     * @throws IOException if it cannot be written
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        IncomplianceCode code = getCode();
+        out.writeUTF(code.name());
+        out.writeUTF(IncomplianceRules.isCode(getRule()) ? "" : getRuleName());
+        out.writeInt(getRowIndex());
+        out.writeInt(getColumnIndex());
+        out.writeByte(getSrcTypeIndex());
+        out.writeByte(getErrorLevel());
+        if (code == IncomplianceCode.TEXT) {
+            out.writeUTF(getDescription());
+        } else {
+            long[] arguments = getArguments();
+            out.writeByte(arguments == null ? 0 : arguments.length);
+            if (arguments != null)
+                for (long argument : arguments)
+                    out.writeLong(argument);
+        }
+    }
+
+    /**
+     * Reads an incompliance written by writeTo
+     * @param in the input
+     * @param fileName the file that generate this incompliance
+     * @return the incompliance
+     * @throws IOException if it cannot be read, or what is read is not an incompliance
+     */
+    public static Incompliance readFrom(DataInput in, String fileName) throws IOException {
+        try {
+            IncomplianceCode code = IncomplianceCode.valueOf(in.readUTF());
+            String rule = in.readUTF();
+            int row = in.readInt();
+            int column = in.readInt();
+            int source = in.readByte();
+            int level = in.readByte();
+            Incompliance incompliance = new Incompliance(code, fileName, row, column, source);
+            if (code == IncomplianceCode.TEXT) {
+                incompliance.setDescription(in.readUTF());
+            } else {
+                int count = in.readByte();
+                if (count > 0) {
+                    long[] arguments = new long[count];
+                    for (int i = 0; i < count; i++)
+                        arguments[i] = in.readLong();
+                    incompliance.arguments = arguments;
+                }
+            }
+            if (!rule.isEmpty())
+                incompliance.setRule(IncomplianceRules.declare(rule, code));
+            incompliance.setErrorLevel(level);
+            return incompliance;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("not an incompliance: " + e.getMessage());
+        }
     }
     
     // For test: TODO
     public String toString() {
-    	return description;
+    	return getDescription();
     }
 }
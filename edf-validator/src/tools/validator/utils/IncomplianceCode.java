@@ -0,0 +1,157 @@
+package tools.validator.utils;
+
+import java.util.HashMap;
+
+/**
+ * What an Incompliance reports, as a code rather than as text: the description is
+ * only formatted, from the message of the code and the numbers recorded with the
+ * Incompliance, when it is rendered. The messages are the error descriptions
+ * declared by Incompliance, so rendered descriptions are the ones reported before
+ */
+public enum IncomplianceCode {
+
+    /** a description given as text, the argument of the Incompliance */
+    TEXT(null) {
+        @Override
+        public String describe(Object arguments) {
+            return (String) arguments;
+        }
+    },
+
+    EIA_ASCII(Incompliance.error_eia_ascii),
+    EIA_EMPTY(Incompliance.error_eia_empty),
+    EIA_VERSION(Incompliance.error_eia_version),
+    EIA_DATEFORMAT(Incompliance.error_eia_dateformat),
+    EIA_DATERANGE(Incompliance.error_eia_daterange),
+    EIA_TIMEFORMAT(Incompliance.error_eia_timeformat),
+    EIA_TIMERANGE(Incompliance.error_eia_timerange),
+    EIA_NUM_BYTES(Incompliance.error_eia_num_bytes),
+    EIA_NUM_RECORDS(Incompliance.error_eia_num_records),
+    EIA_DURATION(Incompliance.error_eia_duration),
+    EIA_NSIGNALS(Incompliance.error_eia_nsignals),
+
+    ESA_ASCII(Incompliance.error_esa_ascii),
+    ESA_EMPTY(Incompliance.error_esa_empty),
+    /** arguments: the rows sharing the label, counted from 1 */
+    ESA_LABEL(Incompliance.error_esa_label),
+    ESA_PHYMIN(Incompliance.error_esa_phymin),
+    ESA_PHYMAX(Incompliance.error_esa_phymax),
+    ESA_PHY_EQUAL(Incompliance.error_esa_phy_equal),
+    ESA_PHYMAXMIN(Incompliance.error_esa_phymaxmin),
+    ESA_DIGMIN(Incompliance.error_esa_digmin),
+    ESA_DIGMAX(Incompliance.error_esa_digmax),
+    ESA_DIG_EQUAL(Incompliance.error_esa_dig_equal),
+    ESA_DIGRANGE(Incompliance.error_esa_digrange),
+    ESA_DIGMAXMIN(Incompliance.error_esa_digmaxmin),
+    ESA_NRSIG(Incompliance.error_esa_nrSig),
+    ESA_NRSIG_RANGE(Incompliance.error_esa_nrSig_range),
+    ESA_TRUNCATED(Incompliance.error_esa_truncated),
+
+    DATA_HEADER_BYTES(Incompliance.error_data_header_bytes),
+    /** arguments: the expected and the actual file size */
+    DATA_TRUNCATED(Incompliance.error_data_truncated) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            sb.append(" (expected ").append(arguments[0]).append(" bytes, found ").append(arguments[1]).append(')');
+        }
+    },
+    /** arguments: the header size and the actual file size, when the number of records is unknown */
+    DATA_TRUNCATED_HEADER(Incompliance.error_data_truncated) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            sb.append(" (expected at least ").append(arguments[0]).append(" bytes, found ").append(arguments[1]).append(')');
+        }
+    },
+    /** arguments: the expected and the actual file size */
+    DATA_OVERSIZED(Incompliance.error_data_oversized) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            DATA_TRUNCATED.appendArguments(sb, arguments);
+        }
+    },
+    /** arguments: the number of complete records */
+    DATA_PARTIAL(Incompliance.error_data_partial) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            sb.append(" (").append(arguments[0]).append(" complete records)");
+        }
+    },
+    /** arguments: the number of offending samples, the digital minimum and maximum */
+    DATA_SAMPLE_COUNT(Incompliance.error_data_sample_count) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            sb.append(arguments[0]).append(" [").append(arguments[1]).append(", ").append(arguments[2]).append(']');
+        }
+    },
+    /** arguments: the record and the sample, counted from 1, and the value of the sample */
+    DATA_SAMPLE_RANGE(Incompliance.error_data_sample_range) {
+        @Override
+        void appendArguments(StringBuilder sb, long[] arguments) {
+            sb.append(" (record ").append(arguments[0]).append(", sample ").append(arguments[1])
+                    .append(", value ").append(arguments[2]).append(')');
+        }
+    };
+
+    private static final HashMap<String,IncomplianceCode> byMessage = new HashMap<String,IncomplianceCode>();
+    static {
+        for (IncomplianceCode code : values())
+            if (code.message != null && !byMessage.containsKey(code.message))
+                byMessage.put(code.message, code);
+    }
+
+    private final String message;
+
+    private IncomplianceCode(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return the description without arguments, null for TEXT
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Finds the code of a description
+     * @param description a description without arguments
+     * @return the code whose message it is, TEXT if none
+     */
+    public static IncomplianceCode forMessage(String description) {
+        IncomplianceCode code = description == null ? null : byMessage.get(description);
+        return code == null ? TEXT : code;
+    }
+
+    /**
+     * Formats a description
+     * @param arguments the arguments recorded with the Incompliance:
+     * the text of the description for TEXT, else null or an array of numbers
+     * @return the description
+     */
+    public String describe(Object arguments) {
+        return arguments == null ? message : describe(message, (long[]) arguments);
+    }
+
+    /**
+     * Formats a description made of a message followed by numbers, the way this code does
+     * @param message the message
+     * @param arguments the numbers
+     * @return the description
+     */
+    public String describe(String message, long[] arguments) {
+        StringBuilder sb = new StringBuilder(message);
+        appendArguments(sb, arguments);
+        return sb.toString();
+    }
+
+    /**
+     * Appends the arguments to a message, by default as a list, e.g. the rows of a duplicated label
+     */
+    void appendArguments(StringBuilder sb, long[] arguments) {
+        for (int i = 0; i < arguments.length; i++) {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(arguments[i]);
+        }
+    }
+}
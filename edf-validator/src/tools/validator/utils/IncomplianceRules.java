@@ -0,0 +1,95 @@
+package tools.validator.utils;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The rules Incompliances are counted against, each known by a small index that an
+ * Incompliance keeps in 8 bits. The first indexes are the IncomplianceCodes, standing for
+ * the Incompliances no declared rule records, e.g. those of the data section, named after
+ * the code: data.truncated. The others are declared by the header rules, under their own
+ * names, e.g. esa.label.unique_label, so every rule of a field is counted apart even when
+ * they share a description. Declarations are never forgotten; past CAPACITY, a rule is
+ * counted under its code
+ */
+public class IncomplianceRules {
+
+    /** the number of indexes, codes included */
+    public static final int CAPACITY = 256;
+
+    /** the name of the rule of TEXT Incompliances recorded by no declared rule */
+    public static final String OTHER = "other";
+
+    private static final IncomplianceCode[] codes = IncomplianceCode.values();
+    private static final AtomicReferenceArray<String> names = new AtomicReferenceArray<String>(CAPACITY);
+    private static final AtomicReferenceArray<IncomplianceCode> codeOfRule = new AtomicReferenceArray<IncomplianceCode>(CAPACITY);
+    private static final HashMap<String,Integer> declared = new HashMap<String,Integer>(); // by name and code
+    private static volatile int size;
+    static {
+        for (IncomplianceCode code : codes) {
+            names.set(code.ordinal(), code == IncomplianceCode.TEXT ? OTHER
+                    : code.name().toLowerCase().replaceFirst("_", "."));
+            codeOfRule.set(code.ordinal(), code);
+        }
+        size = codes.length;
+    }
+
+    private IncomplianceRules() {
+    }
+
+    /**
+     * Returns the index of a declared rule, giving it one the first time
+     * @param name the name of the rule
+     * @param code what the rule reports
+     * @return the index, that of the code once CAPACITY indexes are taken
+     */
+    public static synchronized int declare(String name, IncomplianceCode code) {
+        String key = name + '/' + code.name();
+        Integer rule = declared.get(key);
+        if (rule != null)
+            return rule;
+        if (size == CAPACITY)
+            return code.ordinal();
+        int index = size;
+        names.set(index, name);
+        codeOfRule.set(index, code);
+        declared.put(key, index);
+        size = index + 1;
+        return index;
+    }
+
+    /**
+     * Tests whether an index is that of an IncomplianceCode rather than of a declared rule
+     * @param rule the index
+     * @return true for a code
+     */
+    public static boolean isCode(int rule) {
+        return rule < codes.length;
+    }
+
+    /**
+     * Returns the name of a rule
+     * @param rule the index
+     * @return the name, OTHER for TEXT
+     */
+    public static String getName(int rule) {
+        return names.get(rule);
+    }
+
+    /**
+     * Returns what a rule reports
+     * @param rule the index
+     * @return the code
+     */
+    public static IncomplianceCode getCode(int rule) {
+        return rule < codes.length ? codes[rule] : codeOfRule.get(rule);
+    }
+
+    /**
+     * Returns the number of indexes given so far
+     * @return the indexes in use, from 0
+     */
+    public static int size() {
+        return size;
+    }
+}
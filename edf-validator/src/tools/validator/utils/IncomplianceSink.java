@@ -0,0 +1,17 @@
+package tools.validator.utils;
+
+import java.io.IOException;
+
+/**
+ * Receives the Incompliances of a validation as they are found, so that they
+ * need not all be held in a list first; an IncomplianceStore keeps them in bounded memory
+ */
+public interface IncomplianceSink {
+
+    /**
+     * Receives an Incompliance
+     * @param incompliance the Incompliance found
+     * @throws IOException if the Incompliance cannot be kept
+     */
+    void add(Incompliance incompliance) throws IOException;
+}
@@ -0,0 +1,25 @@
+package tools.validator.utils;
+
+/**
+ * How much the validator prints on screen. Each level includes the ones before it;
+ * the log file is written the same way at every level
+ */
+public enum Verbosity {
+	/** nothing is printed */
+	SILENT,
+	/** the start and the summary of a run */
+	SUMMARY,
+	/** a banner and the report section of each file */
+	FILE,
+	/** every header field checked, with its result */
+	TRACE;
+
+	/**
+	 * Tests whether output of a level is printed at this verbosity
+	 * @param level the level of the output
+	 * @return true if this verbosity includes level
+	 */
+	public boolean includes(Verbosity level) {
+		return compareTo(level) >= 0;
+	}
+}
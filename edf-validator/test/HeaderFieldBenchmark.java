@@ -0,0 +1,264 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.header.ESA;
+import tools.validator.utils.FieldLexer;
+import tools.validator.utils.ValidatorUtility;
+import tools.validator.utils.Verbosity;
+
+/**
+ * Measures the allocation and time of the lexical checks of a header.
+ * First field by field, the way the fields were handled before FieldLexer against FieldLexer:
+ * decoding with new String(...).trim() in the platform charset against FieldLexer.decode,
+ * then checking the decoded values with the ascii regex, parseInt/parseFloat catching
+ * NumberFormatException and split for dates and times against the FieldLexer checks.
+ * Then along the path validation takes: decoding the header (EDFFileHeader), checking
+ * it against the rules (parseEIAHeader and parseESAHeader), apart and together.
+ * The rules are timed on headers decoded beforehand and checked once each, 
+ * as the values they parse are kept by the header.
+ * Usage: HeaderFieldBenchmark [number of channels] [iterations]
+ */
+public class HeaderFieldBenchmark {
+
+	// what a field holds, which decides how it is checked
+	private static final int TEXT = 0, INTEGER = 1, FLOAT = 2, DATE = 3, TIME = 4;
+	private static final int[] EIA_KINDS = { INTEGER, TEXT, TEXT, DATE, TIME, INTEGER, TEXT, INTEGER, FLOAT, INTEGER };
+	private static final int[] ESA_KINDS = { TEXT, TEXT, TEXT, FLOAT, FLOAT, INTEGER, INTEGER, TEXT, INTEGER, TEXT };
+	private static final int BATCH = 500; // headers decoded ahead of the rules
+
+	private static int sink;
+
+	public static void main(String[] args) throws IOException {
+		int nChannels = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+		byte[] header = buildHeader(nChannels);
+		File edfFile = new File("benchmark.edf");
+
+		// warm up, and check that the malformed fields are reported
+		int[][] fields = layout(nChannels);
+		for (int i = 0; i < iterations; i++) {
+			sink += check(decode(header, edfFile), edfFile);
+			sink += checkBefore(decodeBefore(header, fields), fields) + checkLexer(decodeLexer(header, fields), fields);
+		}
+		if (check(decode(header, edfFile), edfFile) == 0)
+			throw new IllegalStateException("No incompliance found in the malformed header");
+		String[] values = decodeLexer(header, fields);
+		if (checkBefore(values, fields) != checkLexer(values, fields))
+			throw new IllegalStateException("The field checks disagree");
+
+		long bytes = allocatedBytes(), start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += decodeBefore(header, fields).length;
+		report("decode before", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+
+		bytes = allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += decodeLexer(header, fields).length;
+		report("decode lexer", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+
+		bytes = allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += checkBefore(values, fields);
+		report("checks before", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+
+		bytes = allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += checkLexer(values, fields);
+		report("checks lexer", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+
+		bytes = allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += decode(header, edfFile).getEsaHeader().getNumberOfChannels();
+		report("decode", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+
+		bytes = 0;
+		long nanos = 0;
+		EDFFileHeader[] decoded = new EDFFileHeader[Math.min(BATCH, iterations)];
+		for (int done = 0; done < iterations; done += decoded.length) {
+			for (int i = 0; i < decoded.length; i++)
+				decoded[i] = decode(header, edfFile);
+			long before = allocatedBytes();
+			start = System.nanoTime();
+			for (int i = 0; i < decoded.length; i++)
+				sink += check(decoded[i], edfFile);
+			nanos += System.nanoTime() - start;
+			bytes += allocatedBytes() - before;
+		}
+		int checked = (iterations + decoded.length - 1) / decoded.length * decoded.length;
+		report("rules", nChannels, checked, bytes, nanos);
+
+		bytes = allocatedBytes();
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			sink += check(decode(header, edfFile), edfFile);
+		report("decode+rules", nChannels, iterations, allocatedBytes() - bytes, System.nanoTime() - start);
+	}
+
+	private static EDFFileHeader decode(byte[] header, File edfFile) throws IOException {
+		return new EDFFileHeader(header, header.length, edfFile);
+	}
+
+	/**
+	 * The rules of both headers, as ValidatorMain checks them
+	 * @return the number of Incompliances found
+	 */
+	private static int check(EDFFileHeader header, File edfFile) {
+		String name = edfFile.getPath();
+		return ValidatorUtility.parseEIAHeader(header.getEiaHeader(), name, Verbosity.SILENT).size()
+				+ ValidatorUtility.parseESAHeader(header.getEsaHeader(), name, Verbosity.SILENT).size();
+	}
+
+	/**
+	 * The offset, width and kind of every field of a header, signal header fields 
+	 * attribute by attribute as they are laid out
+	 */
+	private static int[][] layout(int nChannels) {
+		int[][] fields = new int[EIA.NUMBER_OF_ATTRIBUTES + ESA.NUMBER_OF_ATTRIBUTES * nChannels][];
+		int offset = 0, n = 0;
+		for (int j = 0; j < EIA.NUMBER_OF_ATTRIBUTES; j++) {
+			fields[n++] = new int[] { offset, EIA.getByteLengthAt(j), EIA_KINDS[j] };
+			offset += EIA.getByteLengthAt(j);
+		}
+		for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++) {
+			for (int i = 0; i < nChannels; i++) {
+				fields[n++] = new int[] { offset, ESA.getByteLengthAt(j), ESA_KINDS[j] };
+				offset += ESA.getByteLengthAt(j);
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * Decodes the fields as the headers did before FieldLexer
+	 */
+	private static String[] decodeBefore(byte[] header, int[][] fields) {
+		String[] values = new String[fields.length];
+		for (int f = 0; f < fields.length; f++)
+			values[f] = new String(header, fields[f][0], fields[f][1]).trim();
+		return values;
+	}
+
+	private static String[] decodeLexer(byte[] header, int[][] fields) {
+		String[] values = new String[fields.length];
+		for (int f = 0; f < fields.length; f++)
+			values[f] = FieldLexer.decode(header, fields[f][0], fields[f][1]);
+		return values;
+	}
+
+	/**
+	 * Checks the fields as ValidatorUtility did before FieldLexer
+	 * @return the number of malformed fields
+	 */
+	private static int checkBefore(String[] values, int[][] fields) {
+		int malformed = 0;
+		for (int f = 0; f < fields.length; f++) {
+			String value = values[f];
+			boolean valid = value.matches("\\A\\p{ASCII}*\\z");
+			try {
+				switch (fields[f][2]) {
+				case INTEGER:
+					Integer.parseInt(value);
+					break;
+				case FLOAT:
+					Float.parseFloat(value);
+					break;
+				case DATE:
+				case TIME:
+					String[] items = value.split("\\.");
+					if (items.length != 3) {
+						valid = false;
+						break;
+					}
+					int first = Integer.parseInt(items[0]), second = Integer.parseInt(items[1]), third = Integer.parseInt(items[2]);
+					if (fields[f][2] == DATE)
+						valid &= first >= 0 && first <= 31 && second >= 0 && second <= 12 && third >= 0 && third <= 99;
+					else
+						valid &= first >= 0 && first <= 23 && second >= 0 && second <= 59 && third >= 0 && third <= 59;
+					break;
+				}
+			} catch (NumberFormatException e) {
+				valid = false;
+			}
+			if (!valid)
+				malformed++;
+		}
+		return malformed;
+	}
+
+	/**
+	 * Checks the fields with FieldLexer
+	 * @return the number of malformed fields
+	 */
+	private static int checkLexer(String[] values, int[][] fields) {
+		int malformed = 0;
+		for (int f = 0; f < fields.length; f++) {
+			String value = values[f];
+			boolean valid = FieldLexer.isAscii(value);
+			switch (fields[f][2]) {
+			case INTEGER:
+				valid &= FieldLexer.parseInt(value) != FieldLexer.NOT_AN_INTEGER;
+				break;
+			case FLOAT:
+				valid &= FieldLexer.isFloat(value);
+				break;
+			case DATE:
+				valid &= FieldLexer.checkDate(value) == FieldLexer.FIELD_VALID;
+				break;
+			case TIME:
+				valid &= FieldLexer.checkTime(value) == FieldLexer.FIELD_VALID;
+				break;
+			}
+			if (!valid)
+				malformed++;
+		}
+		return malformed;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static void report(String name, int nChannels, int iterations, long bytes, long nanos) {
+		System.out.format("%-15s ns=%-5d bytes/header=%-9d us/header=%.2f%n",
+				name, nChannels, bytes / iterations, nanos / 1000.0 / iterations);
+	}
+
+	/**
+	 * A header with a few malformed fields, so both the passing and the failing paths are measured
+	 */
+	private static byte[] buildHeader(int nChannels) {
+		StringBuilder sb = new StringBuilder();
+		pad(sb, "0", 8);
+		pad(sb, "X X X X", 80);
+		pad(sb, "Startdate X X X X", 80);
+		pad(sb, "01.01.14", 8);
+		pad(sb, "25:00:00", 8);
+		pad(sb, "" + (nChannels + 1) * 256, 8);
+		pad(sb, "", 44);
+		pad(sb, "-1", 8);
+		pad(sb, "0.5", 8);
+		pad(sb, "" + nChannels, 4);
+		String[] values = { "EEG ", "AgAgCl electrode", "uV", "-500", "500.5", "-2048", "2047", "HP:0.1Hz LP:75Hz", "256", "" };
+		for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+			for (int i = 0; i < nChannels; i++)
+				pad(sb, j == 0 ? values[j] + i : (j == 4 && i % 8 == 7) ? "5OO" : values[j], ESA.getByteLengthAt(j));
+		byte[] header = new byte[sb.length()];
+		for (int i = 0; i < header.length; i++)
+			header[i] = (byte) sb.charAt(i);
+		return header;
+	}
+
+	private static void pad(StringBuilder sb, String value, int length) {
+		sb.append(value);
+		for (int i = value.length(); i < length; i++)
+			sb.append(' ');
+	}
+}
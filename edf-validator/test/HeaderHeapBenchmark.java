@@ -0,0 +1,93 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import tools.validator.header.ESA;
+import tools.validator.header.ESAHeader;
+import tools.validator.utils.FieldLexer;
+
+/**
+ * Compares the heap retained by a parsed signal header: one HashMap of trimmed
+ * Strings per channel, as the header was held before, against the attribute
+ * columns of ESAHeader. Also checks that both hold the same values.
+ * Usage: HeaderHeapBenchmark [number of channels] [number of headers held]
+ */
+public class HeaderHeapBenchmark {
+
+	public static void main(String[] args) {
+		int nChannels = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+		int nHeaders = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		byte[] buffer = buildSignalHeader(nChannels);
+		File edf = new File("bench.edf");
+
+		verify(readPerChannel(buffer, nChannels), new ESAHeader(buffer, buffer.length, edf, nChannels));
+
+		Object[] held = new Object[nHeaders];
+		long before = usedHeap();
+		for (int i = 0; i < nHeaders; i++)
+			held[i] = readPerChannel(buffer, nChannels);
+		report("hashmap", nChannels, (usedHeap() - before) / nHeaders);
+
+		held = new Object[nHeaders];
+		before = usedHeap();
+		for (int i = 0; i < nHeaders; i++)
+			held[i] = new ESAHeader(buffer, buffer.length, edf, nChannels);
+		report("columns", nChannels, (usedHeap() - before) / nHeaders);
+		if (held[nHeaders - 1] == null)
+			throw new IllegalStateException();
+	}
+
+	/**
+	 * The signal header as it was held before the attribute columns
+	 */
+	private static List<HashMap<String,Object>> readPerChannel(byte[] buffer, int ns) {
+		List<HashMap<String,Object>> channels = new ArrayList<HashMap<String,Object>>(ns);
+		for (int i = 0; i < ns; i++)
+			channels.add(new HashMap<String,Object>());
+		int offset = 0;
+		for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++) {
+			int size = ESA.getByteLengthAt(j);
+			for (int i = 0; i < ns; i++)
+				channels.get(i).put(ESA.getESAAttributeAt(j), FieldLexer.decode(buffer, offset + i * size, size));
+			offset += ns * size;
+		}
+		return channels;
+	}
+
+	private static void verify(List<HashMap<String,Object>> legacy, ESAHeader columns) {
+		for (int i = 0; i < legacy.size(); i++)
+			for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+				if (!legacy.get(i).get(ESA.getESAAttributeAt(j)).equals(columns.getValueAt(i, j)))
+					throw new IllegalStateException("Mismatch at channel " + i + ", attribute " + j);
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static void report(String name, int nChannels, long bytes) {
+		System.out.format("%-10s ns=%-5d bytes/header=%d%n", name, nChannels, bytes);
+	}
+
+	private static byte[] buildSignalHeader(int nChannels) {
+		StringBuilder sb = new StringBuilder();
+		String[] values = { "EEG ", "AgAgCl electrode", "uV", "-500", "500", "-2048", "2047", "HP:0.1Hz LP:75Hz", "256", "" };
+		for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+			for (int i = 0; i < nChannels; i++)
+				pad(sb, j == 0 ? values[j] + i : values[j], ESA.getByteLengthAt(j));
+		byte[] buffer = new byte[sb.length()];
+		for (int i = 0; i < buffer.length; i++)
+			buffer[i] = (byte) sb.charAt(i);
+		return buffer;
+	}
+
+	private static void pad(StringBuilder sb, String value, int length) {
+		sb.append(value);
+		for (int i = value.length(); i < length; i++)
+			sb.append(' ');
+	}
+}
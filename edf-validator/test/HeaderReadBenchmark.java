@@ -0,0 +1,131 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import tools.validator.header.EDFFileHeader;
+import tools.validator.header.EIA;
+import tools.validator.header.EIAHeader;
+import tools.validator.header.ESA;
+import tools.validator.header.ESAChannel;
+import tools.validator.header.ESAHeader;
+
+/**
+ * Compares the per-attribute seek/read header ingestion against the bulk read
+ * done by EDFFileHeader, on a generated header with many channels.
+ * Usage: HeaderReadBenchmark [number of channels] [iterations]
+ */
+public class HeaderReadBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int nChannels = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		File edf = File.createTempFile("header-bench", ".edf");
+		edf.deleteOnExit();
+		writeHeader(edf, nChannels);
+
+		// warm up and verify both paths produce the same header
+		for (int i = 0; i < iterations / 10 + 1; i++) {
+			ESAHeader legacy = readPerAttribute(new CountingFile(edf));
+			ESAHeader bulk = new EDFFileHeader(new CountingFile(edf), edf).getEsaHeader();
+			verify(legacy, bulk);
+		}
+
+		CountingFile raf;
+		long calls = 0, start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			raf = new CountingFile(edf);
+			readPerAttribute(raf);
+			calls += raf.calls;
+		}
+		report("per-attribute", nChannels, iterations, calls, System.nanoTime() - start);
+
+		calls = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			raf = new CountingFile(edf);
+			new EDFFileHeader(raf, edf);
+			calls += raf.calls;
+		}
+		report("bulk", nChannels, iterations, calls, System.nanoTime() - start);
+	}
+
+	/**
+	 * The header ingestion as it was done before the bulk read
+	 */
+	private static ESAHeader readPerAttribute(RandomAccessFile raf) throws IOException {
+		EIAHeader eia = new EIAHeader(raf, new File("bench.edf"));
+		int ns = Integer.parseInt(eia.getAttributeValueAt(EIA.NUMBER_OF_SIGNALS));
+		ESAHeader esa = new ESAHeader();
+		esa.setNumberOfChannels(ns);
+		ESAChannel[] channels = new ESAChannel[ns];
+		for (int i = 0; i < ns; i++)
+			channels[i] = new ESAChannel(raf, i, ns);
+		esa.setSignalHeader(channels);
+		raf.close();
+		return esa;
+	}
+
+	private static void verify(ESAHeader legacy, ESAHeader bulk) {
+		for (int i = 0; i < legacy.getNumberOfChannels(); i++)
+			for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+				if (!legacy.getValueAt(i, j).equals(bulk.getValueAt(i, j)))
+					throw new IllegalStateException("Mismatch at channel " + i + ", attribute " + j);
+	}
+
+	private static void report(String name, int nChannels, int iterations, long calls, long nanos) {
+		System.out.format("%-14s ns=%-5d calls/header=%-7d us/header=%.1f%n",
+				name, nChannels, calls / iterations, nanos / 1000.0 / iterations);
+	}
+
+	private static void writeHeader(File file, int nChannels) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		pad(sb, "0", 8);
+		pad(sb, "X X X X", 80);
+		pad(sb, "Startdate X X X X", 80);
+		pad(sb, "01.01.14", 8);
+		pad(sb, "00.00.00", 8);
+		pad(sb, "" + (nChannels + 1) * 256, 8);
+		pad(sb, "", 44);
+		pad(sb, "1", 8);
+		pad(sb, "1", 8);
+		pad(sb, "" + nChannels, 4);
+		String[] values = { "EEG ", "AgAgCl electrode", "uV", "-500", "500", "-2048", "2047", "HP:0.1Hz LP:75Hz", "1", "" };
+		for (int j = 0; j < ESA.NUMBER_OF_ATTRIBUTES; j++)
+			for (int i = 0; i < nChannels; i++)
+				pad(sb, j == 0 ? values[j] + i : values[j], ESA.getByteLengthAt(j));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.write(sb.toString().getBytes("US-ASCII"));
+		raf.write(new byte[nChannels * 2]);
+		raf.close();
+	}
+
+	private static void pad(StringBuilder sb, String value, int length) {
+		sb.append(value);
+		for (int i = value.length(); i < length; i++)
+			sb.append(' ');
+	}
+
+	/**
+	 * A RandomAccessFile that counts the seek and read calls reaching the file system
+	 */
+	private static class CountingFile extends RandomAccessFile {
+		long calls = 0;
+
+		CountingFile(File file) throws IOException {
+			super(file, "r");
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			calls++;
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			calls++;
+			super.seek(pos);
+		}
+	}
+}
@@ -0,0 +1,83 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import tools.validator.report.AsyncReportWriter;
+import tools.validator.utils.ValidatorUtility;
+
+/**
+ * Compares reopening the log for every message with the AsyncReportWriter,
+ * and checks that messages written by several threads at once reach the log whole.
+ * Usage: ReportWriterBenchmark [threads] [messages per thread]
+ */
+public class ReportWriterBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int messages = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+		File reopened = File.createTempFile("report-reopen", ".txt");
+		reopened.deleteOnExit();
+		long start = System.nanoTime();
+		for (int i = 0; i < threads * messages; i++)
+			ValidatorUtility.addElementIntoLog(message(0, i), false, reopened.getPath());
+		report("reopen", threads * messages, System.nanoTime() - start);
+
+		File async = File.createTempFile("report-async", ".txt");
+		async.deleteOnExit();
+		start = System.nanoTime();
+		final AsyncReportWriter writer = new AsyncReportWriter(async.getPath());
+		Thread[] producers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			producers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < messages; i++)
+						ValidatorUtility.addElementIntoLog(message(id, i), false, writer);
+				}
+			});
+			producers[t].start();
+		}
+		for (Thread producer : producers)
+			producer.join();
+		writer.close();
+		report("async", threads * messages, System.nanoTime() - start);
+
+		verify(async, threads, messages);
+	}
+
+	private static String message(int thread, int i) {
+		return "  EDF file: thread" + thread + "/file" + i + ".edf\r\n  Incompliances:\r\n  +1 checked";
+	}
+
+	/**
+	 * Every message must be whole, and the messages of each thread must keep their order
+	 */
+	private static void verify(File log, int threads, int messages) throws IOException {
+		int[] next = new int[threads];
+		BufferedReader in = new BufferedReader(new FileReader(log));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] parts = line.substring("  EDF file: thread".length(), line.length() - ".edf".length()).split("/file");
+				int thread = Integer.parseInt(parts[0]);
+				if (Integer.parseInt(parts[1]) != next[thread]++)
+					throw new IllegalStateException("Out of order: " + line);
+				if (!"  Incompliances:".equals(in.readLine()) || !"  +1 checked".equals(in.readLine()))
+					throw new IllegalStateException("Interleaved message after: " + line);
+			}
+		} finally {
+			in.close();
+		}
+		for (int t = 0; t < threads; t++)
+			if (next[t] != messages)
+				throw new IllegalStateException("Thread " + t + " wrote " + next[t] + " of " + messages);
+		System.out.println("verified " + threads * messages + " messages");
+	}
+
+	private static void report(String name, int messages, long nanos) {
+		System.out.format("%-8s messages=%-7d us/message=%.2f%n", name, messages, nanos / 1000.0 / messages);
+	}
+}
@@ -0,0 +1,92 @@
+package tools.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ValidatorCliTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String root;
+
+	@Before
+	public void createTree() throws IOException {
+		folder.newFile("a.edf");
+		folder.newFile("b.EDF");
+		folder.newFile("notes.txt");
+		folder.newFolder("sub", "deep");
+		folder.newFile("sub/c.edf");
+		folder.newFile("sub/deep/d.edf");
+		root = folder.getRoot().getPath();
+	}
+
+	private List<String> paths(String... relative) {
+		List<String> paths = new ArrayList<String>();
+		for (String path : relative)
+			paths.add(new File(root, path).getPath());
+		return paths;
+	}
+
+	@Test
+	public void expandsAGlobInOneDirectory() throws IOException {
+		assertEquals(paths("a.edf"), ValidatorCli.expand(root + "/*.edf"));
+		assertEquals(paths("a.edf"), ValidatorCli.expand(root + "/?.edf"));
+		assertEquals(paths("a.edf", "b.EDF"), ValidatorCli.expand(root + "/[ab].*"));
+		assertEquals(paths("a.edf", "notes.txt"), ValidatorCli.expand(root + "/{a.edf,notes.txt,z.edf}"));
+	}
+
+	@Test
+	public void expandsAGlobOnlyAsDeepAsItReaches() throws IOException {
+		assertEquals(paths("sub/c.edf"), ValidatorCli.expand(root + "/*/*.edf"));
+		assertEquals(paths("sub/deep/d.edf"), ValidatorCli.expand(root + "/sub/*/*.edf"));
+	}
+
+	@Test
+	public void expandsDoubleStarAcrossDirectories() throws IOException {
+		assertEquals(paths("sub/c.edf", "sub/deep/d.edf"), ValidatorCli.expand(root + "/**/*.edf"));
+	}
+
+	@Test
+	public void expandsADirectoryIntoItsEdfFiles() throws IOException {
+		assertEquals(paths("a.edf", "b.EDF", "sub/c.edf", "sub/deep/d.edf"), ValidatorCli.expand(root));
+	}
+
+	@Test
+	public void keepsAnOperandThatIsNoGlob() throws IOException {
+		String missing = new File(root, "missing.edf").getPath();
+		assertEquals(Collections.singletonList(missing), ValidatorCli.expand(missing));
+	}
+
+	@Test
+	public void expandsAGlobUnderAMissingDirectoryIntoNothing() throws IOException {
+		assertTrue(ValidatorCli.expand(root + "/missing/*.edf").isEmpty());
+	}
+
+	@Test
+	public void readsOnePathPerLine() throws IOException {
+		String list = "a.edf\r\n\n  b.edf  \nsub/c.edf";
+		assertEquals(Arrays.asList("a.edf", "b.edf", "sub/c.edf"),
+				ValidatorCli.readPaths(new ByteArrayInputStream(list.getBytes("UTF-8"))));
+	}
+
+	@Test
+	public void readsNulSeparatedPathsAsTheyAre() throws IOException {
+		String list = " a.edf\0line\nbreak.edf\0\0sub/c.edf\0";
+		assertEquals(Arrays.asList(" a.edf", "line\nbreak.edf", "sub/c.edf"),
+				ValidatorCli.readPaths(new ByteArrayInputStream(list.getBytes("UTF-8"))));
+	}
+}
@@ -0,0 +1,161 @@
+package tools.validator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.validator.VerdictCache.FileIdentity;
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+
+public class VerdictCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File edf;
+	private String cacheFile;
+
+	@Before
+	public void createFile() throws IOException {
+		edf = folder.newFile("a.edf");
+		write(edf, "0       ");
+		cacheFile = new File(folder.getRoot(), "verdicts.cache").getPath();
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+	}
+
+	private ValidationResult failing() {
+		ValidationResult result = new ValidationResult(edf.getPath());
+		ArrayList<Incompliance> incompliances = new ArrayList<Incompliance>();
+		incompliances.add(new Incompliance(IncomplianceCode.DATA_PARTIAL, edf.getPath(), 0, 0,
+				Incompliance.index_incomp_src_data, 3));
+		result.setIncompliances(incompliances);
+		return result;
+	}
+
+	private ValidationResult passing() {
+		ValidationResult result = new ValidationResult(edf.getPath());
+		result.setIncompliances(new ArrayList<Incompliance>());
+		return result;
+	}
+
+	private VerdictCache fill(boolean useDigest, ValidationResult result) throws IOException {
+		VerdictCache cache = new VerdictCache(cacheFile, useDigest);
+		cache.store(cache.identify(edf.getPath()), result);
+		cache.save();
+		return cache;
+	}
+
+	@Test
+	public void servesASavedVerdictAgain() throws IOException {
+		ValidationResult stored = failing();
+		fill(false, stored);
+
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		assertFalse(cache.isStale());
+		ValidationResult cached = cache.lookup("other/path.edf", cache.identify(edf.getPath()));
+		assertNotNull(cached);
+		assertTrue(cached.isCached());
+		assertFalse(cached.isValid());
+		assertEquals(1, cached.getIncompliances().size());
+		Incompliance incompliance = cached.getIncompliances().get(0);
+		assertEquals("other/path.edf", incompliance.getFileName());
+		assertEquals(stored.getIncompliances().get(0).getDescription(), incompliance.getDescription());
+		assertEquals(stored.getIncompliances().get(0).getRuleName(), incompliance.getRuleName());
+		assertEquals(1, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+
+	@Test
+	public void validatesAChangedFileAgain() throws IOException {
+		fill(false, passing());
+		write(edf, "0       changed");
+
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		assertNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void validatesATouchedFileAgainUnlessDigestsAreUsed() throws IOException {
+		fill(false, passing());
+		assertTrue(edf.setLastModified(edf.lastModified() - 60000));
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		assertNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+
+		fill(true, passing());
+		assertTrue(edf.setLastModified(edf.lastModified() - 60000));
+		cache = new VerdictCache(cacheFile, true);
+		assertNotNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+	}
+
+	@Test
+	public void isStaleUnderAnotherIdentity() throws IOException {
+		fill(false, passing());
+
+		VerdictCache cache = new VerdictCache(cacheFile, true);
+		assertTrue(cache.isStale());
+		assertNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+	}
+
+	@Test
+	public void neverServesAFileThatCouldNotBeValidated() throws IOException {
+		ValidationResult error = new ValidationResult(edf.getPath());
+		error.setError("Cannot open EDF file");
+		fill(false, error);
+
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		assertNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+	}
+
+	@Test
+	public void tellsWhichFilesNewlyFailOrPass() throws IOException {
+		VerdictCache cache = fill(false, failing());
+		assertEquals(Collections.singletonList(edf.getPath()), cache.getNewlyFailing());
+
+		cache = new VerdictCache(cacheFile, false);
+		cache.store(cache.identify(edf.getPath()), passing());
+		assertEquals(Collections.singletonList(edf.getPath()), cache.getNewlyPassing());
+		assertTrue(cache.getNewlyFailing().isEmpty());
+	}
+
+	@Test
+	public void startsEmptyFromACorruptFile() throws IOException {
+		write(new File(cacheFile), "not a cache");
+
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		assertNull(cache.lookup(edf.getPath(), cache.identify(edf.getPath())));
+		cache.store(cache.identify(edf.getPath()), passing());
+		cache.save();
+		assertNotNull(new VerdictCache(cacheFile, false).lookup(edf.getPath(), cache.identify(edf.getPath())));
+	}
+
+	@Test
+	public void identifiesOnlyReadableFiles() {
+		VerdictCache cache = new VerdictCache(cacheFile, false);
+		FileIdentity identity = cache.identify(new File(folder.getRoot(), "missing.edf").getPath());
+		assertNull(identity);
+		assertNull(cache.lookup("missing.edf", identity));
+	}
+}
@@ -0,0 +1,131 @@
+package tools.validator.report;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tools.validator.utils.Incompliance;
+import tools.validator.utils.IncomplianceCode;
+
+public class IncomplianceStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Incompliance incompliance(String file, int row) {
+		return new Incompliance(IncomplianceCode.DATA_SAMPLE_COUNT, file, row, 7, Incompliance.index_incomp_src_data, row, -2048, 2047);
+	}
+
+	private static List<String> read(IncomplianceStore store) throws IOException {
+		List<String> read = new ArrayList<String>();
+		IncomplianceStore.Cursor cursor = store.cursor();
+		try {
+			while (cursor.next()) {
+				Incompliance incompliance = cursor.getIncompliance();
+				read.add(incompliance.getFileName() + ":" + incompliance.getRowIndex());
+			}
+		} finally {
+			cursor.close();
+		}
+		return read;
+	}
+
+	@Test
+	public void groupsByFileInOrderOfFirstAddWithoutSpilling() throws IOException {
+		IncomplianceStore store = new IncomplianceStore(100, folder.getRoot());
+		store.add(incompliance("b.edf", 1));
+		store.add(incompliance("a.edf", 2));
+		store.add(incompliance("b.edf", 3));
+		store.add(incompliance("a.edf", 4));
+
+		assertEquals(0, store.getSpilledRuns());
+		assertEquals(4, store.size());
+		assertEquals(2, store.getFileCount());
+		List<String> expected = new ArrayList<String>();
+		expected.add("b.edf:1");
+		expected.add("b.edf:3");
+		expected.add("a.edf:2");
+		expected.add("a.edf:4");
+		assertEquals(expected, read(store));
+		store.close();
+	}
+
+	@Test
+	public void mergesSpilledRunsInTheOrderOfAdding() throws IOException {
+		IncomplianceStore store = new IncomplianceStore(3, folder.getRoot());
+		String[] files = { "c.edf", "a.edf", "b.edf" };
+		List<List<String>> byFile = new ArrayList<List<String>>();
+		for (int f = 0; f < files.length; f++)
+			byFile.add(new ArrayList<String>());
+		// interleaved, so every run holds several files and every file is in several runs
+		for (int row = 0; row < 40; row++) {
+			int f = (row * 7 + row / 5) % files.length;
+			store.add(incompliance(files[f], row));
+			byFile.get(f).add(files[f] + ":" + row);
+		}
+		List<String> expected = new ArrayList<String>();
+		for (List<String> rows : byFile)
+			expected.addAll(rows);
+
+		assertTrue(store.getSpilledRuns() > 1);
+		assertEquals(40, store.size());
+		assertEquals(expected, read(store));
+		assertEquals("a cursor can be opened again", expected, read(store));
+		store.close();
+	}
+
+	@Test
+	public void keepsTheFieldsThroughASpill() throws IOException {
+		IncomplianceStore store = new IncomplianceStore(1, folder.getRoot());
+		Incompliance warning = new Incompliance(IncomplianceCode.TEXT, "a.edf", -5, 15, Incompliance.index_incomp_src_eia);
+		warning.setDescription("free text");
+		warning.setErrorLevel(Incompliance.errorLevel_warning);
+		store.add(warning);
+		store.add(incompliance("a.edf", 32767));
+		assertEquals(1, store.getSpilledRuns());
+
+		IncomplianceStore.Cursor cursor = store.cursor();
+		assertTrue(cursor.next());
+		Incompliance read = cursor.getIncompliance();
+		assertEquals("a.edf", read.getFileName());
+		assertEquals(-5, read.getRowIndex());
+		assertEquals(15, read.getColumnIndex());
+		assertEquals(Incompliance.index_incomp_src_eia, read.getSrcTypeIndex());
+		assertEquals(Incompliance.errorLevel_warning, read.getErrorLevel());
+		assertEquals("free text", read.getDescription());
+		assertTrue(cursor.next());
+		read = cursor.getIncompliance();
+		assertEquals(incompliance("a.edf", 32767).getDescription(), read.getDescription());
+		assertEquals(IncomplianceCode.DATA_SAMPLE_COUNT, read.getCode());
+		assertFalse(cursor.next());
+		cursor.close();
+		store.close();
+	}
+
+	@Test
+	public void closeDeletesTheSpillFile() throws IOException {
+		IncomplianceStore store = new IncomplianceStore(2, folder.getRoot());
+		for (int row = 0; row < 10; row++)
+			store.add(incompliance("a.edf", row));
+		assertEquals(1, folder.getRoot().listFiles().length);
+
+		store.close();
+		assertEquals(0, folder.getRoot().listFiles().length);
+		assertEquals(0, store.size());
+		assertEquals(new ArrayList<String>(), read(store));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEmptyBuffer() {
+		new IncomplianceStore(0, (File) null);
+	}
+}
@@ -0,0 +1,109 @@
+package tools.validator.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class IncomplianceTest {
+
+    private static Incompliance incompliance(int row, int column, int source) {
+        return new Incompliance(IncomplianceCode.ESA_EMPTY, "a.edf", row, column, source);
+    }
+
+    @Test
+    public void packsTheFieldsAtTheirBounds() {
+        int[] rows = { -32768, -1, 0, 32767 };
+        int[] columns = { 0, 15 };
+        for (int row : rows) {
+            for (int column : columns) {
+                for (int source = 0; source < Incompliance.typeOfErrorHeader.length; source++) {
+                    for (int level = 0; level <= 1; level++) {
+                        Incompliance incompliance = incompliance(row, column, source);
+                        incompliance.setErrorLevel(level);
+                        assertEquals(row, incompliance.getRowIndex());
+                        assertEquals(column, incompliance.getColumnIndex());
+                        assertEquals(source, incompliance.getSrcTypeIndex());
+                        assertEquals(level, incompliance.getErrorLevel());
+                        assertEquals(IncomplianceCode.ESA_EMPTY, incompliance.getCode());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void settingAFieldLeavesTheOthers() {
+        Incompliance incompliance = incompliance(-32768, 15, Incompliance.index_incomp_src_data);
+        incompliance.setErrorLevel(Incompliance.errorLevel_warning);
+        incompliance.setRowIndex(32767);
+        incompliance.setColumnIndex(0);
+        assertEquals(32767, incompliance.getRowIndex());
+        assertEquals(0, incompliance.getColumnIndex());
+        assertEquals(Incompliance.index_incomp_src_data, incompliance.getSrcTypeIndex());
+        assertEquals(Incompliance.errorLevel_warning, incompliance.getErrorLevel());
+        assertEquals(IncomplianceCode.ESA_EMPTY, incompliance.getCode());
+    }
+
+    @Test
+    public void rejectsFieldsOutOfRange() {
+        assertRejected(32768, 0, 0);
+        assertRejected(-32769, 0, 0);
+        assertRejected(0, 16, 0);
+        assertRejected(0, -1, 0);
+        assertRejected(0, 0, Incompliance.typeOfErrorHeader.length);
+        assertRejected(0, 0, -1);
+    }
+
+    private static void assertRejected(int row, int column, int source) {
+        try {
+            incompliance(row, column, source);
+            fail("accepted row " + row + ", column " + column + ", source " + source);
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void recordsADeclaredRuleOfItsCode() {
+        int rule = IncomplianceRules.declare("test.esa.empty", IncomplianceCode.ESA_EMPTY);
+        Incompliance incompliance = incompliance(3, 4, Incompliance.index_incomp_src_esa);
+        assertEquals("esa.empty", incompliance.getRuleName());
+        incompliance.setRule(rule);
+        assertEquals(rule, incompliance.getRule());
+        assertEquals("test.esa.empty", incompliance.getRuleName());
+        assertEquals(IncomplianceCode.ESA_EMPTY, incompliance.getCode());
+        assertEquals(3, incompliance.getRowIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARuleOfAnotherCode() {
+        int rule = IncomplianceRules.declare("test.esa.label", IncomplianceCode.ESA_LABEL);
+        incompliance(0, 0, Incompliance.index_incomp_src_esa).setRule(rule);
+    }
+
+    @Test
+    public void roundTripsThroughWriteTo() throws IOException {
+        Incompliance written = new Incompliance(IncomplianceCode.DATA_SAMPLE_RANGE, "a.edf", -32768, 15,
+                Incompliance.index_incomp_src_data, 1, 2, -3);
+        written.setRule(IncomplianceRules.declare("test.data.sample_range", IncomplianceCode.DATA_SAMPLE_RANGE));
+        written.setErrorLevel(Incompliance.errorLevel_warning);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        written.writeTo(new DataOutputStream(bytes));
+
+        Incompliance read = Incompliance.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), "b.edf");
+        assertEquals("b.edf", read.getFileName());
+        assertEquals(written.getRowIndex(), read.getRowIndex());
+        assertEquals(written.getColumnIndex(), read.getColumnIndex());
+        assertEquals(written.getSrcTypeIndex(), read.getSrcTypeIndex());
+        assertEquals(written.getErrorLevel(), read.getErrorLevel());
+        assertEquals(written.getRuleName(), read.getRuleName());
+        assertEquals(written.getDescription(), read.getDescription());
+    }
+}